@@ -0,0 +1,151 @@
+package com.coolspy3.hde.benchmark;
+
+import com.coolspy3.hde.Line;
+import com.coolspy3.hde.component.EditorComponent;
+import com.coolspy3.hde.component.LogicComponent;
+import com.coolspy3.hde.component.components.LANDGate;
+import com.coolspy3.hde.component.components.LBuffer;
+import com.coolspy3.hde.component.components.LNANDGate;
+import com.coolspy3.hde.component.components.LNORGate;
+import com.coolspy3.hde.component.components.LNOTGate;
+import com.coolspy3.hde.component.components.LORGate;
+import com.coolspy3.hde.component.components.LXNORGate;
+import com.coolspy3.hde.component.components.LXORGate;
+import com.coolspy3.hde.gen.CircuitBuilder;
+import com.coolspy3.hde.gen.CircuitBuilder.Signal;
+import com.coolspy3.hde.gen.CircuitGenerator;
+import com.coolspy3.hde.sim.Netlist;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds the circuits used by the benchmarks
+ */
+public final class BenchmarkCircuits {
+
+    /**
+     * The number of inputs of the circuits created by {@link #randomCircuit(int, long, java.util.List, java.util.List)}
+     */
+    public static final int INPUTS = 32;
+
+    /**
+     * Creates a random acyclic circuit laid out on a grid. The circuit is driven by {@link #INPUTS} input junctions, so it settles whenever they stop changing. Gates only read from recently created signals, so some of the inputs may not be read
+     * @param gateCount The number of gates to create
+     * @param seed The seed of the random number generator
+     * @param outComps A List which should receive the created components
+     * @param outLines A List which should receive the created Lines
+     * @see CircuitGenerator#randomDag(CircuitBuilder, Signal[], int, Random)
+     */
+    public static void randomCircuit(int gateCount, long seed, List<EditorComponent> outComps, List<Line> outLines) {
+        CircuitBuilder builder = new CircuitBuilder(Math.max(1, (int)Math.sqrt(gateCount)));
+        CircuitGenerator.randomDag(builder, builder.inputs(INPUTS), gateCount, new Random(seed));
+        outComps.addAll(builder.getComponents());
+        outLines.addAll(builder.getLines());
+    }
+
+    /**
+     * Creates a LogicComponent for every gate in the given Netlist and connects each input to every driver of the net it reads from.
+     * Each net returned by {@link Netlist#getInputNets()} is driven by an {@link Input}, which takes the place of the input junction
+     * @param netlist The Netlist to convert
+     * @param outInputs A List which should receive the created Inputs in the same order as the input nets
+     * @return The created components in the same order as the gates of the Netlist, followed by the Inputs
+     */
+    public static List<LogicComponent> toLogicComponents(Netlist netlist, List<Input> outInputs) {
+        ArrayList<LogicComponent> comps = new ArrayList<>();
+        ArrayList<ArrayList<LogicComponent>> drivers = new ArrayList<>();
+        for(int net = 0; net < netlist.getNetCount(); net++) {
+            drivers.add(new ArrayList<>());
+        }
+        for(int gate = 0; gate < netlist.getGateCount(); gate++) {
+            LogicComponent comp = createGate(netlist.getOp(gate));
+            comps.add(comp);
+            drivers.get(netlist.getOutput(gate)).add(comp);
+        }
+        for(int net: netlist.getInputNets()) {
+            Input input = new Input();
+            outInputs.add(input);
+            drivers.get(net).add(input);
+        }
+        for(int gate = 0; gate < netlist.getGateCount(); gate++) {
+            LogicComponent comp = comps.get(gate);
+            if(comp.ports.containsKey("I")) {
+                connectNet(drivers.get(netlist.getInput1(gate)), comp, "I");
+            } else {
+                connectNet(drivers.get(netlist.getInput1(gate)), comp, "I1");
+                connectNet(drivers.get(netlist.getInput2(gate)), comp, "I2");
+            }
+        }
+        comps.addAll(outInputs);
+        return comps;
+    }
+
+    private static void connectNet(List<LogicComponent> drivers, LogicComponent comp, String port) {
+        drivers.forEach(driver -> comp.connect(port, driver, "O"));
+    }
+
+    private static LogicComponent createGate(int op) {
+        switch(op) {
+            case Netlist.OP_BUFFER:
+                return new LBuffer(List.of());
+            case Netlist.OP_NOT:
+                return new LNOTGate(List.of());
+            case Netlist.OP_AND:
+                return new LANDGate(List.of());
+            case Netlist.OP_OR:
+                return new LORGate(List.of());
+            case Netlist.OP_XOR:
+                return new LXORGate(List.of());
+            case Netlist.OP_NAND:
+                return new LNANDGate(List.of());
+            case Netlist.OP_NOR:
+                return new LNORGate(List.of());
+            case Netlist.OP_XNOR:
+                return new LXNORGate(List.of());
+            default:
+                throw new IllegalArgumentException("Invalid opcode: " + op);
+        }
+    }
+
+    private BenchmarkCircuits() {}
+
+    /**
+     * A LogicComponent whose output "O" is set directly instead of being computed from inputs
+     */
+    public static final class Input extends LogicComponent {
+
+        private static final long serialVersionUID = 3841527096314728160L;
+
+        /**
+         * Creates a new Input whose output is inactive
+         */
+        public Input() {
+            super(List.of());
+            createPort("O");
+        }
+
+        /**
+         * Sets the state of the output. Readers are only re-evaluated once they are scheduled, such as through {@link com.coolspy3.hde.sim.EventSimulator#scheduleFanout(LogicComponent)}
+         * @param state The new state of the output
+         * @return Whether the state of the output changed
+         */
+        public boolean set(boolean state) {
+            return setPortState("O", state);
+        }
+
+        @Override
+        public void queueState() {}
+
+        @Override
+        public boolean pushState() {
+            return false;
+        }
+
+        @Override
+        public boolean isActive() {
+            return getPortState("O");
+        }
+
+    }
+
+}
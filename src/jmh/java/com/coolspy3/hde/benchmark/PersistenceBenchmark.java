@@ -0,0 +1,92 @@
+package com.coolspy3.hde.benchmark;
+
+import com.coolspy3.hde.ContentPanel;
+import com.coolspy3.hde.Line;
+import com.coolspy3.hde.ResourceManager;
+import com.coolspy3.hde.component.EditorComponent;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of saving and loading projects
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class PersistenceBenchmark {
+
+    /**
+     * The number of gates in the generated project
+     */
+    @Param({"1000", "10000", "100000"})
+    public int gates;
+
+    private ArrayList<EditorComponent> comps;
+    private ArrayList<Line> lines;
+    private File saveFile;
+    private File loadFile;
+
+    /**
+     * Generates the project and writes a copy of it to disk for the load benchmark
+     * @throws IOException if an error occurs writing the project
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        comps = new ArrayList<>();
+        lines = new ArrayList<>();
+        BenchmarkCircuits.randomCircuit(gates, 0, comps, lines);
+        saveFile = File.createTempFile("hde-save", ".lm");
+        loadFile = File.createTempFile("hde-load", ".lm");
+        ContentPanel.save(loadFile, comps, lines);
+    }
+
+    /**
+     * Deletes the temporary files
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        saveFile.delete();
+        loadFile.delete();
+    }
+
+    /**
+     * @throws IOException if an error occurs writing the project
+     */
+    @Benchmark
+    public void save() throws IOException {
+        ContentPanel.save(saveFile, comps, lines);
+    }
+
+    /**
+     * Loads the project and registers it in the same way as opening a file in the editor
+     * @return The number of loaded components
+     * @throws IOException if an error occurs reading the project
+     */
+    @Benchmark
+    public int load() throws IOException {
+        ArrayList<EditorComponent> loadedComps = new ArrayList<>();
+        ArrayList<Line> loadedLines = new ArrayList<>();
+        ContentPanel.load(loadFile, loadedComps, loadedLines);
+        ResourceManager.forceLoad(loadedComps, loadedLines);
+        return loadedComps.size();
+    }
+
+}
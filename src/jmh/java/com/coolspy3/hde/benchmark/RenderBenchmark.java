@@ -0,0 +1,124 @@
+package com.coolspy3.hde.benchmark;
+
+import com.coolspy3.hde.ContentPanel;
+import com.coolspy3.hde.EditJournal;
+import com.coolspy3.hde.GUI;
+import com.coolspy3.hde.Line;
+import com.coolspy3.hde.component.EditorComponent;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of painting a frame of the editor into an offscreen image.
+ * The editor is a Swing component, so this benchmark requires a display
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RenderBenchmark {
+
+    /**
+     * The width of the painted frame in pixels
+     */
+    public static final int WIDTH = 1280;
+    /**
+     * The height of the painted frame in pixels
+     */
+    public static final int HEIGHT = 720;
+
+    /**
+     * The number of gates in the generated project
+     */
+    @Param({"1000", "10000", "100000"})
+    public int gates;
+
+    private File file;
+    private GUI gui;
+    private ContentPanel panel;
+    private BufferedImage image;
+    private Graphics2D graphics;
+
+    /**
+     * Opens an editor containing the generated project
+     * @throws Exception if an error occurs creating the editor
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        ArrayList<EditorComponent> comps = new ArrayList<>();
+        ArrayList<Line> lines = new ArrayList<>();
+        BenchmarkCircuits.randomCircuit(gates, 0, comps, lines);
+        file = File.createTempFile("hde-render", ".lm");
+        ContentPanel.save(file, comps, lines);
+
+        // Swing components must be created on the event dispatch thread
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                gui = new GUI();
+                panel = new ContentPanel(gui, file);
+                gui.add(panel);
+                gui.validate();
+
+                // The frame is never shown, so give the panel the size of the frame being measured instead of relying on the layout
+                panel.setSize(WIDTH, HEIGHT);
+            } catch(Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        graphics = image.createGraphics();
+    }
+
+    /**
+     * Closes the editor and deletes the generated project along with its journal
+     * @throws InterruptedException if the thread is interrupted while waiting for the editor to close
+     * @throws InvocationTargetException if an error occurs while closing the editor
+     * @throws IOException if an error occurs closing the journal or deleting the files
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException, InvocationTargetException, IOException {
+        graphics.dispose();
+
+        // Removing the panel closes its journal, which stops the journal's writer thread
+        SwingUtilities.invokeAndWait(() -> {
+            gui.remove(panel);
+            gui.dispose();
+        });
+
+        // Wait for the journal to finish closing and remove it if it was left behind
+        EditJournal.recover(file, false);
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(new File(file.getPath() + ".journal").toPath());
+    }
+
+    /**
+     * Paints a single frame
+     */
+    @Benchmark
+    public void paint() {
+        panel.paintComponent(graphics);
+    }
+
+}
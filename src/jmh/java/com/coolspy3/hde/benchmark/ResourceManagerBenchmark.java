@@ -0,0 +1,62 @@
+package com.coolspy3.hde.benchmark;
+
+import com.coolspy3.hde.component.BaseComponent;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of allocating component ids while components are continually created and discarded
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ResourceManagerBenchmark {
+
+    /**
+     * The number of components which are kept alive at once
+     */
+    @Param({"1000", "10000", "100000"})
+    public int live;
+
+    private BaseComponent<?>[] comps;
+    private int next;
+
+    /**
+     * Allocates the initial set of live components
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        comps = new BaseComponent<?>[live];
+        for(int i = 0; i < live; i++) {
+            comps[i] = new BaseComponent<>();
+        }
+        next = 0;
+    }
+
+    /**
+     * Replaces the oldest live component with a new one, which allocates an id while the discarded component's id is eventually freed
+     * @return The id of the new component
+     */
+    @Benchmark
+    public long allocChurn() {
+        BaseComponent<?> comp = new BaseComponent<>();
+        comps[next] = comp;
+        next = (next+1) % live;
+        return comp.getId();
+    }
+
+}
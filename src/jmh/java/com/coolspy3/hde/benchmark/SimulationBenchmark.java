@@ -0,0 +1,178 @@
+package com.coolspy3.hde.benchmark;
+
+import com.coolspy3.hde.Line;
+import com.coolspy3.hde.component.EditorComponent;
+import com.coolspy3.hde.component.LogicComponent;
+import com.coolspy3.hde.sim.BitParallelSimulator;
+import com.coolspy3.hde.sim.EventSimulator;
+import com.coolspy3.hde.sim.LevelizedSimulator;
+import com.coolspy3.hde.sim.Netlist;
+import com.coolspy3.hde.sim.NetlistCompiler;
+import com.coolspy3.hde.sim.NetlistSimulator;
+import com.coolspy3.hde.sim.ParallelSimulator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of a single simulation tick on generated circuits of various sizes.
+ * The inputs of the circuit are toggled before every tick, so a new wave of changes enters the circuit on every tick while earlier waves are still propagating through it
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SimulationBenchmark {
+
+    /**
+     * The number of gates in the generated circuit
+     */
+    @Param({"1000", "10000", "100000"})
+    public int gates;
+
+    private List<LogicComponent> logicComps;
+    private List<BenchmarkCircuits.Input> logicInputs;
+    private EventSimulator eventSimulator;
+    private NetlistSimulator netlistSimulator;
+    private LevelizedSimulator levelizedSimulator;
+    private BitParallelSimulator bitParallelSimulator;
+    private ParallelSimulator parallelSimulator;
+    private int[] inputs;
+    private boolean toggle;
+
+    /**
+     * Generates the circuit, creates every simulator and settles each of them
+     * @throws IllegalStateException if the circuit has no inputs or a simulator does not settle
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        ArrayList<EditorComponent> comps = new ArrayList<>();
+        ArrayList<Line> lines = new ArrayList<>();
+        BenchmarkCircuits.randomCircuit(gates, 0, comps, lines);
+        Netlist netlist = NetlistCompiler.compile(comps, lines);
+        inputs = netlist.getInputNets();
+        if(inputs.length == 0) {
+            throw new IllegalStateException("The circuit has no inputs");
+        }
+
+        logicInputs = new ArrayList<>();
+        logicComps = BenchmarkCircuits.toLogicComponents(netlist, logicInputs);
+        eventSimulator = new EventSimulator(logicComps);
+        netlistSimulator = new NetlistSimulator(netlist);
+        levelizedSimulator = new LevelizedSimulator(netlist);
+        bitParallelSimulator = new BitParallelSimulator(netlist);
+        parallelSimulator = new ParallelSimulator(netlist);
+        toggle = false;
+
+        // Every simulator starts from a settled circuit, so the measurements are not of a circuit which never converges.
+        // The circuit is acyclic, so no simulator needs more ticks than there are gates
+        int maxTicks = netlist.getGateCount()+1;
+        eventSimulator.settle(maxTicks);
+        checkSettled("event", eventSimulator.isQuiescent());
+        netlistSimulator.settle(maxTicks);
+        checkSettled("netlist", netlistSimulator.isQuiescent());
+        bitParallelSimulator.settle(maxTicks);
+        checkSettled("bit-parallel", bitParallelSimulator.isQuiescent());
+        parallelSimulator.settle(maxTicks);
+        checkSettled("parallel", parallelSimulator.isQuiescent());
+        checkSettled("levelized", levelizedSimulator.evaluate());
+    }
+
+    /**
+     * Calls {@link LogicComponent#queueState()} and {@link LogicComponent#pushState()} on every component, which is the cost of a tick without any scheduling
+     * @return Whether any output changed
+     */
+    @Benchmark
+    public boolean queuePushAll() {
+        logicComps.forEach(LogicComponent::queueState);
+        boolean changed = false;
+        for(LogicComponent comp: logicComps) {
+            changed |= comp.pushState();
+        }
+        return changed;
+    }
+
+    /**
+     * @return Whether any components are scheduled after the tick
+     */
+    @Benchmark
+    public boolean eventTick() {
+        toggle = !toggle;
+        for(BenchmarkCircuits.Input input: logicInputs) {
+            if(input.set(toggle)) {
+                eventSimulator.scheduleFanout(input);
+            }
+        }
+        return eventSimulator.tick();
+    }
+
+    /**
+     * @return Whether any gates are scheduled after the tick
+     */
+    @Benchmark
+    public boolean netlistTick() {
+        toggle = !toggle;
+        for(int input: inputs) {
+            netlistSimulator.setNet(input, toggle);
+        }
+        return netlistSimulator.tick();
+    }
+
+    /**
+     * @return Whether any gates are scheduled after the tick
+     */
+    @Benchmark
+    public boolean bitParallelTick() {
+        toggle = !toggle;
+        for(int input: inputs) {
+            bitParallelSimulator.setNet(input, toggle ? -1L : 0);
+        }
+        return bitParallelSimulator.tick();
+    }
+
+    /**
+     * @return Whether any partitions are scheduled after the tick
+     */
+    @Benchmark
+    public boolean parallelTick() {
+        toggle = !toggle;
+        for(int input: inputs) {
+            parallelSimulator.setNet(input, toggle);
+        }
+        return parallelSimulator.tick();
+    }
+
+    /**
+     * Toggles the inputs of the circuit and settles it in a single levelized sweep
+     * @return Whether every loop settled, which is always true for the acyclic circuits generated for this benchmark
+     */
+    @Benchmark
+    public boolean levelizedEvaluate() {
+        toggle = !toggle;
+        for(int input: inputs) {
+            levelizedSimulator.setNet(input, toggle);
+        }
+        return levelizedSimulator.evaluate();
+    }
+
+    private static void checkSettled(String simulator, boolean settled) {
+        if(!settled) {
+            throw new IllegalStateException("The " + simulator + " simulator did not settle");
+        }
+    }
+
+}
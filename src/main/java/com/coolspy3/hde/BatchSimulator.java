@@ -0,0 +1,312 @@
+package com.coolspy3.hde;
+
+import com.coolspy3.hde.component.EditorComponent;
+import com.coolspy3.hde.sim.BitParallelSimulator;
+import com.coolspy3.hde.sim.Netlist;
+import com.coolspy3.hde.sim.NetlistCompiler;
+import com.coolspy3.hde.sim.NetlistSimulator;
+import com.coolspy3.hde.sim.VcdRecorder;
+import com.coolspy3.hde.sim.VectorReader;
+import com.coolspy3.hde.sim.VectorRunner;
+import com.coolspy3.hde.sim.VectorWriter;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the entry point for the batch simulator, which simulates a project file without opening the editor so that regression tests can be run on servers without a display.
+ * Projects are compiled into a {@link Netlist}, so no images are loaded and no Swing or AWT resources are created
+ */
+public class BatchSimulator {
+
+    private static final String USAGE = "Usage: BatchSimulator <file> [command...]\n"
+        + "Commands are run in order. If none are given, they are read from standard input, one per line:\n"
+        + "  set <net>=<0|1>     sets the state of a net, which should be an input\n"
+        + "  run <ticks>         runs the given number of ticks\n"
+        + "  settle [ticks]      runs until no gates change or the given number of ticks (default 1000000) have elapsed\n"
+        + "  expect <net>=<0|1>  checks the state of a net, failing the simulation if it differs\n"
+        + "  print [net...]      prints the state of the given nets, or every output if none are given\n"
+        + "  vectors <in> <out> [ticks|independent]\n"
+        + "                      applies each row of a vector file to the inputs, runs the given number of ticks\n"
+        + "                      (or settles) and writes the outputs to a .csv file or a binary vector file.\n"
+        + "                      independent rows of combinational circuits are run 64 at a time\n"
+        + "  record <file> [net...]\n"
+        + "                      records every change of the given nets, or every net if none are given,\n"
+        + "                      to a Value Change Dump file until the simulation ends or another recording starts\n"
+        + "Nets are named i<n> for the nth input of the circuit, o<n> for the nth output,\n"
+        + "or <component>.<port> for the port of the nth component saved in the file.\n"
+        + "Exits with status 0 if every expectation passed, 2 if any failed and 1 on error";
+    /**
+     * The maximum number of ticks run by the <code>settle</code> command when no limit is given
+     */
+    public static final int DEFAULT_SETTLE_TICKS = 1000000;
+
+    private final Netlist netlist;
+    private final NetlistSimulator sim;
+    private final List<EditorComponent> comps;
+    private final int[] inputs;
+    private final int[] outputs;
+    private final PrintStream out;
+    private VcdRecorder recorder;
+    private int failures;
+
+    /**
+     * Creates a new BatchSimulator for the given circuit with every net inactive
+     * @param comps The components of the circuit in the order they were saved
+     * @param lines The Lines connecting the components
+     * @param out The stream to which the results of commands should be printed
+     * @throws IllegalArgumentException if the circuit cannot be compiled
+     */
+    public BatchSimulator(List<EditorComponent> comps, List<Line> lines, PrintStream out) {
+        this.netlist = NetlistCompiler.compile(comps, lines);
+        this.sim = new NetlistSimulator(netlist);
+        this.comps = comps;
+        this.inputs = netlist.getInputNets();
+        this.outputs = netlist.getOutputNets();
+        this.out = out;
+        this.recorder = null;
+        this.failures = 0;
+    }
+
+    /**
+     * The entry point for the batch simulator
+     * @param args The command-line arguments
+     */
+    public static void main(String[] args) {
+        // The editor classes are never shown, but make sure that nothing tries to connect to a display
+        System.setProperty("java.awt.headless", "true");
+        if(args.length < 1) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        try {
+            ArrayList<EditorComponent> comps = new ArrayList<>();
+            ArrayList<Line> lines = new ArrayList<>();
+            ProjectFormat.read(new File(args[0]), comps, lines);
+            BatchSimulator sim = new BatchSimulator(comps, lines, System.out);
+            if(args.length > 1) {
+                for(int i = 1; i < args.length; i++) {
+                    // Commands with arguments may be passed as one argument or split across several
+                    StringBuilder command = new StringBuilder(args[i]);
+                    while(i+1 < args.length && !isCommand(args[i+1])) {
+                        command.append(' ').append(args[++i]);
+                    }
+                    sim.run(command.toString());
+                }
+            } else {
+                BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+                for(String line = in.readLine(); line != null; line = in.readLine()) {
+                    sim.run(line);
+                }
+            }
+            sim.stopRecording();
+            System.exit(sim.getFailureCount() == 0 ? 0 : 2);
+        } catch(IllegalArgumentException e) {
+            // NumberFormatException is also an IllegalArgumentException
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+        } catch(IOException e) {
+            e.printStackTrace(System.err);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs a single command in the form accepted on the command line. Blank lines and lines starting with <code>#</code> are ignored
+     * @param command The command to run
+     * @throws IOException if an error occurs reading or writing a vector file
+     * @throws IllegalArgumentException if the command or one of the nets it names is not valid
+     */
+    public void run(String command) throws IOException {
+        String[] words = command.trim().split("\\s+");
+        if(words[0].isEmpty() || words[0].startsWith("#")) {
+            return;
+        }
+        switch(words[0]) {
+            case "set":
+                requireArgs(words, 1, 1);
+                sim.setNet(getNet(netName(words[1])), getState(words[1]));
+                break;
+            case "run":
+                requireArgs(words, 1, 1);
+                int ticks = Integer.parseInt(words[1]);
+                for(int i = 0; i < ticks; i++) {
+                    sim.tick();
+                }
+                break;
+            case "settle":
+                requireArgs(words, 0, 1);
+                int maxTicks = words.length > 1 ? Integer.parseInt(words[1]) : DEFAULT_SETTLE_TICKS;
+                sim.settle(maxTicks);
+                if(!sim.isQuiescent()) {
+                    out.println("warning: circuit did not settle within " + maxTicks + " ticks");
+                }
+                break;
+            case "expect":
+                requireArgs(words, 1, 1);
+                String name = netName(words[1]);
+                boolean state = sim.getNet(getNet(name));
+                if(state != getState(words[1])) {
+                    failures++;
+                    out.println("FAIL at tick " + sim.getTickCount() + ": " + name + "=" + (state ? 1 : 0) + ", expected " + words[1].substring(name.length()+1));
+                }
+                break;
+            case "print":
+                if(words.length == 1) {
+                    for(int i = 0; i < outputs.length; i++) {
+                        out.println("o" + i + "=" + (sim.getNet(outputs[i]) ? 1 : 0));
+                    }
+                } else {
+                    for(int i = 1; i < words.length; i++) {
+                        out.println(words[i] + "=" + (sim.getNet(getNet(words[i])) ? 1 : 0));
+                    }
+                }
+                break;
+            case "vectors":
+                requireArgs(words, 2, 3);
+                String[] names = new String[outputs.length];
+                for(int i = 0; i < names.length; i++) {
+                    names[i] = "o" + i;
+                }
+                File outFile = new File(words[2]);
+                try(VectorReader in = new VectorReader(new File(words[1]));
+                        VectorWriter vectorOut = new VectorWriter(outFile, outputs.length, VectorWriter.Format.forFile(outFile), names)) {
+                    long rows;
+                    if(words.length > 3 && words[3].equals("independent")) {
+                        // The bit-parallel simulator only understands gates, so subcircuits are copied into the circuit
+                        rows = VectorRunner.runIndependent(new BitParallelSimulator(netlist.flatten()), inputs, in, outputs, vectorOut, DEFAULT_SETTLE_TICKS);
+                    } else {
+                        rows = VectorRunner.run(sim, inputs, in, outputs, vectorOut, words.length > 3 ? Integer.parseInt(words[3]) : 0, DEFAULT_SETTLE_TICKS);
+                    }
+                    out.println("Ran " + rows + " vectors");
+                }
+                break;
+            case "record":
+                requireArgs(words, 1, Integer.MAX_VALUE);
+                int[] nets;
+                String[] netNames;
+                if(words.length == 2) {
+                    nets = new int[netlist.getNetCount()];
+                    netNames = null;
+                    for(int i = 0; i < nets.length; i++) {
+                        nets[i] = i;
+                    }
+                } else {
+                    nets = new int[words.length-2];
+                    netNames = new String[nets.length];
+                    for(int i = 0; i < nets.length; i++) {
+                        nets[i] = getNet(words[i+2]);
+                        netNames[i] = words[i+2].replace('.', '_');
+                    }
+                }
+                stopRecording();
+                recorder = new VcdRecorder(netlist, nets, netNames, new File(words[1]));
+                sim.setRecorder(recorder);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command: " + words[0]);
+        }
+    }
+
+    /**
+     * Stops the current recording, if any, and waits for it to be written
+     * @throws IOException if an error occurred writing the recording
+     */
+    public void stopRecording() throws IOException {
+        if(recorder != null) {
+            sim.setRecorder(null);
+            VcdRecorder current = recorder;
+            recorder = null;
+            current.close();
+        }
+    }
+
+    /**
+     * @return The number of <code>expect</code> commands which have failed
+     */
+    public int getFailureCount() {
+        return failures;
+    }
+
+    /**
+     * @return The simulator running the circuit
+     */
+    public NetlistSimulator getSimulator() {
+        return sim;
+    }
+
+    /**
+     * Finds the net with the given name
+     * @param name The name of the net: <code>i&lt;n&gt;</code> for an input, <code>o&lt;n&gt;</code> for an output or <code>&lt;component index&gt;.&lt;port&gt;</code>
+     * @return The index of the net
+     * @throws IllegalArgumentException if no net has the given name
+     */
+    public int getNet(String name) {
+        try {
+            if(name.matches("i\\d+")) {
+                return inputs[Integer.parseInt(name.substring(1))];
+            }
+            if(name.matches("o\\d+")) {
+                return outputs[Integer.parseInt(name.substring(1))];
+            }
+            int dot = name.indexOf('.');
+            if(dot > 0) {
+                EditorComponent comp = comps.get(Integer.parseInt(name.substring(0, dot)));
+                int net = netlist.getNet(comp.getId(), name.substring(dot+1));
+                if(net != -1) {
+                    return net;
+                }
+            }
+        } catch(IndexOutOfBoundsException | NumberFormatException e) {
+            // Fall through to the error below
+        }
+        throw new IllegalArgumentException("No such net: " + name);
+    }
+
+    private static boolean isCommand(String word) {
+        switch(word.trim().split("\\s+")[0]) {
+            case "set":
+            case "run":
+            case "settle":
+            case "expect":
+            case "print":
+            case "vectors":
+            case "record":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void requireArgs(String[] words, int min, int max) {
+        if(words.length-1 < min || words.length-1 > max) {
+            throw new IllegalArgumentException("Wrong number of arguments to " + words[0]);
+        }
+    }
+
+    private static String netName(String assignment) {
+        int eq = assignment.indexOf('=');
+        if(eq < 1) {
+            throw new IllegalArgumentException("Expected <net>=<0|1>: " + assignment);
+        }
+        return assignment.substring(0, eq);
+    }
+
+    private static boolean getState(String assignment) {
+        switch(assignment.substring(assignment.indexOf('=')+1)) {
+            case "0":
+                return false;
+            case "1":
+                return true;
+            default:
+                throw new IllegalArgumentException("Expected <net>=<0|1>: " + assignment);
+        }
+    }
+
+}
@@ -9,8 +9,10 @@ import com.coolspy3.hde.component.components.ENANDGate;
 import com.coolspy3.hde.component.components.ENORGate;
 import com.coolspy3.hde.component.components.ENOTGate;
 import com.coolspy3.hde.component.components.EORGate;
+import com.coolspy3.hde.component.components.ESubcircuit;
 import com.coolspy3.hde.component.components.EXNORGate;
 import com.coolspy3.hde.component.components.EXORGate;
+import com.coolspy3.hde.sim.Subcircuit;
 import java.awt.Dimension;
 import java.awt.GridLayout;
 import java.awt.Window;
@@ -18,12 +20,18 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
 import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
 import java.util.Enumeration;
+import java.util.function.Supplier;
 import javax.swing.AbstractButton;
 import javax.swing.ButtonGroup;
 import javax.swing.ImageIcon;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
 import javax.swing.JToggleButton;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
 /**
  * Represents the window which will be used to select new components in editing mode
@@ -39,27 +47,29 @@ public class ComponentSelector extends JFrame {
      * Creates a new ComponentSelector and sets the selected component to "None"
      * @param master The master window to on which to listen for close events
      * @param listener The WindowListener which should be notified if the user attempts to close this window
+     * @param projectFile A function which returns the file of the project components are placed in, or <code>null</code> if it has never been saved
      */
-    public ComponentSelector(Window master, WindowListener listener) {
+    public ComponentSelector(Window master, WindowListener listener, Supplier<File> projectFile) {
         // Setup window
         super("Insert Components");
 
         setSize(320, 600);
         setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
-        setLayout(new GridLayout(10, 1));
+        setLayout(new GridLayout(11, 1));
 
         // Add buttons for all components
         bg = new ButtonGroup();
         addButton(noneButton = new JToggleButton("None"));
-        addButton(new ComponentButton.LambdaComponentButton("Junction", new ImageIcon(ResourceManager.getImage("Junction")), new Dimension(20, 20), EJunction::new));
-        addButton(new ComponentButton.LambdaComponentButton("Buffer", new ImageIcon(ResourceManager.getImage("Buffer")), new Dimension(100, 50), EBuffer::new));
-        addButton(new ComponentButton.LambdaComponentButton("NOT Gate", new ImageIcon(ResourceManager.getImage("DNOTGate")), new Dimension(100, 50), ENOTGate::new));
-        addButton(new ComponentButton.LambdaComponentButton("AND Gate", new ImageIcon(ResourceManager.getImage("DANDGate")), new Dimension(100, 50), EANDGate::new));
-        addButton(new ComponentButton.LambdaComponentButton("OR Gate", new ImageIcon(ResourceManager.getImage("DORGate")), new Dimension(100, 50), EORGate::new));
-        addButton(new ComponentButton.LambdaComponentButton("NAND Gate", new ImageIcon(ResourceManager.getImage("DNANDGate")), new Dimension(100, 50), ENANDGate::new));
-        addButton(new ComponentButton.LambdaComponentButton("NOR Gate", new ImageIcon(ResourceManager.getImage("DNORGate")), new Dimension(100, 50), ENORGate::new));
-        addButton(new ComponentButton.LambdaComponentButton("XOR Gate", new ImageIcon(ResourceManager.getImage("DXORGate")), new Dimension(100, 50), EXORGate::new));
-        addButton(new ComponentButton.LambdaComponentButton("XNOR Gate", new ImageIcon(ResourceManager.getImage("DXNORGate")), new Dimension(100, 50), EXNORGate::new));
+        addButton(new ComponentButton.LambdaComponentButton("Junction", new ImageIcon(ResourceManager.awaitImage("Junction")), new Dimension(20, 20), EJunction::new));
+        addButton(new ComponentButton.LambdaComponentButton("Buffer", new ImageIcon(ResourceManager.awaitImage("Buffer")), new Dimension(100, 50), EBuffer::new));
+        addButton(new ComponentButton.LambdaComponentButton("NOT Gate", new ImageIcon(ResourceManager.awaitImage("DNOTGate")), new Dimension(100, 50), ENOTGate::new));
+        addButton(new ComponentButton.LambdaComponentButton("AND Gate", new ImageIcon(ResourceManager.awaitImage("DANDGate")), new Dimension(100, 50), EANDGate::new));
+        addButton(new ComponentButton.LambdaComponentButton("OR Gate", new ImageIcon(ResourceManager.awaitImage("DORGate")), new Dimension(100, 50), EORGate::new));
+        addButton(new ComponentButton.LambdaComponentButton("NAND Gate", new ImageIcon(ResourceManager.awaitImage("DNANDGate")), new Dimension(100, 50), ENANDGate::new));
+        addButton(new ComponentButton.LambdaComponentButton("NOR Gate", new ImageIcon(ResourceManager.awaitImage("DNORGate")), new Dimension(100, 50), ENORGate::new));
+        addButton(new ComponentButton.LambdaComponentButton("XOR Gate", new ImageIcon(ResourceManager.awaitImage("DXORGate")), new Dimension(100, 50), EXORGate::new));
+        addButton(new ComponentButton.LambdaComponentButton("XNOR Gate", new ImageIcon(ResourceManager.awaitImage("DXNORGate")), new Dimension(100, 50), EXNORGate::new));
+        addButton(new SubcircuitButton(projectFile));
 
         // No component is selected
         noneButton.setSelected(true);
@@ -123,4 +133,50 @@ public class ComponentSelector extends JFrame {
         return out;
     }
 
+    /**
+     * Represents a {@link ComponentButton} which asks the user for a project to place as a subcircuit
+     */
+    private static class SubcircuitButton extends ComponentButton {
+
+        private static final long serialVersionUID = -4127305864392071638L;
+
+        private final transient Supplier<File> projectFile;
+
+        public SubcircuitButton(Supplier<File> projectFile) {
+            super("Subcircuit...");
+            this.projectFile = projectFile;
+        }
+
+        @Override
+        public EditorComponent getComponent(Point2D.Double location) {
+            JFileChooser fc = new JFileChooser();
+            fc.setAcceptAllFileFilterUsed(false);
+            fc.setFileFilter(new FileNameExtensionFilter("Logic Map Files", "lm"));
+            fc.setFileSelectionMode(JFileChooser.FILES_ONLY);
+            fc.setMultiSelectionEnabled(false);
+            fc.showOpenDialog(this);
+            File file = fc.getSelectedFile();
+            if(file == null || !file.exists()) {
+                return null;
+            }
+            try {
+                // Center the block on the location, as with the other components
+                Subcircuit definition = Subcircuit.load(file);
+                File project = projectFile.get();
+                if(project != null && definition.uses(project)) {
+                    // The project would contain itself and could never be opened again
+                    JOptionPane.showMessageDialog(this, "Could Not Insert Subcircuit: " + definition.getName() + " Uses This Project", "Insert Subcircuit", JOptionPane.ERROR_MESSAGE);
+                    return null;
+                }
+                Dimension size = ESubcircuit.getUnrotatedSize(definition);
+                return new ESubcircuit(new Point2D.Double(location.x-size.width/2, location.y-size.height/2), definition);
+            } catch(IOException e) {
+                e.printStackTrace(System.err);
+                JOptionPane.showMessageDialog(this, "Could Not Load Subcircuit: " + e.getMessage(), "Insert Subcircuit", JOptionPane.ERROR_MESSAGE);
+                return null;
+            }
+        }
+
+    }
+
 }
@@ -1,7 +1,9 @@
 package com.coolspy3.hde;
 
 import com.coolspy3.hde.component.EditorComponent;
+import com.coolspy3.hde.component.SpatialIndex;
 import com.coolspy3.hde.component.components.EJunction;
+import com.coolspy3.hde.component.components.ESubcircuit;
 import com.coolspy3.hde.component.components.SANDGate;
 import com.coolspy3.hde.component.components.SBuffer;
 import com.coolspy3.hde.component.components.SJunction;
@@ -11,6 +13,7 @@ import com.coolspy3.hde.component.components.SNOTGate;
 import com.coolspy3.hde.component.components.SORGate;
 import com.coolspy3.hde.component.components.SXNORGate;
 import com.coolspy3.hde.component.components.SXORGate;
+import com.coolspy3.hde.sim.Subcircuit;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Dimension;
@@ -19,6 +22,7 @@ import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.TexturePaint;
 import java.awt.event.ContainerEvent;
 import java.awt.event.ContainerListener;
 import java.awt.event.KeyEvent;
@@ -28,16 +32,19 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
+import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 import javax.swing.JPanel;
 
@@ -77,12 +84,19 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
     private final ComponentSelector selector;
 
     private final ArrayList<EditorComponent> comps;
+    private final SpatialIndex index;
+    // The project from which components are created as they come into view, or null once every component has been created.
+    // It holds a copy of the file's records rather than a mapping of the file, so the journal can replace the file while it is open
+    private MappedProject project;
+    // Records edits to the file the project was last saved to or opened from, or null if it has not been saved in the current format
+    private EditJournal journal;
     private EditorComponent selectedComponent;
     private final ArrayList<EditorComponent> draggedComponents;
     private final Point tldc;
     private final Point brdc;
     private final Point mouseDragStart;
     private final Point mousePos;
+    private boolean dragMoved;
 
     private long selectedPortCompId;
     private final Point2D.Double selectedPortPos;
@@ -99,10 +113,22 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
     private long lineStartCompId;
     private String lineStartPortId;
     private final ArrayList<Line> lines;
+    // Maps the id of each component to the Lines connected to it
+    private final LongHashMap<ArrayList<Line>> compLines;
 
     private final ArrayList<EditorComponent> clipboardComps;
     private final ArrayList<Line> clipboardLines;
 
+    // The area of the frame which needs to be repainted or null if nothing has changed since the last frame
+    private Rectangle dirty;
+
+    // The buffer which frames are drawn into, which is kept between frames and replaced when the panel is resized
+    private Image backBuffer;
+    // A single cell of the grid, which is tiled across the frame and replaced when the scale changes
+    private BufferedImage gridTile;
+    // Every visible Line is added to this path so that they can be drawn with a single stroke. It is reset instead of replaced each frame so that its storage is reused
+    private final Path2D.Float wires = new Path2D.Float();
+
     /**
      * Creates a new ContentPanel and initializes it with a blank workspace
      * @param gui The frame which will contain this ContentPanel
@@ -116,7 +142,7 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
         initComps();
 
         // Create a ComponentSelector
-        this.selector = new ComponentSelector(gui, gui);
+        this.selector = new ComponentSelector(gui, gui, gui::getProjectFile);
 
         // Register Listeners
         gui.getContentPane().addContainerListener(this);
@@ -140,6 +166,7 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
         brdc = new Point();
         mouseDragStart = new Point();
         mousePos = new Point();
+        dragMoved = false;
         showLine = false;
         lineStart = new Point2D.Double();
         linePXMov = 0;
@@ -148,8 +175,13 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
         lineStartPortId = "";
         lines = new ArrayList<>();
         comps = new ArrayList<>();
+        index = new SpatialIndex();
+        compLines = new LongHashMap<>();
         clipboardComps = new ArrayList<>();
         clipboardLines = new ArrayList<>();
+        dirty = null;
+        backBuffer = null;
+        gridTile = null;
     }
 
     /**
@@ -158,20 +190,34 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
      * @param file The file from which to load the components
      * @throws IOException if an error occurs reading or parsing the input file
      */
-    @SuppressWarnings("unchecked")
     public ContentPanel(GUI gui, File file) throws IOException {
         // Init the window normally
         this(gui);
 
-        try(ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-            // Load the data from the file
-            comps.addAll((Collection<? extends EditorComponent>)ois.readObject());
-            lines.addAll((Collection<? extends Line>)ois.readObject());
+        try {
+            MappedProject mapped = MappedProject.open(file);
+            if(mapped == null) {
+                // Projects saved by earlier versions cannot be opened lazily, so load the data from the file
+                load(file, comps, lines);
+
+                // Register all of the components and lines
+                ResourceManager.forceLoad(comps, lines);
+                index.addAll(comps);
+                lines.forEach(this::linkLine);
 
-            // Register all of the components and lines
-            ResourceManager.forceLoad(comps, lines);
-        } catch(ClassNotFoundException e) {
-            throw new IOException(e);
+                // The file is left as it is so that earlier versions can still open it. It is converted to the current format, and edits to it are journaled, once it is saved
+            } else {
+                // Clear the registered components. The components in the file will be created as they come into view
+                ResourceManager.forceLoad(comps, lines);
+                project = mapped;
+
+                // Record edits so that saving does not have to rewrite the file
+                journal = EditJournal.open(file, mapped.getComponentCount());
+            }
+        } catch(IOException | RuntimeException e) {
+            // The panel was never added to the frame, so release what the blank workspace registered
+            close();
+            throw e;
         }
     }
 
@@ -190,6 +236,15 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
         return new Point(Utils.asInt((bounds.width/2)+(p.getX()*scale)), Utils.asInt((bounds.height/2)+(p.getY()*scale)));
     }
 
+    private int toFrameX(double x) {
+        // Equivalent to toFrameCoords(Point2D.Double) for a single coordinate, without allocating
+        return Utils.asInt((getWidth()/2)+((x+pos.x)*scale));
+    }
+
+    private int toFrameY(double y) {
+        return Utils.asInt((getHeight()/2)+((y+pos.y)*scale));
+    }
+
     /**
      * Converts the given rectangle from the component coordinate system into a position on the frame
      * @param rect The rectangle to convert
@@ -285,29 +340,89 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
         }
     }
 
+    /**
+     * Marks the whole panel as needing to be repainted on the next frame
+     * @see #markDirty(java.awt.Rectangle)
+     * @see #repaintDirty()
+     */
+    public void markDirty() {
+        markDirty(new Rectangle(0, 0, getWidth(), getHeight()));
+    }
+
+    /**
+     * Marks the given area of the panel as needing to be repainted on the next frame.
+     * Anything which changes the appearance of the panel, such as a change in simulation state, must call this or {@link #markDirty()} for the change to be shown
+     * @param rect The area to repaint in frame coordinates
+     * @see #repaintDirty()
+     */
+    public synchronized void markDirty(Rectangle rect) {
+        if(dirty == null) {
+            dirty = new Rectangle(rect);
+        } else {
+            dirty.add(rect);
+        }
+    }
+
+    /**
+     * Repaints every area which has been marked as dirty since the last call. This does nothing if nothing has changed, so it can be called once per frame without using any time while the editor is idle
+     * @see #markDirty(java.awt.Rectangle)
+     */
+    public void repaintDirty() {
+        Rectangle rect;
+        synchronized(this) {
+            rect = dirty;
+            dirty = null;
+        }
+        if(rect != null) {
+            repaint(rect);
+        }
+    }
+
     @Override
     public void paintComponent(Graphics graphics) {
+        // Only the area within the clip needs to be drawn
+        Rectangle clip = graphics.getClipBounds();
+        if(clip == null) {
+            clip = new Rectangle(0, 0, getBounds().width, getBounds().height);
+        }
+        Rectangle area = clip;
+
         // Setup buffer
-        Image img = createImage(getBounds().width, getBounds().height);
-        Graphics2D g = (Graphics2D)img.getGraphics();
+        if(backBuffer == null || backBuffer.getWidth(null) != getBounds().width || backBuffer.getHeight(null) != getBounds().height) {
+            backBuffer = createImage(getBounds().width, getBounds().height);
+        }
+        Graphics2D g = (Graphics2D)backBuffer.getGraphics();
+        g.setClip(clip);
+        g.setColor(getBackground());
+        g.fill(clip);
         g.setColor(new Color(0, 0, 0, 255));
 
         // Draw grid
         if(gui.shouldShowGrid() && scale >= 0.4) {
-            for(int x = 0; x < getBounds().width; x++) {
-                for(int y = 0; y < getBounds().height; y++) {
-                    if((x-Utils.asInt(pos.x*scale)) % Utils.asInt(20*scale) == 0 && (y-Utils.asInt(pos.y*scale)) % Utils.asInt(20*scale) == 0) {
-                        g.drawOval(x, y, 2, 2);
-                    }
-                }
+            // Grid points are placed every 20 units, offset by the position of the frame
+            int spacing = Utils.asInt(20*scale);
+            if(gridTile == null || gridTile.getWidth() != spacing) {
+                gridTile = new BufferedImage(spacing, spacing, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D tileGraphics = gridTile.createGraphics();
+                tileGraphics.setColor(new Color(0, 0, 0, 255));
+                tileGraphics.drawOval(0, 0, 2, 2);
+                tileGraphics.dispose();
             }
+            g.setPaint(new TexturePaint(gridTile, new Rectangle(Math.floorMod(Utils.asInt(pos.x*scale), spacing), Math.floorMod(Utils.asInt(pos.y*scale), spacing), spacing, spacing)));
+            g.fill(clip);
+            g.setColor(new Color(0, 0, 0, 255));
         }
 
-        // Draw components (if they are on screen)
-        comps.forEach(comp -> {
-            if(toFrameCoords(comp.getBounds()).intersects(getBounds())) {
+        // Find the components which may be on screen
+        ArrayList<EditorComponent> visible = new ArrayList<>();
+        query(getViewport(), visible);
+
+        // Draw components (if they are on screen and within the clip)
+        visible.forEach(comp -> {
+            Rectangle compBounds = toFrameCoords(comp.getBounds());
+            if(compBounds.intersects(getBounds()) && compBounds.intersects(area)) {
                 Point tl = toFrameCoords(comp.getPosition());
-                g.drawImage(comp.getImage(), tl.x, tl.y, Utils.asInt(comp.getSize().width*scale), Utils.asInt(comp.getSize().height*scale), null);
+                g.drawImage(comp.getScaledImage(Utils.asInt(comp.getSize().width*scale), Utils.asInt(comp.getSize().height*scale), getGraphicsConfiguration()), tl.x, tl.y, null);
             }
         });
 
@@ -338,16 +453,35 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
         }
 
         // Draw lines (if on screen)
-        lines.forEach((line) -> {
-            if(getBounds().contains(toFrameCoords(((EditorComponent)ResourceManager.getComponent(line.compId1)).getPoint(line.portId1))) || getBounds().contains(toFrameCoords(((EditorComponent)ResourceManager.getComponent(line.compId2)).getPoint(line.portId2)))) {
-                Utils.drawLine(g, toFrameCoords(((EditorComponent)ResourceManager.getComponent(line.compId1)).getPoint(line.portId1)),
-                        toFrameCoords(((EditorComponent)ResourceManager.getComponent(line.compId2)).getPoint(line.portId2)), line.isHoris, line.movPer);
+        // A Line can only be on screen if one of its ports is, so only the Lines connected to visible components need to be checked
+        Rectangle bounds = getBounds();
+        int pad = 2*(int)scale+2;
+        Set<Line> checkedLines = Collections.newSetFromMap(new IdentityHashMap<>());
+        wires.reset();
+        for(EditorComponent comp: visible) {
+            for(Line line: getLines(comp.getId())) {
+                if(!checkedLines.add(line)) {
+                    continue;
+                }
+                double[] route = line.getRoute();
+                int x1 = toFrameX(route[0]);
+                int y1 = toFrameY(route[1]);
+                int x2 = toFrameX(route[6]);
+                int y2 = toFrameY(route[7]);
+                if((bounds.contains(x1, y1) || bounds.contains(x2, y2))
+                        && area.intersects(Math.min(x1, x2)-pad, Math.min(y1, y2)-pad, Math.abs(x2-x1)+2*pad, Math.abs(y2-y1)+2*pad)) {
+                    wires.moveTo(x1, y1);
+                    wires.lineTo(toFrameX(route[2]), toFrameY(route[3]));
+                    wires.lineTo(toFrameX(route[4]), toFrameY(route[5]));
+                    wires.lineTo(x2, y2);
+                }
             }
-        });
+        }
+        g.draw(wires);
 
         // Dispose graphis and render buffer
         g.dispose();
-        graphics.drawImage(img, 0, 0, null);
+        graphics.drawImage(backBuffer, 0, 0, null);
     }
 
     @Override
@@ -362,25 +496,39 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
     public void componentRemoved(ContainerEvent e) {
         // When we are removed from the frame
         if(e.getChild() == this) {
-            // Remove Listeners
-            gui.getContentPane().removeContainerListener(this);
-            removeKeyListener(this);
-            removeMouseListener(this);
-            removeMouseMotionListener(this);
-            removeMouseWheelListener(this);
-
-            // Remove ComponentSelector
-            selector.setVisible(false);
-            selector.dispose();
+            close();
+        }
+    }
 
-            // Clear components and lines
-            comps.clear();
-            lines.clear();
+    private void close() {
+        // Remove Listeners
+        gui.getContentPane().removeContainerListener(this);
+        removeKeyListener(this);
+        removeMouseListener(this);
+        removeMouseMotionListener(this);
+        removeMouseWheelListener(this);
+
+        // Remove ComponentSelector
+        selector.setVisible(false);
+        selector.dispose();
+
+        // Stop recording edits, discarding any which were not saved
+        if(journal != null) {
+            journal.close();
+            journal = null;
         }
+
+        // Clear components and lines
+        project = null;
+        comps.clear();
+        lines.clear();
+        index.clear();
+        compLines.clear();
     }
 
     @Override
     public void keyTyped(KeyEvent e) {
+        markDirty();
         if(e.getKeyChar() == '0') {
             // Reset position and scale to defaults
             pos.setLocation(0, 0);
@@ -391,6 +539,9 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
             // Rotate selected component
             EditorComponent comp = draggedComponents.get(0);
             comp.rotate();
+            if(journal != null) {
+                journal.componentRotated(comp);
+            }
 
             // Update selection
             tldc.setLocation(toFrameCoords(comp.getPosition()));
@@ -401,6 +552,7 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
 
     @Override
     public void keyPressed(KeyEvent e) {
+        markDirty();
         // Update control and shift flags
         if(e.getKeyCode() == KeyEvent.VK_CONTROL) {
             ctrl = true;
@@ -410,18 +562,28 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
         }
         if(e.getKeyCode() == KeyEvent.VK_DELETE) {
             // Delete all selected components
+            Set<Line> removedLines = new HashSet<>();
+            Set<EditorComponent> removedComps = Collections.newSetFromMap(new IdentityHashMap<>());
             draggedComponents.forEach(comp -> {
-                ArrayList<Line> removedLines = new ArrayList<>();
                 // Disconnect all lines
-                lines.stream().filter(l -> l.compId1 == comp.getId() || l.compId2 == comp.getId()).forEach(l -> {
-                    ResourceManager.freePorts(l);
-                    removedLines.add(l);
-                });
+                getLines(comp.getId()).stream().filter(removedLines::add).forEach(ResourceManager::freePorts);
 
                 // Delete components
-                lines.removeAll(removedLines);
-                comps.remove(comp);
+                removedComps.add(comp);
+                index.remove(comp);
             });
+            lines.removeAll(removedLines);
+            removedLines.forEach(this::unlinkLine);
+            removedComps.forEach(comp -> compLines.remove(comp.getId()));
+            comps.removeAll(removedComps);
+            if(project != null) {
+                // Lines from the removed components to components which have not been created yet must not be created later
+                removedComps.forEach(project::remove);
+            }
+            if(journal != null) {
+                removedLines.forEach(journal::lineRemoved);
+                removedComps.forEach(journal::componentRemoved);
+            }
 
             // Clear the selection
             draggedComponents.clear();
@@ -450,14 +612,20 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
         if(e.getKeyCode() == KeyEvent.VK_V && ctrl) {
             // Copy components
             ArrayList<EditorComponent> newComps = new ArrayList<>();
-            ResourceManager.addAsNew(clipboardComps, clipboardLines, fromFrameCoords(mousePos), newComps, lines, this);
+            ArrayList<Line> newLines = new ArrayList<>();
+            ResourceManager.addAsNew(clipboardComps, clipboardLines, fromFrameCoords(mousePos), newComps, newLines, this);
+            newLines.forEach(this::addLine);
 
             // Clear selected components
             draggedComponents.clear();
 
             // Select new components
             newComps.forEach(comp -> addComponentToSelection(comp));
-            comps.addAll(newComps);
+            newComps.forEach(this::addComponent);
+            if(journal != null) {
+                newComps.forEach(journal::componentAdded);
+                newLines.forEach(journal::lineAdded);
+            }
         }
     }
 
@@ -474,6 +642,7 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
 
     @Override
     public void mouseClicked(MouseEvent e) {
+        markDirty();
         // If the user is not edition a selection and a port is selected
         if(!(ctrl && getSelectedComponent() != null) && !shift && selectedPortCompId != -1) {
             // Start drawing a line at the selected port
@@ -503,6 +672,7 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
 
     @Override
     public void mousePressed(MouseEvent e) {
+        markDirty();
         if(e.getButton() != 1) {
             if(e.getButton() == 2 && getSelectedComponent() == null) {
                 // A component has been right-clicked
@@ -541,7 +711,10 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
                 EJunction junction = new EJunction(new Point2D.Double(
                         lineEndX ? ePointNFC.x - (lineStart.x > ePointNFC.x ? 20 : 0) : ePointNFC.x-9,
                         lineEndX ? ePointNFC.y-9 : ePointNFC.y - (lineStart.y > ePointNFC.y ? 20 : 0)));
-                comps.add(junction);
+                addComponent(junction);
+                if(journal != null) {
+                    journal.componentAdded(junction);
+                }
 
                 // Reserve a newly created port
                 String port = lineEndX ? ePointNFC.x > lineStart.x ? "P2" : "P3" : ePointNFC.y > lineStart.y ? "P4" : "P1";
@@ -549,7 +722,11 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
                 ResourceManager.reservePort(lineStartCompId, lineStartPortId);
 
                 // Create the line
-                lines.add(new Line(lineStartCompId, lineStartPortId, junction.getId(), port, lineStartX, linePXMov));
+                Line line = new Line(lineStartCompId, lineStartPortId, junction.getId(), port, lineStartX, linePXMov);
+                addLine(line);
+                if(journal != null) {
+                    journal.lineAdded(line);
+                }
                 showLine = false;
             } else {
                 // Reserve the selected port
@@ -557,7 +734,11 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
                 ResourceManager.reservePort(lineStartCompId, lineStartPortId);
 
                 // Create the line
-                lines.add(new Line(lineStartCompId, lineStartPortId, selectedPortCompId, selectedPortId, lineStartX, linePXMov));
+                Line line = new Line(lineStartCompId, lineStartPortId, selectedPortCompId, selectedPortId, lineStartX, linePXMov);
+                addLine(line);
+                if(journal != null) {
+                    journal.lineAdded(line);
+                }
                 showLine = false;
             }
         } else if(getSelectedComponent() != null) {
@@ -569,21 +750,35 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
             // Add a new component to the selection if one is selected
             EditorComponent comp = selector.getAndReset(fromFrameCoords(e.getPoint()));
             if(comp != null) {
-                comps.add(comp);
+                addComponent(comp);
+                if(journal != null) {
+                    journal.componentAdded(comp);
+                }
             }
         }
     }
 
     @Override
     public void mouseReleased(MouseEvent e) {
+        markDirty();
         if(e.getButton() == 1) {
             // Update left mouse button flag
             lbd = false;
 
+            // Record where the dragged components ended up, once per drag rather than for every mouse movement
+            if(dragMoved) {
+                dragMoved = false;
+                if(journal != null) {
+                    draggedComponents.forEach(journal::componentMoved);
+                }
+            }
+
             if(shift) {
                 // If the user was holding shift, create a selection and select all components contained within it
                 Rectangle selection = fromFrameCoords(Utils.rectangleFromAnyCorners(mouseDragStart, e.getPoint()));
-                comps.stream().filter(comp -> comp.getBounds().intersects(selection)).forEachOrdered(comp -> addComponentToSelection(comp));
+                ArrayList<EditorComponent> candidates = new ArrayList<>();
+                query(selection, candidates);
+                candidates.stream().filter(comp -> comp.getBounds().intersects(selection)).forEachOrdered(comp -> addComponentToSelection(comp));
             }
         }
     }
@@ -615,13 +810,19 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
         if(draggedComponents.isEmpty()) {
             // If no components are selected, drag the whole scene
             pos.setLocation(pos.x+dx, pos.y+dy);
+            markDirty();
         } else {
-            // Otherwise, drag the selected components
+            // Otherwise, drag the selected components, repainting the areas which they are moved from and to
+            markDirty(tldc, brdc, brdc);
+            draggedComponents.forEach(this::markDirty);
             tldc.translate(rdx, rdy);
             brdc.translate(rdx, rdy);
             draggedComponents.forEach(comp -> {
                 comp.setPosition(comp.getPosition().x + dx, comp.getPosition().y + dy);
             });
+            dragMoved = true;
+            markDirty(tldc, brdc, brdc);
+            draggedComponents.forEach(this::markDirty);
         }
 
         // If the mouse is dragged again, assume it started from it's current position (don't drag components by a distance the mouse has already moved)
@@ -631,31 +832,48 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
     @Override
     public void mouseMoved(MouseEvent e) {
         // Update the mouse position
+        Point oldMousePos = new Point(mousePos);
         mousePos.setLocation(e.getPoint());
 
+        // Repaint the line being created and the selection rectangle since they follow the mouse
+        if(showLine) {
+            markDirty(toFrameCoords(lineStart), oldMousePos, mousePos);
+        }
+        if(shift && lbd) {
+            markDirty(mouseDragStart, oldMousePos, mousePos);
+        }
+
+        // Find the components which may be under the mouse or have a port within 12 pixels of it
+        Point2D.Double mouse = fromFrameCoords(e.getPoint());
+        double radius = 12/scale+2;
+        ArrayList<EditorComponent> nearby = new ArrayList<>();
+        query(new Rectangle2D.Double(mouse.x-radius, mouse.y-radius, radius*2, radius*2), nearby);
+
         // Update the selected component
         setSelectedComponent(null);
-        comps.stream().filter(comp -> (collidesWithPoint(comp, e.getPoint()))).forEachOrdered(comp -> {
+        nearby.stream().filter(comp -> (collidesWithPoint(comp, e.getPoint()))).forEachOrdered(comp -> {
             setSelectedComponent(comp);
         });
 
         // Update the selected port
+        long oldPortCompId = selectedPortCompId;
+        Point oldPortPos = toFrameCoords(selectedPortPos);
         selectedPortCompId = -1;
         double dist = Integer.MAX_VALUE;
 
-        // For every component
-        for(EditorComponent comp : comps) {
+        // For every nearby component
+        for(EditorComponent comp : nearby) {
             // If it's on screen
             if(toFrameCoords(comp.getBounds()).intersects(getBounds())) {
                 // For every port it has
-                for(TaggedDoublePoint point : comp.getPoints()) {
+                for(int i = 0; i < comp.getPortCount(); i++) {
                     // If that port is closer to the mouse than any other we've checked and is at most 12 pixels away
-                    double tDist = toFrameCoords(point).distance(e.getPoint());
+                    double tDist = Point2D.distance(toFrameX(comp.getPortX(i)), toFrameY(comp.getPortY(i)), e.getX(), e.getY());
                     if(tDist <= 12 && tDist < dist) {
                         // Set it as the selected port
                         selectedPortCompId = comp.getId();
-                        selectedPortPos.setLocation(point);
-                        selectedPortId = point.tag;
+                        selectedPortPos.setLocation(comp.getPortX(i), comp.getPortY(i));
+                        selectedPortId = comp.getPortId(i);
 
                         // And update the distance of the closest known port
                         dist = tDist;
@@ -663,10 +881,22 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
                 }
             }
         }
+
+        // Repaint the highlight if the selected port changed
+        Point portPos = toFrameCoords(selectedPortPos);
+        if(oldPortCompId != selectedPortCompId || !oldPortPos.equals(portPos)) {
+            if(oldPortCompId != -1) {
+                markDirty(new Rectangle(oldPortPos.x-1, oldPortPos.y-1, 4, 4));
+            }
+            if(selectedPortCompId != -1) {
+                markDirty(new Rectangle(portPos.x-1, portPos.y-1, 4, 4));
+            }
+        }
     }
 
     @Override
     public void mouseWheelMoved(MouseWheelEvent e) {
+        markDirty();
         if(showLine && ctrl) {
             // If we're drawing a line, update the location where it bends
             linePXMov += e.getUnitsToScroll()*SCROLL_MOV_LINE_PER;
@@ -711,22 +941,199 @@ public class ContentPanel extends JPanel implements ContainerListener, KeyListen
         }
     }
 
+    private Rectangle2D.Double getViewport() {
+        // Convert the frame bounds into component coordinates, padding them since components are tested against the frame after being rounded
+        Rectangle bounds = getBounds();
+        Point2D.Double tl = fromFrameCoords(bounds.getLocation());
+        return new Rectangle2D.Double(tl.x-2, tl.y-2, bounds.width/scale+4, bounds.height/scale+4);
+    }
+
+    private Rectangle padLine(Rectangle rect) {
+        // Lines are drawn with a stroke which extends past their endpoints
+        int pad = 2*(int)scale+2;
+        rect.grow(pad, pad);
+        return rect;
+    }
+
+    private void markDirty(EditorComponent comp) {
+        // Mark the component and every Line connected to it
+        Rectangle rect = toFrameCoords(comp.getBounds());
+        for(Line line: getLines(comp.getId())) {
+            double[] route = line.getRoute();
+            rect.add(toFrameX(route[0]), toFrameY(route[1]));
+            rect.add(toFrameX(route[6]), toFrameY(route[7]));
+        }
+        markDirty(padLine(rect));
+    }
+
+    private void markDirty(Point c1, Point c2, Point c3) {
+        Rectangle rect = Utils.rectangleFromAnyCorners(c1, c2);
+        rect.add(c3);
+        markDirty(padLine(rect));
+    }
+
+    private void query(Rectangle2D area, Collection<EditorComponent> out) {
+        // Create any components in the area which have not been loaded yet before searching the index
+        if(project != null) {
+            ArrayList<EditorComponent> newComps = new ArrayList<>();
+            ArrayList<Line> newLines = new ArrayList<>();
+            project.load(area, newComps, newLines);
+            addLoaded(newComps, newLines);
+        }
+        index.query(area, out);
+    }
+
+    private void loadAll() {
+        if(project != null) {
+            ArrayList<EditorComponent> newComps = new ArrayList<>();
+            ArrayList<Line> newLines = new ArrayList<>();
+            project.loadAll(newComps, newLines);
+            addLoaded(newComps, newLines);
+        }
+    }
+
+    private void addLoaded(List<EditorComponent> newComps, List<Line> newLines) {
+        newComps.forEach(this::addComponent);
+        if(journal != null) {
+            newComps.forEach(comp -> journal.bind(comp, project.indexOf(comp)));
+        }
+        newLines.forEach(line -> {
+            ResourceManager.reservePorts(line);
+            addLine(line);
+        });
+        if(project.isFullyLoaded()) {
+            // Release the records of the file
+            project = null;
+        }
+    }
+
+    private void addComponent(EditorComponent comp) {
+        comps.add(comp);
+        index.add(comp);
+    }
+
+    private void addLine(Line line) {
+        lines.add(line);
+        linkLine(line);
+    }
+
+    private void linkLine(Line line) {
+        getOrCreateLines(line.compId1).add(line);
+        getOrCreateLines(line.compId2).add(line);
+    }
+
+    private void unlinkLine(Line line) {
+        getLines(line.compId1).remove(line);
+        getLines(line.compId2).remove(line);
+    }
+
+    private List<Line> getLines(long compId) {
+        ArrayList<Line> compLines = this.compLines.get(compId);
+        return compLines == null ? Collections.emptyList() : compLines;
+    }
+
+    private ArrayList<Line> getOrCreateLines(long compId) {
+        ArrayList<Line> compLines = this.compLines.get(compId);
+        if(compLines == null) {
+            compLines = new ArrayList<>(2);
+            this.compLines.put(compId, compLines);
+        }
+        return compLines;
+    }
+
+    /**
+     * Finds a subcircuit in the current workspace which uses the given project file, including subcircuits which have not been loaded from the open project yet.
+     * The workspace cannot be saved to such a file, since the saved project would contain itself
+     * @param file The project file
+     * @return A subcircuit definition which uses the file or <code>null</code> if there is none
+     * @throws IOException if the canonical path of the file cannot be determined
+     * @see Subcircuit#uses(java.io.File)
+     */
+    public Subcircuit findSubcircuitUsing(File file) throws IOException {
+        Set<Subcircuit> definitions = new HashSet<>();
+        comps.stream().filter(comp -> comp instanceof ESubcircuit).forEach(comp -> definitions.add(((ESubcircuit)comp).getDefinition()));
+        if(project != null) {
+            project.getDefinitions(definitions);
+        }
+        for(Subcircuit definition: definitions) {
+            Subcircuit current = definition;
+            try {
+                // The project which defines the subcircuit may have been changed to use the file since it was placed
+                current = Subcircuit.load(definition.getFile());
+            } catch(IOException e) {
+                // Instances keep using the definition they were created with, so check that instead
+            }
+            if(current.uses(file)) {
+                return definition;
+            }
+        }
+        return null;
+    }
+
     /**
      * Saves the current workspace to a file
      * @param file The file to which to save
-     * @throws IOException if an error occurs while saving
+     * @throws IOException if an error occurs while saving or a subcircuit in the workspace uses the file
+     * @see #findSubcircuitUsing(java.io.File)
      */
     public void save(File file) throws IOException {
-        try(ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
-            // Save components and lines to the file
-            oos.writeObject(comps);
-            oos.writeObject(lines);
+        Subcircuit loop = findSubcircuitUsing(file);
+        if(loop != null) {
+            throw new IOException("Subcircuit " + loop.getFile() + " uses " + file);
         }
+        if(journal != null && journal.getFile().equals(file.getCanonicalFile())) {
+            try {
+                // Every edit has already been recorded, so they only need to be marked as saved
+                journal.commit();
+                return;
+            } catch(IOException e) {
+                // The journal could not be written, so fall back to writing the whole project
+                e.printStackTrace(System.err);
+            }
+        }
+        if(journal != null) {
+            journal.close();
+            journal = null;
+        }
+
+        // Every component must be created before the project can be written, after which the records of the file being overwritten are no longer read
+        loadAll();
+        save(file, comps, lines);
+
+        // Record further edits against the new file
+        journal = EditJournal.open(file, comps.size());
+        journal.bindAll(comps);
+    }
+
+    /**
+     * Saves the given components and Lines to a file in the same format as {@link #save(java.io.File)}.
+     * This does not require a ContentPanel, so it can be used without a display
+     * @param file The file to which to save
+     * @param comps The components to save
+     * @param lines The Lines to save
+     * @throws IOException if an error occurs while saving
+     * @see #load(java.io.File, java.util.Collection, java.util.Collection)
+     */
+    public static void save(File file, ArrayList<EditorComponent> comps, ArrayList<Line> lines) throws IOException {
+        ProjectFormat.write(file, comps, lines);
+    }
+
+    /**
+     * Loads the components and Lines saved in the given file, which may be in the current {@link ProjectFormat} or saved by Java serialization in earlier versions.
+     * This does not register the loaded components with {@link ResourceManager#forceLoad(java.util.ArrayList, java.util.ArrayList)}
+     * @param file The file from which to load
+     * @param outComps A Collection which should receive the loaded components
+     * @param outLines A Collection which should receive the loaded Lines
+     * @throws IOException if an error occurs reading or parsing the input file
+     * @see #save(java.io.File, java.util.ArrayList, java.util.ArrayList)
+     */
+    public static void load(File file, Collection<EditorComponent> outComps, Collection<Line> outLines) throws IOException {
+        ProjectFormat.read(file, outComps, outLines);
     }
 
     private void initComps() {
         // Attempt to load base component classes
-        // This causes their static blocks to be run
+        // This causes their static blocks to be run, which start decoding their images in the background
         tryInit(SANDGate.class.getName());
         tryInit(SBuffer.class.getName());
         tryInit(SNANDGate.class.getName());
@@ -0,0 +1,893 @@
+package com.coolspy3.hde;
+
+import com.coolspy3.hde.component.EditorComponent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the edits made to a project in an append-only journal next to its file, so that saving only has to append a marker to the journal instead of rewriting the whole project.
+ * The journal is named after the project file with the suffix <code>.journal</code> and consists of a header followed by a sequence of operations:
+ * <pre>
+ * header:     int magic, int version, long snapshot size, long snapshot modification time, long snapshot file key
+ * ADD:        byte 1, string type, double x, double y, byte rotation (the component is given the next key)
+ * REMOVE:     byte 2, int key
+ * MOVE:       byte 3, int key, double x, double y
+ * ROTATE:     byte 4, int key, double x, double y, byte rotation
+ * ADD_LINE:   byte 5, int key1, string port1, int key2, string port2, byte isHoris, double movPer
+ * REMOVE_LINE: byte 6, int key1, string port1, int key2, string port2
+ * SAVE:       byte 7
+ * strings:    int length, UTF-8 bytes
+ * </pre>
+ * Components are referenced by keys. The components in the project file (the snapshot) have their index in the file as their key, and added components are given the following keys in the order they were added.
+ * The operations before the last SAVE are the saved state of the project and the operations after it are unsaved edits which can be recovered after a crash.
+ * The header identifies the snapshot which the journal applies to, so that a journal left behind by a snapshot which has since been replaced is ignored.
+ * <p>
+ * All file access happens on a single background thread, so that recording an edit only queues it and never blocks the event dispatch thread.
+ * Shortly after each save, the saved part of the journal is compacted by applying it to the snapshot, which is written to a temporary file and then moved over the project file.
+ * Until then the project file still holds the project as it was before the save, so anything which reads it directly sees the saved edits {@link #COMPACT_DELAY} milliseconds later
+ */
+public final class EditJournal {
+
+    /**
+     * The first four bytes of every journal file ("HDEJ")
+     */
+    public static final int MAGIC = 0x4844454A;
+    /**
+     * The version of the journal format written by this class
+     */
+    public static final int VERSION = 1;
+    /**
+     * The number of milliseconds between writes of queued operations to the journal file when the project is not being saved
+     */
+    public static final long FLUSH_DELAY = 1000;
+    /**
+     * The number of milliseconds after a save before the saved edits are compacted into the project file
+     */
+    public static final long COMPACT_DELAY = 1000;
+
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte MOVE = 3;
+    private static final byte ROTATE = 4;
+    private static final byte ADD_LINE = 5;
+    private static final byte REMOVE_LINE = 6;
+    private static final byte SAVE = 7;
+
+    // The last close of each project file's journal, which must finish before the project is opened again
+    private static final ConcurrentHashMap<File, Future<?>> closing = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final File journalFile;
+    private final ScheduledExecutorService writer;
+    // The first error which occurred on the writer thread, after which nothing more is written
+    private volatile IOException failure;
+
+    // The following fields are only accessed by the writer thread
+    private FileChannel channel;
+    private final ByteBuffer buf;
+    private final Op op;
+    // Maps the id of each recorded component to its key
+    private final LongHashMap<Integer> keys;
+    // Maps each key to the id of its component or -1 if it is not bound to a component
+    private long[] keyIds;
+    // Maps the index of each component in the file which was opened to its current key, which changes when the journal is compacted
+    private int[] baseKeys;
+    private int nextKey;
+    // The length of the journal up to and including the last SAVE and the next key at that point
+    private long savedLength;
+    private int savedNextKey;
+
+    private EditJournal(File file, int compCount) throws IOException {
+        this.file = file.getCanonicalFile();
+        this.journalFile = getJournalFile(this.file);
+        ScheduledThreadPoolExecutor writer = new ScheduledThreadPoolExecutor(1, r -> {
+            // The writer must be allowed to finish compacting the journal when the editor exits
+            Thread t = new Thread(r, "Edit Journal Writer");
+            t.setDaemon(false);
+            return t;
+        });
+        // Closing the journal applies the saved edits itself, so a pending compaction does not have to wait for its delay
+        writer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.writer = writer;
+        this.failure = null;
+        this.buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.op = new Op();
+        this.keys = new LongHashMap<>(compCount);
+        this.keyIds = new long[Math.max(compCount, 16)];
+        Arrays.fill(keyIds, -1);
+        this.baseKeys = new int[compCount];
+        for(int i = 0; i < compCount; i++) {
+            baseKeys[i] = i;
+        }
+        this.nextKey = compCount;
+        this.savedNextKey = compCount;
+
+        // Start a new journal for the current snapshot, replacing any which was left behind
+        channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        writeHeader(buf, this.file);
+        flush();
+        channel.force(false);
+        savedLength = HEADER_SIZE;
+
+        writer.scheduleWithFixedDelay(() -> run(this::flush), FLUSH_DELAY, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts a new journal for the given project file, which must be saved in the {@link ProjectFormat} and must not have any edits left in an existing journal
+     * @param file The project file
+     * @param compCount The number of components saved in the project file
+     * @return The new journal
+     * @throws IOException if an error occurs creating the journal
+     * @see #recover(java.io.File, boolean)
+     */
+    public static EditJournal open(File file, int compCount) throws IOException {
+        awaitClosed(file);
+        return new EditJournal(file, compCount);
+    }
+
+    /**
+     * @return The project file to which this journal applies
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Records that the given component is the one saved at the given index in the project file. Every component which was loaded from the file must be bound before any edits to it are recorded
+     * @param comp The loaded component
+     * @param index The index of the component in the project file
+     */
+    public void bind(EditorComponent comp, int index) {
+        long id = comp.getId();
+        submit(() -> bindKey(id, baseKeys[index]));
+    }
+
+    /**
+     * Binds each of the given components to its position in the list
+     * @param comps The components in the order they are saved in the project file
+     * @see #bind(com.coolspy3.hde.component.EditorComponent, int)
+     */
+    public void bindAll(List<? extends EditorComponent> comps) {
+        long[] ids = comps.stream().mapToLong(EditorComponent::getId).toArray();
+        submit(() -> {
+            for(int i = 0; i < ids.length; i++) {
+                bindKey(ids[i], baseKeys[i]);
+            }
+        });
+    }
+
+    /**
+     * Records that the given component was added to the project
+     * @param comp The added component
+     */
+    public void componentAdded(EditorComponent comp) {
+        long id = comp.getId();
+        String type = ProjectFormat.getType(comp, file);
+        double x = comp.getPosition().x;
+        double y = comp.getPosition().y;
+        int rotation = comp.getRotation();
+        submit(() -> {
+            op.code = ADD;
+            op.type = type;
+            op.x = x;
+            op.y = y;
+            op.rotation = rotation;
+            append(op);
+            bindKey(id, nextKey++);
+        });
+    }
+
+    /**
+     * Records that the given component was removed from the project. Any Lines connected to it must be recorded as removed first
+     * @param comp The removed component
+     */
+    public void componentRemoved(EditorComponent comp) {
+        long id = comp.getId();
+        submit(() -> {
+            op.code = REMOVE;
+            op.key1 = key(id);
+            append(op);
+            keyIds[op.key1] = -1;
+            keys.remove(id);
+        });
+    }
+
+    /**
+     * Records the current position of the given component after it was moved
+     * @param comp The moved component
+     */
+    public void componentMoved(EditorComponent comp) {
+        long id = comp.getId();
+        double x = comp.getPosition().x;
+        double y = comp.getPosition().y;
+        submit(() -> {
+            op.code = MOVE;
+            op.key1 = key(id);
+            op.x = x;
+            op.y = y;
+            append(op);
+        });
+    }
+
+    /**
+     * Records the current rotation and position of the given component after it was rotated
+     * @param comp The rotated component
+     */
+    public void componentRotated(EditorComponent comp) {
+        long id = comp.getId();
+        double x = comp.getPosition().x;
+        double y = comp.getPosition().y;
+        int rotation = comp.getRotation();
+        submit(() -> {
+            op.code = ROTATE;
+            op.key1 = key(id);
+            op.x = x;
+            op.y = y;
+            op.rotation = rotation;
+            append(op);
+        });
+    }
+
+    /**
+     * Records that the given Line was added to the project. Both of its components must already be recorded
+     * @param line The added Line
+     */
+    public void lineAdded(Line line) {
+        submit(() -> {
+            op.code = ADD_LINE;
+            op.key1 = key(line.compId1);
+            op.port1 = line.portId1;
+            op.key2 = key(line.compId2);
+            op.port2 = line.portId2;
+            op.isHoris = line.isHoris;
+            op.movPer = line.movPer;
+            append(op);
+        });
+    }
+
+    /**
+     * Records that the given Line was removed from the project
+     * @param line The removed Line
+     */
+    public void lineRemoved(Line line) {
+        submit(() -> {
+            op.code = REMOVE_LINE;
+            op.key1 = key(line.compId1);
+            op.port1 = line.portId1;
+            op.key2 = key(line.compId2);
+            op.port2 = line.portId2;
+            append(op);
+        });
+    }
+
+    /**
+     * Marks every edit recorded so far as saved and waits for the journal to be written to the storage device.
+     * This only writes the edits made since the last call, so it takes the same time regardless of the size of the project.
+     * The saved edits are compacted into the project file in the background {@link #COMPACT_DELAY} milliseconds later
+     * @throws IOException if an error occurred writing the journal, after which no further edits are recorded and the project must be saved in full
+     */
+    public void commit() throws IOException {
+        try {
+            writer.submit(() -> run(() -> {
+                op.code = SAVE;
+                append(op);
+                flush();
+                channel.force(false);
+                savedLength = channel.position();
+                savedNextKey = nextKey;
+            })).get();
+        } catch(InterruptedException | ExecutionException e) {
+            fail(new IOException(e));
+        }
+        if(failure != null) {
+            throw failure;
+        }
+
+        // The save is durable once the SAVE is forced, so the caller does not wait for the compaction, which is delayed so that saves in quick succession only compact once
+        writer.schedule(this::compactSaved, COMPACT_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Compacts any saved edits into the project file without waiting for {@link #COMPACT_DELAY}, writes every queued edit to the journal file and waits for both to finish.
+     * This lets callers such as tests observe the files without depending on the timing of the background writer
+     * @throws IOException if an error occurred writing the journal
+     */
+    void awaitIdle() throws IOException {
+        try {
+            writer.submit(() -> run(() -> {
+                compactSaved();
+                flush();
+            })).get();
+        } catch(InterruptedException | ExecutionException e) {
+            fail(new IOException(e));
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Stops recording edits and discards any which have not been saved.
+     * The saved edits are compacted into the project file and the journal is deleted in the background, which the editor waits for before exiting.
+     * {@link #open(java.io.File, int)}, {@link #hasUnsavedChanges(java.io.File)} and {@link #recover(java.io.File, boolean)} wait for this to finish before reading the same project
+     * @return A Future which completes once the project file has been updated and the journal deleted
+     */
+    public Future<?> close() {
+        Future<?> closed = writer.submit(() -> {
+            try {
+                channel.close();
+            } catch(IOException e) {
+                fail(e);
+            }
+            if(failure == null) {
+                try {
+                    applyJournal(file, false);
+                } catch(IOException e) {
+                    // The journal is left in place, so the saved edits are recovered when the project is next opened
+                    e.printStackTrace(System.err);
+                }
+            }
+        });
+        closing.put(file, closed);
+        writer.shutdown();
+        return closed;
+    }
+
+    /**
+     * Checks whether the journal of the given project contains edits which were never saved, such as when the editor exits unexpectedly
+     * @param file The project file
+     * @return Whether the project has a journal which applies to it and contains unsaved edits
+     * @throws IOException if an error occurs reading the journal
+     * @see #recover(java.io.File, boolean)
+     */
+    public static boolean hasUnsavedChanges(File file) throws IOException {
+        awaitClosed(file);
+        ByteBuffer journal = readJournal(file);
+        if(journal == null) {
+            return false;
+        }
+        int saved = findSaved(journal);
+        journal.position(HEADER_SIZE);
+        Op op = new Op();
+        while(op.read(journal)) {
+            if(journal.position() > saved) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Applies the edits recorded in the journal of the given project to the project file and deletes the journal.
+     * This must be called before a project is opened. It does nothing if the project has no journal, and deletes the journal without applying it if it was written for a different version of the project file
+     * @param file The project file
+     * @param includeUnsaved Whether edits which were never saved should also be applied
+     * @throws IOException if an error occurs reading the journal or writing the project file
+     * @see #hasUnsavedChanges(java.io.File)
+     */
+    public static void recover(File file, boolean includeUnsaved) throws IOException {
+        awaitClosed(file);
+        applyJournal(file, includeUnsaved);
+    }
+
+    private static void awaitClosed(File file) throws IOException {
+        File canonical = file.getCanonicalFile();
+        Future<?> closed = closing.get(canonical);
+        if(closed != null) {
+            try {
+                closed.get();
+            } catch(InterruptedException | ExecutionException e) {
+                throw new IOException("Could not close the journal of " + canonical, e);
+            }
+            closing.remove(canonical, closed);
+        }
+    }
+
+    private static void applyJournal(File file, boolean includeUnsaved) throws IOException {
+        File journalFile = getJournalFile(file);
+        ByteBuffer journal = readJournal(file);
+        if(journal != null) {
+            int end = includeUnsaved ? journal.limit() : findSaved(journal);
+            if(end > HEADER_SIZE) {
+                Replay replay = new Replay(ProjectFormat.readRecords(file));
+                journal.position(HEADER_SIZE);
+                journal.limit(end);
+                Op op = new Op();
+                while(op.read(journal)) {
+                    replay.apply(op);
+                }
+                replace(file, replay.compact(new int[replay.records.compCount]));
+            }
+        }
+        Files.deleteIfExists(journalFile.toPath());
+    }
+
+    private void bindKey(long id, int key) {
+        if(key >= keyIds.length) {
+            int oldLength = keyIds.length;
+            keyIds = Arrays.copyOf(keyIds, Math.max(key+1, oldLength*2));
+            Arrays.fill(keyIds, oldLength, keyIds.length, -1);
+        }
+        keyIds[key] = id;
+        keys.put(id, key);
+    }
+
+    private int key(long id) throws IOException {
+        Integer key = keys.get(id);
+        if(key == null) {
+            throw new IOException("Component is not recorded in the journal: " + id);
+        }
+        return key;
+    }
+
+    private void append(Op op) throws IOException {
+        int size = op.size();
+        if(buf.remaining() < size) {
+            flush();
+        }
+        if(buf.remaining() < size) {
+            // The operation holds strings which are too long to buffer, so write it on its own
+            ByteBuffer large = ByteBuffer.allocate(size);
+            op.write(large);
+            large.flip();
+            while(large.hasRemaining()) {
+                channel.write(large);
+            }
+        } else {
+            op.write(buf);
+        }
+    }
+
+    private void flush() throws IOException {
+        buf.flip();
+        while(buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        buf.clear();
+    }
+
+    private void compactSaved() {
+        // Once the journal is closed, closing it has already applied the saved edits to the snapshot. A compaction scheduled by an earlier save may already have applied them as well
+        if(failure == null && channel.isOpen() && savedLength > HEADER_SIZE) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        boolean replaced = false;
+        try {
+            // Edits made since the save may still be buffered, and must be in the file to be carried over to the new journal
+            flush();
+            ByteBuffer journal = readJournal(file);
+            if(journal == null) {
+                throw new IOException("Journal no longer matches " + file);
+            }
+
+            // Apply the saved edits to the snapshot
+            Replay replay = new Replay(ProjectFormat.readRecords(file));
+            journal.position(HEADER_SIZE);
+            journal.limit((int)savedLength);
+            Op replayOp = new Op();
+            while(replayOp.read(journal)) {
+                replay.apply(replayOp);
+            }
+            int[] newIndices = new int[savedNextKey];
+            ProjectFormat.Records records = replay.compact(newIndices);
+
+            // Components added after the last save are given the keys which follow the new snapshot in the order they were added
+            int[] newKeys = Arrays.copyOf(newIndices, nextKey);
+            for(int key = savedNextKey; key < nextKey; key++) {
+                newKeys[key] = records.compCount + key - savedNextKey;
+            }
+
+            // Write the new snapshot, followed by a journal holding only the unsaved edits
+            replace(file, records);
+            replaced = true;
+            File tmp = new File(journalFile.getPath() + ".tmp");
+            try(FileChannel tmpChannel = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + journal.capacity() - (int)savedLength);
+                writeHeader(out, file);
+                journal.limit(journal.capacity());
+                while(replayOp.read(journal)) {
+                    if(replayOp.code != ADD && replayOp.code != SAVE) {
+                        replayOp.key1 = newKeys[replayOp.key1];
+                    }
+                    if(replayOp.code == ADD_LINE || replayOp.code == REMOVE_LINE) {
+                        replayOp.key2 = newKeys[replayOp.key2];
+                    }
+                    replayOp.write(out);
+                }
+                out.flip();
+                while(out.hasRemaining()) {
+                    tmpChannel.write(out);
+                }
+                tmpChannel.force(false);
+            }
+            // If the editor exits before the journal is replaced, the old journal no longer matches the snapshot and only the unsaved edits are lost
+            channel.close();
+            Files.move(tmp.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.WRITE);
+            channel.position(channel.size());
+            savedLength = HEADER_SIZE;
+
+            // Move every bound component to its new key
+            long[] oldKeyIds = keyIds;
+            keyIds = new long[Math.max(nextKey - savedNextKey + records.compCount, 16)];
+            Arrays.fill(keyIds, -1);
+            keys.clear();
+            for(int key = 0; key < nextKey; key++) {
+                if(key < oldKeyIds.length && oldKeyIds[key] != -1 && newKeys[key] != -1) {
+                    bindKey(oldKeyIds[key], newKeys[key]);
+                }
+            }
+            for(int i = 0; i < baseKeys.length; i++) {
+                baseKeys[i] = baseKeys[i] == -1 ? -1 : newKeys[baseKeys[i]];
+            }
+            nextKey = nextKey - savedNextKey + records.compCount;
+            savedNextKey = records.compCount;
+        } catch(IOException | RuntimeException e) {
+            if(!replaced) {
+                // The journal is still valid, so keep appending to it and try again after the next save
+                e.printStackTrace(System.err);
+            } else {
+                fail(e instanceof IOException ? (IOException)e : new IOException(e));
+            }
+        }
+    }
+
+    private void submit(IORunnable task) {
+        writer.execute(() -> run(task));
+    }
+
+    private void run(IORunnable task) {
+        if(failure != null) {
+            return;
+        }
+        try {
+            task.run();
+        } catch(IOException | RuntimeException e) {
+            fail(e instanceof IOException ? (IOException)e : new IOException(e));
+        }
+    }
+
+    private void fail(IOException e) {
+        if(failure == null) {
+            failure = e;
+        }
+    }
+
+    private static File getJournalFile(File file) {
+        return new File(file.getPath() + ".journal");
+    }
+
+    private static void writeHeader(ByteBuffer out, File file) throws IOException {
+        long[] stamp = stamp(file);
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putLong(stamp[0]);
+        out.putLong(stamp[1]);
+        out.putLong(stamp[2]);
+    }
+
+    private static long[] stamp(File file) throws IOException {
+        // Snapshots are only ever replaced by moving a new file over them, so the file key changes even if the size and modification time do not
+        BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        Object fileKey = attrs.fileKey();
+        return new long[] {attrs.size(), attrs.lastModifiedTime().toMillis(), fileKey == null ? 0 : fileKey.hashCode()};
+    }
+
+    private static ByteBuffer readJournal(File file) throws IOException {
+        // Returns the journal of the given project if it exists and applies to the current project file
+        File journalFile = getJournalFile(file);
+        if(!journalFile.exists()) {
+            return null;
+        }
+        ByteBuffer journal;
+        try(FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Journal is too large: " + journalFile);
+            }
+            journal = ByteBuffer.allocate((int)channel.size());
+            while(journal.hasRemaining() && channel.read(journal) >= 0) {}
+            journal.flip();
+        }
+        long[] stamp = stamp(file);
+        if(journal.limit() < HEADER_SIZE || journal.getInt(0) != MAGIC || journal.getInt(4) != VERSION
+                || journal.getLong(8) != stamp[0] || journal.getLong(16) != stamp[1] || journal.getLong(24) != stamp[2]) {
+            return null;
+        }
+        return journal;
+    }
+
+    private static int findSaved(ByteBuffer journal) throws IOException {
+        // Finds the end of the last SAVE
+        int saved = HEADER_SIZE;
+        journal.position(HEADER_SIZE);
+        Op op = new Op();
+        while(op.read(journal)) {
+            if(op.code == SAVE) {
+                saved = journal.position();
+            }
+        }
+        return saved;
+    }
+
+    private static void replace(File file, ProjectFormat.Records records) throws IOException {
+        // Write the whole file before moving it into place so that the project is never left partially written
+        File tmp = new File(file.getPath() + ".tmp");
+        ProjectFormat.writeRecords(tmp, records);
+        try(FileChannel tmpChannel = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE)) {
+            tmpChannel.force(true);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @FunctionalInterface
+    private static interface IORunnable {
+
+        public void run() throws IOException;
+
+    }
+
+    /**
+     * A single journal operation, which is reused to avoid allocating an object for each operation
+     */
+    private static final class Op {
+
+        private byte code;
+        private String type;
+        private double x;
+        private double y;
+        private int rotation;
+        private int key1;
+        private String port1;
+        private int key2;
+        private String port2;
+        private boolean isHoris;
+        private double movPer;
+
+        private int size() {
+            switch(code) {
+                case ADD:
+                    return 1 + size(type) + 8 + 8 + 1;
+                case REMOVE:
+                    return 1 + 4;
+                case MOVE:
+                    return 1 + 4 + 8 + 8;
+                case ROTATE:
+                    return 1 + 4 + 8 + 8 + 1;
+                case ADD_LINE:
+                    return 1 + 4 + size(port1) + 4 + size(port2) + 1 + 8;
+                case REMOVE_LINE:
+                    return 1 + 4 + size(port1) + 4 + size(port2);
+                default:
+                    return 1;
+            }
+        }
+
+        private void write(ByteBuffer out) {
+            out.put(code);
+            switch(code) {
+                case ADD:
+                    putString(out, type);
+                    out.putDouble(x);
+                    out.putDouble(y);
+                    out.put((byte)rotation);
+                    break;
+                case REMOVE:
+                    out.putInt(key1);
+                    break;
+                case ROTATE:
+                case MOVE:
+                    out.putInt(key1);
+                    out.putDouble(x);
+                    out.putDouble(y);
+                    if(code == ROTATE) {
+                        out.put((byte)rotation);
+                    }
+                    break;
+                case ADD_LINE:
+                case REMOVE_LINE:
+                    out.putInt(key1);
+                    putString(out, port1);
+                    out.putInt(key2);
+                    putString(out, port2);
+                    if(code == ADD_LINE) {
+                        out.put((byte)(isHoris ? 1 : 0));
+                        out.putDouble(movPer);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private boolean read(ByteBuffer in) throws IOException {
+            // Returns false at the end of the journal. A partially written operation at the end is left by a crash while writing, so it is ignored
+            int start = in.position();
+            try {
+                code = in.get();
+                key1 = 0;
+                key2 = 0;
+                switch(code) {
+                    case ADD:
+                        type = getString(in);
+                        x = in.getDouble();
+                        y = in.getDouble();
+                        rotation = in.get();
+                        break;
+                    case REMOVE:
+                        key1 = in.getInt();
+                        break;
+                    case ROTATE:
+                    case MOVE:
+                        key1 = in.getInt();
+                        x = in.getDouble();
+                        y = in.getDouble();
+                        if(code == ROTATE) {
+                            rotation = in.get();
+                        }
+                        break;
+                    case ADD_LINE:
+                    case REMOVE_LINE:
+                        key1 = in.getInt();
+                        port1 = getString(in);
+                        key2 = in.getInt();
+                        port2 = getString(in);
+                        if(code == ADD_LINE) {
+                            isHoris = in.get() != 0;
+                            movPer = in.getDouble();
+                        }
+                        break;
+                    case SAVE:
+                        break;
+                    default:
+                        throw new IOException("Invalid journal operation: " + code);
+                }
+                return true;
+            } catch(BufferUnderflowException e) {
+                in.position(start);
+                return false;
+            }
+        }
+
+        private static int size(String s) {
+            return 4 + s.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        private static void putString(ByteBuffer out, String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.putInt(bytes.length);
+            out.put(bytes);
+        }
+
+        private static String getString(ByteBuffer in) throws IOException {
+            int length = in.getInt();
+            if(length < 0) {
+                throw new IOException("Invalid string length: " + length);
+            }
+            if(length > in.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+    }
+
+    /**
+     * Applies journal operations to the records of a snapshot
+     */
+    private static final class Replay {
+
+        private final ProjectFormat.Records records;
+        private final BitSet removedComps;
+        private final BitSet removedLines;
+        // Maps the first endpoint of each Line, as its key and the string index of its port, to the index of the Line
+        private final LongHashMap<Integer> lineIndices;
+
+        private Replay(ProjectFormat.Records records) {
+            this.records = records;
+            this.removedComps = new BitSet(records.compCount);
+            this.removedLines = new BitSet(records.lineCount);
+            this.lineIndices = new LongHashMap<>(records.lineCount);
+            for(int i = 0; i < records.lineCount; i++) {
+                lineIndices.put(endpoint(records.comps1[i], records.ports1[i]), i);
+            }
+        }
+
+        private void apply(Op op) throws IOException {
+            switch(op.code) {
+                case ADD:
+                    records.addComponent(op.type, op.x, op.y, rotation(op.rotation));
+                    break;
+                case REMOVE:
+                    removedComps.set(key(op.key1));
+                    break;
+                case ROTATE:
+                    // Rotating also moves the component around its center
+                    records.rotations[key(op.key1)] = (byte)rotation(op.rotation);
+                    records.xs[key(op.key1)] = op.x;
+                    records.ys[key(op.key1)] = op.y;
+                    break;
+                case MOVE:
+                    records.xs[key(op.key1)] = op.x;
+                    records.ys[key(op.key1)] = op.y;
+                    break;
+                case ADD_LINE:
+                    records.addLine(key(op.key1), op.port1, key(op.key2), op.port2, op.isHoris, op.movPer);
+                    lineIndices.put(endpoint(op.key1, records.intern(op.port1)), records.lineCount-1);
+                    break;
+                case REMOVE_LINE:
+                    Integer line = lineIndices.remove(endpoint(key(op.key1), records.intern(op.port1)));
+                    if(line == null) {
+                        throw new IOException("Removed Line does not exist: " + op.key1 + " " + op.port1);
+                    }
+                    removedLines.set(line);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private ProjectFormat.Records compact(int[] outIndices) {
+            // Fills outIndices with the new index of each component or -1 if it was removed
+            ProjectFormat.Records compacted = new ProjectFormat.Records(records.compCount - removedComps.cardinality(), records.lineCount - removedLines.cardinality());
+            for(int i = 0; i < records.compCount; i++) {
+                if(removedComps.get(i)) {
+                    outIndices[i] = -1;
+                } else {
+                    outIndices[i] = compacted.compCount;
+                    compacted.addComponent(records.strings.get(records.types[i]), records.xs[i], records.ys[i], records.rotations[i]);
+                }
+            }
+            for(int i = 0; i < records.lineCount; i++) {
+                if(!removedLines.get(i) && outIndices[records.comps1[i]] != -1 && outIndices[records.comps2[i]] != -1) {
+                    compacted.addLine(outIndices[records.comps1[i]], records.strings.get(records.ports1[i]), outIndices[records.comps2[i]], records.strings.get(records.ports2[i]),
+                            records.horis[i], records.movPers[i]);
+                }
+            }
+            return compacted;
+        }
+
+        private int key(int key) throws IOException {
+            if(key < 0 || key >= records.compCount || removedComps.get(key)) {
+                throw new IOException("Invalid key: " + key);
+            }
+            return key;
+        }
+
+        private static int rotation(int rotation) throws IOException {
+            if(rotation < 0 || rotation > 3) {
+                throw new IOException("Invalid rotation: " + rotation);
+            }
+            return rotation;
+        }
+
+        private static long endpoint(int key, int port) {
+            return ((long)key << 32) | (port & 0xFFFFFFFFL);
+        }
+
+    }
+
+}
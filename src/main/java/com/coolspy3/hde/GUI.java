@@ -1,5 +1,8 @@
 package com.coolspy3.hde;
 
+import com.coolspy3.hde.sim.Subcircuit;
+import com.coolspy3.hde.sim.Waveform;
+import java.awt.BorderLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import static java.awt.event.InputEvent.*;
@@ -17,6 +20,7 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
 /**
@@ -44,15 +48,19 @@ public class GUI extends JFrame implements ActionListener, WindowListener {
     private JMenuItem saveMenuItem;
     private JMenuItem saveAsMenuItem;
     private JMenuItem exportMenuItem;
+    private JMenuItem openWaveformMenuItem;
+    private JMenuItem closeWaveformMenuItem;
     private JMenuItem quitMenuItem;
     private JMenu optionsMenu;
     private JCheckBoxMenuItem showGridMenuItem;
     private String filename;
 
-    private ContentPanel contentPanel;
+    // Read by the render thread
+    private volatile ContentPanel contentPanel;
+    private WaveformPanel waveformPanel;
 
     /**
-     * Creates a new GUI and initializes it with the default layout and a thread which repaints the frame every <code>FDELAY</code> milliseconds.
+     * Creates a new GUI and initializes it with the default layout and a thread which repaints any changed areas of the content panel every <code>FDELAY</code> milliseconds.
      */
     @SuppressWarnings({"LeakingThisInConstructor", "CallToThreadStartDuringObjectConstruction"})
     public GUI() {
@@ -69,20 +77,31 @@ public class GUI extends JFrame implements ActionListener, WindowListener {
         // Set default vars
         filename = null;
         contentPanel = null;
+        waveformPanel = null;
+
+        // Components whose images were still loading were drawn without them, so redraw everything once an image arrives
+        ResourceManager.addImageListener(() -> {
+            ContentPanel panel = contentPanel;
+            if(panel != null) {
+                panel.markDirty();
+            }
+        });
 
         // Make window visible
         setVisible(true);
 
         // Start render thread
+        // Swing repaints the frame itself when it is resized or uncovered, so only changes made by the content panel need to be repainted
         @SuppressWarnings("SleepWhileInLoop")
         Thread t = new Thread(() -> {
             while(true) {
-                if(isVisible()) {
-                    repaint();
-                    try {
-                        Thread.sleep(FDELAY);
-                    } catch(InterruptedException e) {}
+                ContentPanel panel = contentPanel;
+                if(isVisible() && panel != null) {
+                    panel.repaintDirty();
                 }
+                try {
+                    Thread.sleep(FDELAY);
+                } catch(InterruptedException e) {}
             }
         });
         t.setDaemon(true);
@@ -121,17 +140,34 @@ public class GUI extends JFrame implements ActionListener, WindowListener {
         exportMenuItem.setEnabled(false);
         fileMenu.add(exportMenuItem);
         fileMenu.addSeparator();
+        openWaveformMenuItem = new JMenuItem("Open Waveform");
+        openWaveformMenuItem.setAccelerator(KeyStroke.getKeyStroke(VK_O, CTRL_DOWN_MASK | SHIFT_DOWN_MASK));
+        openWaveformMenuItem.addActionListener(this);
+        fileMenu.add(openWaveformMenuItem);
+        closeWaveformMenuItem = new JMenuItem("Close Waveform");
+        closeWaveformMenuItem.addActionListener(this);
+        closeWaveformMenuItem.setEnabled(false);
+        fileMenu.add(closeWaveformMenuItem);
+        fileMenu.addSeparator();
         quitMenuItem = new JMenuItem("Exit");
         quitMenuItem.addActionListener(this);
         fileMenu.add(quitMenuItem);
         menuBar.add(fileMenu);
         optionsMenu = new JMenu("Options");
         showGridMenuItem = new JCheckBoxMenuItem("Show Grid", true);
+        showGridMenuItem.addActionListener(this);
         optionsMenu.add(showGridMenuItem);
         menuBar.add(optionsMenu);
         setJMenuBar(menuBar);
     }
 
+    /**
+     * @return The file to which the open project was last saved or from which it was opened, or <code>null</code> if it has never been saved
+     */
+    public File getProjectFile() {
+        return filename == null ? null : new File(filename);
+    }
+
     /**
      * Checks the user's selection to see whether a grid should be shown behind displayed components
      * @return Whether a grid should be shown behind components
@@ -168,6 +204,63 @@ public class GUI extends JFrame implements ActionListener, WindowListener {
         return true;
     }
 
+    /**
+     * Prompts the user for a Value Change Dump file and reads it in the background, then shows its traces in a {@link WaveformPanel} below the content panel
+     */
+    public void openWaveform() {
+        JFileChooser fc = new JFileChooser();
+        fc.setAcceptAllFileFilterUsed(false);
+        fc.setFileFilter(new FileNameExtensionFilter("Value Change Dump Files", "vcd"));
+        fc.setFileSelectionMode(JFileChooser.FILES_ONLY);
+        fc.setMultiSelectionEnabled(false);
+        fc.showOpenDialog(this);
+        File file = fc.getSelectedFile();
+        if(file == null || !file.exists()) {
+            return;
+        }
+
+        // Long traces can take several seconds to read, so keep the editor responsive
+        openWaveformMenuItem.setEnabled(false);
+        Thread t = new Thread(() -> {
+            try {
+                Waveform waveform = Waveform.read(file);
+                SwingUtilities.invokeLater(() -> showWaveform(new WaveformPanel(waveform)));
+            } catch(IOException | RuntimeException | OutOfMemoryError e) {
+                // Malformed files may fail while parsing and very long traces may not fit in memory, both of which should be reported like a read error
+                e.printStackTrace(System.err);
+                String message = e.getMessage() == null ? e.toString() : e.getMessage();
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this, "Could Not Read Waveform: " + message, "Open Waveform", JOptionPane.ERROR_MESSAGE));
+            } finally {
+                // Allow another file to be opened however the read ended
+                SwingUtilities.invokeLater(() -> openWaveformMenuItem.setEnabled(true));
+            }
+        }, "Waveform Reader");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Removes the waveform panel, if one is open
+     */
+    public void closeWaveform() {
+        if(waveformPanel != null) {
+            remove(waveformPanel);
+            waveformPanel = null;
+            closeWaveformMenuItem.setEnabled(false);
+            revalidate();
+            repaint();
+        }
+    }
+
+    private void showWaveform(WaveformPanel panel) {
+        // Replace any open waveform
+        closeWaveform();
+        waveformPanel = panel;
+        add(waveformPanel, BorderLayout.SOUTH);
+        closeWaveformMenuItem.setEnabled(true);
+        revalidate();
+    }
+
     /**
      * Prompts the user to save any unsaved data
      * @return Whether the data was successfully saved
@@ -257,6 +350,12 @@ public class GUI extends JFrame implements ActionListener, WindowListener {
             // There is no data to save
             return true;
         }
+        Subcircuit loop = contentPanel.findSubcircuitUsing(file);
+        if(loop != null) {
+            // The project would contain itself and could never be opened again
+            JOptionPane.showMessageDialog(this, "Could Not Save Project: Subcircuit " + loop.getName() + " Uses " + file.getName(), "Save Project", JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
         if(file.exists()) {
             // Ask to overwrite file
             int op = JOptionPane.showConfirmDialog(this, "File Already Exists! Overwrite?", "Save Project", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
@@ -310,13 +409,26 @@ public class GUI extends JFrame implements ActionListener, WindowListener {
 
                 // If the file is not null, check if it exists. If it does, attempt to close the open project
                 if(file != null && file.exists() && closeContentPanel()) {
+                    try {
+                        // Apply any edits left in the project's journal, asking whether to keep those which were never saved
+                        boolean recoverUnsaved = EditJournal.hasUnsavedChanges(file) && JOptionPane.showConfirmDialog(this,
+                                "This Project Has Unsaved Changes From a Previous Session. Recover Them?", "Recover Changes", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE) == JOptionPane.YES_OPTION;
+                        EditJournal.recover(file, recoverUnsaved);
+
+                        // Create a new editor
+                        contentPanel = new ContentPanel(this, file);
+                    } catch(IOException exc) {
+                        // The project or a subcircuit it uses may be missing or damaged, which should not close the editor
+                        exc.printStackTrace(System.err);
+                        filename = null;
+                        JOptionPane.showMessageDialog(this, "Could Not Open Project: " + exc.getMessage(), "Open Project", JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+                    add(contentPanel);
+
                     // Store the file name
                     filename = file.getCanonicalPath();
 
-                    // Create a new editor
-                    contentPanel = new ContentPanel(this, file);
-                    add(contentPanel);
-
                     // Enable saving
                     saveMenuItem.setEnabled(true);
                     saveAsMenuItem.setEnabled(true);
@@ -333,8 +445,15 @@ public class GUI extends JFrame implements ActionListener, WindowListener {
                 saveAs();
             } else if(e.getSource() == exportMenuItem) {
                 JOptionPane.showMessageDialog(this, "Exporting is not yet supported!", "Export", JOptionPane.ERROR_MESSAGE);
+            } else if(e.getSource() == openWaveformMenuItem) {
+                openWaveform();
+            } else if(e.getSource() == closeWaveformMenuItem) {
+                closeWaveform();
             } else if(e.getSource() == quitMenuItem) {
                 dispatchEvent(new WindowEvent(this, WINDOW_CLOSING));
+            } else if(e.getSource() == showGridMenuItem && contentPanel != null) {
+                // Redraw the editor with or without the grid
+                contentPanel.markDirty();
             }
         } catch(IOException exc) {
             exc.printStackTrace(System.err);
@@ -0,0 +1,88 @@
+package com.coolspy3.hde;
+
+import com.coolspy3.hde.gen.CircuitBuilder;
+import com.coolspy3.hde.gen.CircuitBuilder.Signal;
+import com.coolspy3.hde.gen.CircuitGenerator;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Holds the entry point for the circuit generator, which writes generated circuits to project files which can be opened in the editor
+ */
+public class Generator {
+
+    private static final String USAGE = "Usage: Generator <ripple|lookahead|multiplier|lfsr|regfile|random> <size> <file> [seed]\n"
+        + "  ripple, lookahead: size is the width of the adder in bits\n"
+        + "  multiplier: size is the width of each operand in bits\n"
+        + "  lfsr: size is the width of the register in bits\n"
+        + "  regfile: size is the number of 32-bit words\n"
+        + "  random: size is the number of gates";
+
+    /**
+     * The entry point for the circuit generator
+     * @param args The command-line arguments
+     */
+    public static void main(String[] args) {
+        if(args.length < 3 || args.length > 4) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        try {
+            int size = Integer.parseInt(args[1]);
+            long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+            CircuitBuilder builder = generate(args[0], size, seed);
+            ContentPanel.save(new File(args[2]), builder.getComponents(), builder.getLines());
+            System.out.println("Wrote " + builder.getComponents().size() + " components and " + builder.getLines().size() + " lines to " + args[2]);
+        } catch(IllegalArgumentException e) {
+            // NumberFormatException is also an IllegalArgumentException
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+        } catch(IOException e) {
+            e.printStackTrace(System.err);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Generates one of the circuits supported by the command-line interface. Every input of the circuit is an undriven junction
+     * @param type The type of circuit to generate
+     * @param size The size of the circuit, the meaning of which depends on the type
+     * @param seed The seed of the random number generator used by random circuits
+     * @return The builder which holds the generated circuit
+     * @throws IllegalArgumentException if the type is unknown or the size is invalid
+     */
+    public static CircuitBuilder generate(String type, int size, long seed) {
+        if(size < 1) {
+            throw new IllegalArgumentException("Invalid size: " + size);
+        }
+        CircuitBuilder builder = new CircuitBuilder();
+        switch(type) {
+            case "ripple":
+                CircuitGenerator.rippleCarryAdder(builder, builder.inputs(size), builder.inputs(size), builder.input());
+                break;
+            case "lookahead":
+                CircuitGenerator.carryLookaheadAdder(builder, builder.inputs(size), builder.inputs(size), builder.input());
+                break;
+            case "multiplier":
+                CircuitGenerator.arrayMultiplier(builder, builder.inputs(size), builder.inputs(size));
+                break;
+            case "lfsr":
+                CircuitGenerator.lfsr(builder, size, size > 1 ? new int[] {size-1, size-2} : new int[] {0}, builder.input(), builder.input());
+                break;
+            case "regfile":
+                int addressBits = Math.max(1, 32-Integer.numberOfLeadingZeros(size-1));
+                Signal[] data = builder.inputs(32);
+                CircuitGenerator.registerFile(builder, size, data, builder.inputs(addressBits), builder.input());
+                break;
+            case "random":
+                CircuitGenerator.randomDag(builder, builder.inputs(Math.max(1, (int)Math.sqrt(size))), size, new Random(seed));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown circuit type: " + type);
+        }
+        return builder;
+    }
+
+}
@@ -1,6 +1,8 @@
 package com.coolspy3.hde;
 
+import com.coolspy3.hde.component.EditorComponent;
 import java.io.Serializable;
+import java.util.NoSuchElementException;
 
 /**
  * Represents a line connecting two components
@@ -34,6 +36,13 @@ public class Line implements Serializable {
      */
     public final double movPer;
 
+    // The corners of this Line in component coordinate space, along with the components and versions they were computed from
+    private transient double[] route;
+    private transient EditorComponent routeComp1;
+    private transient EditorComponent routeComp2;
+    private transient int routeVersion1;
+    private transient int routeVersion2;
+
     /**
      * Creates a new Line
      * @param compId1 The id of the first component to which this Line is connected
@@ -52,4 +61,31 @@ public class Line implements Serializable {
         this.movPer = movPer;
     }
 
+    /**
+     * Retrieves the corners of this Line in component coordinate space. The result is cached until one of the connected components is moved or rotated, so it must not be modified
+     * @return An array containing the x and y coordinates of the start position, both bends, and the end position of this Line in that order
+     * @see Utils#routeLine(double, double, double, double, boolean, double, double[]) 
+     * @see EditorComponent#getGeometryVersion() 
+     */
+    public double[] getRoute() {
+        EditorComponent comp1 = (EditorComponent)ResourceManager.getComponent(compId1);
+        EditorComponent comp2 = (EditorComponent)ResourceManager.getComponent(compId2);
+        if(route == null || comp1 != routeComp1 || comp2 != routeComp2 || comp1.getGeometryVersion() != routeVersion1 || comp2.getGeometryVersion() != routeVersion2) {
+            int port1 = comp1.getPortIndex(portId1);
+            int port2 = comp2.getPortIndex(portId2);
+            if(port1 < 0 || port2 < 0) {
+                throw new NoSuchElementException("No such port: " + (port1 < 0 ? portId1 : portId2));
+            }
+            if(route == null) {
+                route = new double[8];
+            }
+            Utils.routeLine(comp1.getPortX(port1), comp1.getPortY(port1), comp2.getPortX(port2), comp2.getPortY(port2), isHoris, movPer, route);
+            routeComp1 = comp1;
+            routeComp2 = comp2;
+            routeVersion1 = comp1.getGeometryVersion();
+            routeVersion2 = comp2.getGeometryVersion();
+        }
+        return route;
+    }
+
 }
@@ -0,0 +1,194 @@
+package com.coolspy3.hde;
+
+import java.util.Arrays;
+
+/**
+ * A hash map with primitive long keys which uses open addressing with linear probing so that lookups do not box their keys or allocate entries.
+ * This class is not thread-safe
+ * @param <V> The type of the values stored in this map
+ */
+public final class LongHashMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+
+    /**
+     * Creates a new, empty LongHashMap
+     */
+    public LongHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Creates a new, empty LongHashMap which can hold the given number of entries without resizing
+     * @param expectedSize The number of entries which the map is expected to hold
+     */
+    public LongHashMap(int expectedSize) {
+        allocate(tableSize(expectedSize));
+    }
+
+    /**
+     * @return The number of entries in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Whether this map contains no entries
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param key The key for which to search
+     * @return Whether this map contains a value for the given key
+     */
+    public boolean containsKey(long key) {
+        return values[indexOf(key)] != null;
+    }
+
+    /**
+     * @param key The key for which to search
+     * @return The value associated with the given key or <code>null</code> if none exists
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        return (V)values[indexOf(key)];
+    }
+
+    /**
+     * Retrieves the value associated with the given key while another thread may be modifying this map.
+     * This method never throws an exception or fails to return, but its result is only meaningful if no modification overlapped with the call, which the caller must check, for example with {@link java.util.concurrent.locks.StampedLock#validate(long)}
+     * @param key The key for which to search
+     * @return The value associated with the given key or <code>null</code> if none exists, or an arbitrary value if the map was modified during the call
+     */
+    @SuppressWarnings("unchecked")
+    V getOptimistic(long key) {
+        // Read each table once so that a concurrent resize cannot change them part way through the search
+        long[] k = keys;
+        Object[] v = values;
+        if(k == null || v == null || k.length != v.length) {
+            return null;
+        }
+        int m = k.length-1;
+        int index = hash(key) & m;
+        for(int probes = 0; probes < k.length; probes++) {
+            Object value = v[index];
+            if(value == null || k[index] == key) {
+                return (V)value;
+            }
+            index = (index+1) & m;
+        }
+        return null;
+    }
+
+    /**
+     * Associates the given value with the given key
+     * @param key The key with which to associate the value
+     * @param value The value to store
+     * @return The value which was previously associated with the key or <code>null</code> if none exists
+     * @throws IllegalArgumentException if the value is <code>null</code>
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if(value == null) {
+            throw new IllegalArgumentException("Values cannot be null");
+        }
+        int index = indexOf(key);
+        V old = (V)values[index];
+        if(old == null) {
+            keys[index] = key;
+            size++;
+        }
+        values[index] = value;
+        if(old == null && size > (mask+1) * 3 / 4) {
+            // Keep the load factor below 0.75 so that probe sequences stay short
+            allocate((mask+1) * 2);
+        }
+        return old;
+    }
+
+    /**
+     * Removes the value associated with the given key
+     * @param key The key to remove
+     * @return The value which was associated with the key or <code>null</code> if none exists
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int index = indexOf(key);
+        V old = (V)values[index];
+        if(old == null) {
+            return null;
+        }
+        size--;
+
+        // Shift later entries in the probe sequence back into the gap so that lookups never stop early
+        int gap = index;
+        int next = (gap+1) & mask;
+        while(values[next] != null) {
+            int home = hash(keys[next]) & mask;
+            if(((next-home) & mask) >= ((next-gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next+1) & mask;
+        }
+        values[gap] = null;
+        return old;
+    }
+
+    /**
+     * Removes every entry from this map
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private int indexOf(long key) {
+        int index = hash(key) & mask;
+        while(values[index] != null && keys[index] != key) {
+            index = (index+1) & mask;
+        }
+        return index;
+    }
+
+    private void allocate(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity-1;
+        if(oldValues != null) {
+            for(int i = 0; i < oldValues.length; i++) {
+                if(oldValues[i] != null) {
+                    int index = indexOf(oldKeys[i]);
+                    keys[index] = oldKeys[i];
+                    values[index] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    private static int tableSize(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while(capacity * 3 / 4 < expectedSize) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    private static int hash(long key) {
+        // Ids are mostly sequential, so mix the bits to spread neighbouring keys across the table
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+
+}
@@ -0,0 +1,375 @@
+package com.coolspy3.hde;
+
+import com.coolspy3.hde.component.EditorComponent;
+import com.coolspy3.hde.component.SpatialIndex;
+import com.coolspy3.hde.sim.Subcircuit;
+import java.awt.Dimension;
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Provides access to a project saved in the {@link ProjectFormat} by keeping its records in a single buffer and only creating the components in the areas which are requested.
+ * Opening a project only reads the positions of its components to build an index of them, so the time and memory it takes do not depend on the size of the components or the number of ports.
+ * Once a component has been created, it is never created again, so it can be edited freely. This class is not thread-safe.
+ * <p>
+ * The file is read into the buffer and closed rather than memory-mapped, since {@link EditJournal} replaces the project file while it is open, and a file cannot be replaced on Windows while it is mapped.
+ * A mapping can only be released by the garbage collector, so the file could not be replaced reliably even once every component had been created
+ */
+public final class MappedProject {
+
+    private final ByteBuffer buf;
+    private final String[] strings;
+    private final int compOffset;
+    private final int compCount;
+    private final int lineOffset;
+    private final int lineCount;
+    private final ProjectFormat.ComponentType[] types;
+    // The size of each component type when it is not rotated
+    private final Dimension[] sizes;
+    // Maps each grid cell to the indices of the components which overlap it. The first element of each array is the number of indices it holds
+    private final LongHashMap<int[]> cells;
+    // The Lines connected to component i are lineIndices[lineStarts[i]] to lineIndices[lineStarts[i+1]-1]
+    private final int[] lineStarts;
+    private final int[] lineIndices;
+    private final EditorComponent[] comps;
+    // Maps the id of each created component to its index in the file
+    private final LongHashMap<Integer> indices;
+    private final BitSet loadedLines;
+    // The components whose Lines have all been created, or which were removed and whose Lines will never be created
+    private final BitSet expanded;
+    private int expandedComps;
+
+    private MappedProject(ByteBuffer buf, File file) throws IOException {
+        this.buf = buf;
+        if(buf.getInt(4) < 1 || buf.getInt(4) > ProjectFormat.VERSION) {
+            throw new IOException("Unsupported project version: " + buf.getInt(4));
+        }
+
+        // Read the string table, which is small enough to keep on the heap
+        int offset = 8;
+        this.strings = new String[count(offset, 4)];
+        offset += 4;
+        for(int i = 0; i < strings.length; i++) {
+            int length = count(offset, 4);
+            offset += 4;
+            check(offset, length);
+            byte[] bytes = new byte[length];
+            ByteBuffer bytesBuf = buf.duplicate();
+            bytesBuf.position(offset);
+            bytesBuf.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            offset += length;
+        }
+
+        // Find the component and Line records
+        this.compCount = count(offset, 4);
+        this.compOffset = offset+4;
+        check(compOffset, (long)compCount * ProjectFormat.COMPONENT_SIZE);
+        offset = compOffset + compCount * ProjectFormat.COMPONENT_SIZE;
+        this.lineCount = count(offset, 4);
+        this.lineOffset = offset+4;
+        check(lineOffset, (long)lineCount * ProjectFormat.LINE_SIZE);
+
+        // Find the size of each type of component by creating one
+        this.types = new ProjectFormat.ComponentType[strings.length];
+        this.sizes = new Dimension[strings.length];
+        for(int i = 0; i < compCount; i++) {
+            int type = getType(i);
+            if(type < 0 || type >= strings.length) {
+                throw new IOException("Invalid index: " + type);
+            }
+            if(getRotation(i) < 0 || getRotation(i) > 3) {
+                throw new IOException("Invalid rotation: " + getRotation(i));
+            }
+            if(types[type] == null) {
+                types[type] = ProjectFormat.findType(strings[type], file);
+                sizes[type] = new Dimension(types[type].create(0, 0, 0).getSize());
+            }
+        }
+
+        // Index the components by the cells they overlap, padded in the same way as a SpatialIndex
+        this.cells = new LongHashMap<>();
+        for(int i = 0; i < compCount; i++) {
+            int cx0 = cell(getX(i)-1);
+            int cy0 = cell(getY(i)-1);
+            int cx1 = cell(getX(i)+getWidth(i)+1);
+            int cy1 = cell(getY(i)+getHeight(i)+1);
+            for(int cx = cx0; cx <= cx1; cx++) {
+                for(int cy = cy0; cy <= cy1; cy++) {
+                    long key = key(cx, cy);
+                    int[] cell = cells.get(key);
+                    if(cell == null) {
+                        cell = new int[4];
+                    } else if(cell[0]+1 == cell.length) {
+                        cell = Arrays.copyOf(cell, cell.length*2);
+                    }
+                    cell[++cell[0]] = i;
+                    cells.put(key, cell);
+                }
+            }
+        }
+
+        // Build the list of Lines connected to each component
+        this.lineStarts = new int[compCount+1];
+        for(int i = 0; i < lineCount; i++) {
+            int line = lineOffset + i * ProjectFormat.LINE_SIZE;
+            int comp1 = buf.getInt(line);
+            int comp2 = buf.getInt(line+8);
+            int port1 = buf.getInt(line+4);
+            int port2 = buf.getInt(line+12);
+            if(comp1 < 0 || comp1 >= compCount || comp2 < 0 || comp2 >= compCount || port1 < 0 || port1 >= strings.length || port2 < 0 || port2 >= strings.length) {
+                throw new IOException("Invalid Line in " + file + ": " + i);
+            }
+            lineStarts[comp1+1]++;
+            lineStarts[comp2+1]++;
+        }
+        for(int i = 0; i < compCount; i++) {
+            lineStarts[i+1] += lineStarts[i];
+        }
+        this.lineIndices = new int[lineStarts[compCount]];
+        int[] next = Arrays.copyOf(lineStarts, compCount);
+        for(int i = 0; i < lineCount; i++) {
+            int line = lineOffset + i * ProjectFormat.LINE_SIZE;
+            lineIndices[next[buf.getInt(line)]++] = i;
+            lineIndices[next[buf.getInt(line+8)]++] = i;
+        }
+
+        this.comps = new EditorComponent[compCount];
+        this.indices = new LongHashMap<>();
+        this.loadedLines = new BitSet(lineCount);
+        this.expanded = new BitSet(compCount);
+        this.expandedComps = 0;
+    }
+
+    /**
+     * Opens the given project file without creating any of its components
+     * @param file The file to open
+     * @return The opened project or <code>null</code> if the file was saved by Java serialization in an earlier version of the editor and must be read with {@link ProjectFormat#read(java.io.File, java.util.Collection, java.util.Collection)}
+     * @throws IOException if an error occurs reading or parsing the file
+     */
+    public static MappedProject open(File file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Project is too large to open: " + file);
+            }
+            ByteBuffer buf = ByteBuffer.allocate((int)channel.size());
+            while(buf.hasRemaining() && channel.read(buf) >= 0) {}
+            buf.flip();
+            if(buf.limit() >= 2 && (buf.getShort(0) & 0xFFFF) == 0xACED) {
+                return null;
+            }
+            if(buf.limit() < 8 || buf.getInt(0) != ProjectFormat.MAGIC) {
+                throw new IOException("Not a project file: " + file);
+            }
+            return new MappedProject(buf, file);
+        } catch(IndexOutOfBoundsException e) {
+            throw new IOException("Truncated project file: " + file, e);
+        }
+    }
+
+    /**
+     * @return The total number of components in this project, including those which have not been created
+     */
+    public int getComponentCount() {
+        return compCount;
+    }
+
+    /**
+     * @param comp A component created by this project
+     * @return The index of the component in the file or -1 if it was not created by this project
+     */
+    public int indexOf(EditorComponent comp) {
+        Integer i = indices.get(comp.getId());
+        return i == null || comps[i] != comp ? -1 : i;
+    }
+
+    /**
+     * @return Whether every component and Line in this project has been created or removed
+     */
+    public boolean isFullyLoaded() {
+        return expandedComps == compCount;
+    }
+
+    /**
+     * Adds the definition of every type of subcircuit saved in this project, including those whose components have not been created
+     * @param outDefinitions A Collection which should receive the definitions
+     */
+    public void getDefinitions(Collection<Subcircuit> outDefinitions) {
+        for(ProjectFormat.ComponentType type: types) {
+            if(type != null && type.getDefinition() != null) {
+                outDefinitions.add(type.getDefinition());
+            }
+        }
+    }
+
+    /**
+     * Records that a component created by this project was removed, so that the Lines which connected it to components which have not been created yet are never created
+     * @param comp The removed component
+     */
+    public void remove(EditorComponent comp) {
+        int i = indexOf(comp);
+        if(i == -1) {
+            return;
+        }
+        if(!expanded.get(i)) {
+            expanded.set(i);
+            expandedComps++;
+        }
+        for(int j = lineStarts[i]; j < lineStarts[i+1]; j++) {
+            loadedLines.set(lineIndices[j]);
+        }
+    }
+
+    /**
+     * Creates every component which may intersect the given area and has not already been created, along with the Lines connected to them.
+     * The components at the other ends of those Lines are created as well, so every returned Line is connected to created components
+     * @param area The area in component coordinate space
+     * @param outComps A Collection which should receive the newly created components, in the order they were saved
+     * @param outLines A Collection which should receive the newly created Lines
+     */
+    public void load(Rectangle2D area, Collection<EditorComponent> outComps, Collection<Line> outLines) {
+        if(expandedComps == compCount) {
+            return;
+        }
+        int cx0 = cell(area.getMinX());
+        int cy0 = cell(area.getMinY());
+        int cx1 = cell(area.getMaxX());
+        int cy1 = cell(area.getMaxY());
+        int[] found = new int[16];
+        int foundCount = 0;
+        for(int cx = cx0; cx <= cx1; cx++) {
+            for(int cy = cy0; cy <= cy1; cy++) {
+                int[] cell = cells.get(key(cx, cy));
+                if(cell == null) {
+                    continue;
+                }
+                for(int j = 1; j <= cell[0]; j++) {
+                    int i = cell[j];
+                    // Components are stored in every cell which they cover, so only take them from the first cell which is also in the area.
+                    // Components created at the far end of a Line may still have Lines of their own which have not been created
+                    if(expanded.get(i) || cx != Math.max(cx0, cell(getX(i)-1)) || cy != Math.max(cy0, cell(getY(i)-1))
+                            || !area.intersects(getX(i)-1, getY(i)-1, getWidth(i)+2, getHeight(i)+2)) {
+                        continue;
+                    }
+                    if(foundCount == found.length) {
+                        found = Arrays.copyOf(found, found.length*2);
+                    }
+                    found[foundCount++] = i;
+                }
+            }
+        }
+        Arrays.sort(found, 0, foundCount);
+        for(int j = 0; j < foundCount; j++) {
+            loadComponent(found[j], outComps, outLines);
+        }
+    }
+
+    /**
+     * Creates every component and Line in this project which has not already been created
+     * @param outComps A Collection which should receive the newly created components, in the order they were saved
+     * @param outLines A Collection which should receive the newly created Lines
+     */
+    public void loadAll(Collection<EditorComponent> outComps, Collection<Line> outLines) {
+        for(int i = 0; i < compCount; i++) {
+            loadComponent(i, outComps, outLines);
+        }
+    }
+
+    private void loadComponent(int i, Collection<EditorComponent> outComps, Collection<Line> outLines) {
+        if(expanded.get(i)) {
+            return;
+        }
+        expanded.set(i);
+        expandedComps++;
+        if(comps[i] == null) {
+            comps[i] = create(i);
+            outComps.add(comps[i]);
+        }
+        for(int j = lineStarts[i]; j < lineStarts[i+1]; j++) {
+            int lineIndex = lineIndices[j];
+            if(loadedLines.get(lineIndex)) {
+                continue;
+            }
+            loadedLines.set(lineIndex);
+            int line = lineOffset + lineIndex * ProjectFormat.LINE_SIZE;
+            int comp1 = buf.getInt(line);
+            int comp2 = buf.getInt(line+8);
+            // Create the component at the other end so that the Line can be drawn
+            int other = comp1 == i ? comp2 : comp1;
+            if(comps[other] == null) {
+                comps[other] = create(other);
+                outComps.add(comps[other]);
+            }
+            outLines.add(new Line(comps[comp1].getId(), strings[buf.getInt(line+4)], comps[comp2].getId(), strings[buf.getInt(line+12)], buf.get(line+16) != 0, buf.getDouble(line+17)));
+        }
+    }
+
+    private EditorComponent create(int i) {
+        try {
+            EditorComponent comp = types[getType(i)].create(getX(i), getY(i), getRotation(i));
+            indices.put(comp.getId(), i);
+            return comp;
+        } catch(IOException e) {
+            // Every type was created successfully when the project was opened
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int getType(int i) {
+        return buf.getInt(compOffset + i * ProjectFormat.COMPONENT_SIZE);
+    }
+
+    private double getX(int i) {
+        return buf.getDouble(compOffset + i * ProjectFormat.COMPONENT_SIZE + 4);
+    }
+
+    private double getY(int i) {
+        return buf.getDouble(compOffset + i * ProjectFormat.COMPONENT_SIZE + 12);
+    }
+
+    private int getRotation(int i) {
+        return buf.get(compOffset + i * ProjectFormat.COMPONENT_SIZE + 20);
+    }
+
+    private int getWidth(int i) {
+        Dimension size = sizes[getType(i)];
+        return getRotation(i) % 2 == 0 ? size.width : size.height;
+    }
+
+    private int getHeight(int i) {
+        Dimension size = sizes[getType(i)];
+        return getRotation(i) % 2 == 0 ? size.height : size.width;
+    }
+
+    private int count(int offset, int size) throws IOException {
+        check(offset, size);
+        int n = buf.getInt(offset);
+        if(n < 0) {
+            throw new IOException("Invalid count: " + n);
+        }
+        return n;
+    }
+
+    private void check(long offset, long length) throws IOException {
+        if(offset + length > buf.limit()) {
+            throw new IOException("Truncated project file");
+        }
+    }
+
+    private static int cell(double coord) {
+        return (int)Math.floor(coord / SpatialIndex.CELL_SIZE);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long)cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+}
@@ -1,11 +1,15 @@
 package com.coolspy3.hde;
 
+import java.io.Serializable;
+
 /**
  * Represents a group of two objects
  * @param <T> The type of the first object associated with this Pair
  * @param <U> The type of the second object associated with this Pair
  */
-public class Pair<T, U> {
+public class Pair<T, U> implements Serializable {
+
+    private static final long serialVersionUID = -3160904226373307735L;
 
     private T t;
     private U u;
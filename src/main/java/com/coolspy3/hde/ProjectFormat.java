@@ -0,0 +1,499 @@
+package com.coolspy3.hde;
+
+import com.coolspy3.hde.component.EditorComponent;
+import com.coolspy3.hde.component.components.ESubcircuit;
+import com.coolspy3.hde.sim.Subcircuit;
+import java.awt.geom.Point2D;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Reads and writes project files in a compact, versioned binary format.
+ * A file consists of a header, a table of every string used in the file, a record for each component, and a record for each Line:
+ * <pre>
+ * header:    int magic, int version
+ * strings:   int count, then for each string: int length, UTF-8 bytes
+ * components: int count, then for each component: int type (string index of its type), double x, double y, byte rotation
+ * lines:     int count, then for each Line: int component1, int port1 (string index), int component2, int port2 (string index), byte isHoris, double movPer
+ * </pre>
+ * The type of a component is its class name. Subcircuits also record the project they use, as <code>className:path</code> with the path relative to the directory of the file and separated by '/', so every instance of the same project shares one string.
+ * Components are referenced by their position in the file rather than their id, so loaded components are allocated new ids.
+ * Files written by Java serialization in earlier versions of the editor can still be read
+ */
+public final class ProjectFormat {
+
+    /**
+     * The first four bytes of every project file ("HDEP")
+     */
+    public static final int MAGIC = 0x48444550;
+    /**
+     * The version of the format written by {@link #write(java.io.File, java.util.List, java.util.List)}
+     */
+    public static final int VERSION = 1;
+
+    // The first two bytes of a Java serialization stream, which identify projects saved before this format existed
+    private static final int LEGACY_MAGIC = 0xACED;
+    // The size of the buffer used to read and write files, which long strings are split across
+    static final int BUFFER_SIZE = 1 << 16;
+    // The sizes of component and Line records in bytes, which are also used by MappedProject to find records without reading the whole file
+    static final int COMPONENT_SIZE = 4 + 8 + 8 + 1;
+    static final int LINE_SIZE = 4 + 4 + 4 + 4 + 1 + 8;
+
+    /**
+     * Writes the given components and Lines to a file
+     * @param file The file to which to write
+     * @param comps The components to write
+     * @param lines The Lines to write, which must only connect the given components
+     * @throws IOException if an error occurs while writing
+     * @throws IllegalArgumentException if a Line is connected to a component which is not being written
+     * @see #read(java.io.File, java.util.Collection, java.util.Collection)
+     */
+    public static void write(File file, List<? extends EditorComponent> comps, List<Line> lines) throws IOException {
+        // Number the components by their position in the file
+        LongHashMap<Integer> compIndices = new LongHashMap<>(comps.size());
+        Records records = new Records(comps.size(), lines.size());
+        for(int i = 0; i < comps.size(); i++) {
+            EditorComponent comp = comps.get(i);
+            compIndices.put(comp.getId(), i);
+            records.addComponent(getType(comp, file), comp.getPosition().x, comp.getPosition().y, comp.getRotation());
+        }
+        for(Line line: lines) {
+            Integer comp1 = compIndices.get(line.compId1);
+            Integer comp2 = compIndices.get(line.compId2);
+            if(comp1 == null || comp2 == null) {
+                throw new IllegalArgumentException("Line is connected to a component which is not being saved: " + (comp1 == null ? line.compId1 : line.compId2));
+            }
+            records.addLine(comp1, line.portId1, comp2, line.portId2, line.isHoris, line.movPer);
+        }
+        writeRecords(file, records);
+    }
+
+    /**
+     * Reads the components and Lines saved in the given file, which may have been written by this class or by Java serialization in earlier versions of the editor.
+     * This does not register the loaded components with {@link ResourceManager#forceLoad(java.util.ArrayList, java.util.ArrayList)}
+     * @param file The file from which to read
+     * @param outComps A Collection which should receive the loaded components
+     * @param outLines A Collection which should receive the loaded Lines
+     * @throws IOException if an error occurs reading or parsing the file
+     * @see #write(java.io.File, java.util.List, java.util.List)
+     */
+    @SuppressWarnings("unchecked")
+    public static void read(File file, Collection<EditorComponent> outComps, Collection<Line> outLines) throws IOException {
+        if(isLegacy(file)) {
+            // Let Java serialization read the whole file
+            try(ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(Channels.newInputStream(FileChannel.open(file.toPath(), StandardOpenOption.READ))))) {
+                outComps.addAll((Collection<? extends EditorComponent>)ois.readObject());
+                outLines.addAll((Collection<? extends Line>)ois.readObject());
+            } catch(ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+            return;
+        }
+        Records records = readRecords(file);
+
+        EditorComponent[] comps = new EditorComponent[records.compCount];
+        // Each type is looked up once and reused for every component of that type
+        ComponentType[] types = new ComponentType[records.strings.size()];
+        for(int i = 0; i < comps.length; i++) {
+            int type = records.types[i];
+            if(types[type] == null) {
+                types[type] = findType(records.strings.get(type), file);
+            }
+            comps[i] = types[type].create(records.xs[i], records.ys[i], records.rotations[i]);
+        }
+
+        ArrayList<Line> lines = new ArrayList<>(records.lineCount);
+        for(int i = 0; i < records.lineCount; i++) {
+            lines.add(new Line(comps[records.comps1[i]].getId(), records.strings.get(records.ports1[i]), comps[records.comps2[i]].getId(), records.strings.get(records.ports2[i]),
+                    records.horis[i], records.movPers[i]));
+        }
+
+        outComps.addAll(List.of(comps));
+        outLines.addAll(lines);
+    }
+
+    /**
+     * @param file The file to check
+     * @return Whether the given file was saved by Java serialization in an earlier version of the editor
+     * @throws IOException if an error occurs reading the file
+     */
+    public static boolean isLegacy(File file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(2);
+            while(buf.hasRemaining() && channel.read(buf) >= 0) {}
+            return !buf.hasRemaining() && (buf.getShort(0) & 0xFFFF) == LEGACY_MAGIC;
+        }
+    }
+
+    /**
+     * Writes the given records to a file in this format
+     * @param file The file to which to write
+     * @param records The records to write
+     * @throws IOException if an error occurs while writing
+     */
+    static void writeRecords(File file, Records records) throws IOException {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buf.putInt(MAGIC);
+            buf.putInt(VERSION);
+
+            buf.putInt(records.strings.size());
+            for(String s: records.strings) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                reserve(channel, buf, 4);
+                buf.putInt(bytes.length);
+                // Strings may be longer than the buffer, so write them in pieces
+                for(int offset = 0; offset < bytes.length;) {
+                    reserve(channel, buf, 1);
+                    int length = Math.min(buf.remaining(), bytes.length-offset);
+                    buf.put(bytes, offset, length);
+                    offset += length;
+                }
+            }
+
+            reserve(channel, buf, 4);
+            buf.putInt(records.compCount);
+            for(int i = 0; i < records.compCount; i++) {
+                reserve(channel, buf, COMPONENT_SIZE);
+                buf.putInt(records.types[i]);
+                buf.putDouble(records.xs[i]);
+                buf.putDouble(records.ys[i]);
+                buf.put(records.rotations[i]);
+            }
+
+            reserve(channel, buf, 4);
+            buf.putInt(records.lineCount);
+            for(int i = 0; i < records.lineCount; i++) {
+                reserve(channel, buf, LINE_SIZE);
+                buf.putInt(records.comps1[i]);
+                buf.putInt(records.ports1[i]);
+                buf.putInt(records.comps2[i]);
+                buf.putInt(records.ports2[i]);
+                buf.put((byte)(records.horis[i] ? 1 : 0));
+                buf.putDouble(records.movPers[i]);
+            }
+
+            flush(channel, buf);
+        }
+    }
+
+    /**
+     * Reads the records saved in a file in this format without creating any components
+     * @param file The file from which to read
+     * @return The records saved in the file
+     * @throws IOException if an error occurs reading or parsing the file
+     */
+    static Records readRecords(File file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buf.flip();
+            require(channel, buf, 8);
+            if(buf.getInt() != MAGIC) {
+                throw new IOException("Not a project file: " + file);
+            }
+            int version = buf.getInt();
+            if(version < 1 || version > VERSION) {
+                throw new IOException("Unsupported project version: " + version);
+            }
+
+            require(channel, buf, 4);
+            int stringCount = count(buf.getInt());
+            Records records = new Records(0, 0);
+            for(int i = 0; i < stringCount; i++) {
+                require(channel, buf, 4);
+                byte[] bytes = new byte[count(buf.getInt())];
+                for(int offset = 0; offset < bytes.length;) {
+                    require(channel, buf, 1);
+                    int length = Math.min(buf.remaining(), bytes.length-offset);
+                    buf.get(bytes, offset, length);
+                    offset += length;
+                }
+                records.intern(new String(bytes, StandardCharsets.UTF_8));
+            }
+            if(records.strings.size() != stringCount) {
+                throw new IOException("Duplicate string in project file: " + file);
+            }
+
+            require(channel, buf, 4);
+            int compCount = count(buf.getInt());
+            records.ensureComponents(compCount);
+            for(int i = 0; i < compCount; i++) {
+                require(channel, buf, COMPONENT_SIZE);
+                int type = index(buf.getInt(), stringCount);
+                double x = buf.getDouble();
+                double y = buf.getDouble();
+                int rotation = buf.get();
+                if(rotation < 0 || rotation > 3) {
+                    throw new IOException("Invalid rotation: " + rotation);
+                }
+                records.addComponent(type, x, y, rotation);
+            }
+
+            require(channel, buf, 4);
+            int lineCount = count(buf.getInt());
+            records.ensureLines(lineCount);
+            for(int i = 0; i < lineCount; i++) {
+                require(channel, buf, LINE_SIZE);
+                int comp1 = index(buf.getInt(), compCount);
+                int port1 = index(buf.getInt(), stringCount);
+                int comp2 = index(buf.getInt(), compCount);
+                int port2 = index(buf.getInt(), stringCount);
+                boolean isHoris = buf.get() != 0;
+                double movPer = buf.getDouble();
+                records.addLine(comp1, port1, comp2, port2, isHoris, movPer);
+            }
+            return records;
+        }
+    }
+
+    /**
+     * Determines the type under which a component is saved
+     * @param comp The component
+     * @param file The project file to which the component is being saved
+     * @return The class name of the component, followed for subcircuits by a colon and the path of the project they use relative to the directory of the file
+     */
+    static String getType(EditorComponent comp, File file) {
+        if(!(comp instanceof ESubcircuit)) {
+            return comp.getClass().getName();
+        }
+        Path definition = ((ESubcircuit)comp).getDefinition().getFile().toPath();
+        String path;
+        try {
+            path = file.toPath().toAbsolutePath().normalize().getParent().relativize(definition).toString();
+        } catch(IllegalArgumentException e) {
+            // The project is on a different drive, so it can only be referenced by its absolute path
+            path = definition.toString();
+        }
+        return comp.getClass().getName() + ':' + path.replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Looks up a type of component saved in a project file
+     * @param type The type, as returned by {@link #getType(com.coolspy3.hde.component.EditorComponent, java.io.File)}
+     * @param file The project file from which the type was read
+     * @return An object which creates components of the given type
+     * @throws IOException if the type does not exist or the project used by a subcircuit cannot be loaded
+     */
+    static ComponentType findType(String type, File file) throws IOException {
+        int separator = type.indexOf(':');
+        String className = separator == -1 ? type : type.substring(0, separator);
+        try {
+            Class<? extends EditorComponent> clazz = Class.forName(className).asSubclass(EditorComponent.class);
+            if(separator == -1) {
+                // Components are created in the same way as EditorComponent.copy()
+                return new ComponentType(clazz.getConstructor(Point2D.Double.class), null);
+            }
+            File definition = new File(type.substring(separator+1).replace('/', File.separatorChar));
+            if(!definition.isAbsolute()) {
+                definition = new File(file.getAbsoluteFile().getParentFile(), definition.getPath());
+            }
+            Subcircuit subcircuit;
+            try {
+                subcircuit = Subcircuit.load(definition);
+            } catch(IOException e) {
+                // Name the subcircuit, since the underlying error may only name a file nested inside it
+                throw new IOException("Could not load subcircuit " + definition + ": " + e.getMessage(), e);
+            }
+            return new ComponentType(clazz.getConstructor(Point2D.Double.class, Subcircuit.class), subcircuit);
+        } catch(ClassNotFoundException | ClassCastException | NoSuchMethodException | SecurityException e) {
+            throw new IOException("Unknown component type: " + type, e);
+        }
+    }
+
+    private static int count(int n) throws IOException {
+        if(n < 0) {
+            throw new IOException("Invalid count: " + n);
+        }
+        return n;
+    }
+
+    private static int index(int i, int length) throws IOException {
+        if(i < 0 || i >= length) {
+            throw new IOException("Invalid index: " + i);
+        }
+        return i;
+    }
+
+    private static void reserve(FileChannel channel, ByteBuffer buf, int n) throws IOException {
+        // Flush the buffer if the next record would not fit
+        if(buf.remaining() < n) {
+            flush(channel, buf);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while(buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        buf.clear();
+    }
+
+    private static void require(FileChannel channel, ByteBuffer buf, int n) throws IOException {
+        // Read more of the file if the next record is not fully buffered
+        if(buf.remaining() >= n) {
+            return;
+        }
+        buf.compact();
+        while(buf.position() < n) {
+            if(channel.read(buf) < 0) {
+                throw new EOFException("Unexpected end of project file");
+            }
+        }
+        buf.flip();
+    }
+
+    /**
+     * Creates the components of one type saved in a project file
+     */
+    static final class ComponentType {
+
+        private final Constructor<? extends EditorComponent> constructor;
+        // The definition shared by every subcircuit of this type, or null if this is not a subcircuit
+        private final Subcircuit definition;
+
+        private ComponentType(Constructor<? extends EditorComponent> constructor, Subcircuit definition) {
+            this.constructor = constructor;
+            this.definition = definition;
+        }
+
+        /**
+         * @return The definition shared by every component of this type or <code>null</code> if this is not a subcircuit
+         */
+        Subcircuit getDefinition() {
+            return definition;
+        }
+
+        EditorComponent create(double x, double y, int rotation) throws IOException {
+            if(rotation < 0 || rotation > 3) {
+                throw new IOException("Invalid rotation: " + rotation);
+            }
+            try {
+                Point2D.Double pos = new Point2D.Double(x, y);
+                EditorComponent comp = definition == null ? constructor.newInstance(pos) : constructor.newInstance(pos, definition);
+                for(int i = 0; i < rotation; i++) {
+                    comp.rotate();
+                }
+                // Rotating moves the component around its center, so restore the saved position afterwards
+                comp.setPosition(x, y);
+                return comp;
+            } catch(IllegalAccessException | InstantiationException | InvocationTargetException e) {
+                throw new IOException(e instanceof InvocationTargetException ? e.getCause() : e);
+            }
+        }
+
+    }
+
+    /**
+     * Holds the contents of a project file as primitive records, so that projects can be read and written without creating any components
+     */
+    static final class Records {
+
+        final ArrayList<String> strings;
+        private final HashMap<String, Integer> stringIndices;
+        int compCount;
+        int[] types;
+        double[] xs;
+        double[] ys;
+        byte[] rotations;
+        int lineCount;
+        int[] comps1;
+        int[] ports1;
+        int[] comps2;
+        int[] ports2;
+        boolean[] horis;
+        double[] movPers;
+
+        Records(int compCapacity, int lineCapacity) {
+            this.strings = new ArrayList<>();
+            this.stringIndices = new HashMap<>();
+            this.types = new int[compCapacity];
+            this.xs = new double[compCapacity];
+            this.ys = new double[compCapacity];
+            this.rotations = new byte[compCapacity];
+            this.comps1 = new int[lineCapacity];
+            this.ports1 = new int[lineCapacity];
+            this.comps2 = new int[lineCapacity];
+            this.ports2 = new int[lineCapacity];
+            this.horis = new boolean[lineCapacity];
+            this.movPers = new double[lineCapacity];
+        }
+
+        int intern(String s) {
+            return stringIndices.computeIfAbsent(s, key -> {
+                strings.add(key);
+                return strings.size()-1;
+            });
+        }
+
+        void addComponent(String type, double x, double y, int rotation) {
+            addComponent(intern(type), x, y, rotation);
+        }
+
+        void addComponent(int type, double x, double y, int rotation) {
+            ensureComponents(compCount+1);
+            types[compCount] = type;
+            xs[compCount] = x;
+            ys[compCount] = y;
+            rotations[compCount] = (byte)rotation;
+            compCount++;
+        }
+
+        void addLine(int comp1, String port1, int comp2, String port2, boolean isHoris, double movPer) {
+            addLine(comp1, intern(port1), comp2, intern(port2), isHoris, movPer);
+        }
+
+        void addLine(int comp1, int port1, int comp2, int port2, boolean isHoris, double movPer) {
+            ensureLines(lineCount+1);
+            comps1[lineCount] = comp1;
+            ports1[lineCount] = port1;
+            comps2[lineCount] = comp2;
+            ports2[lineCount] = port2;
+            horis[lineCount] = isHoris;
+            movPers[lineCount] = movPer;
+            lineCount++;
+        }
+
+        void ensureComponents(int capacity) {
+            if(types.length < capacity) {
+                int newCapacity = Math.max(capacity, types.length*2);
+                types = Arrays.copyOf(types, newCapacity);
+                xs = Arrays.copyOf(xs, newCapacity);
+                ys = Arrays.copyOf(ys, newCapacity);
+                rotations = Arrays.copyOf(rotations, newCapacity);
+            }
+        }
+
+        void ensureLines(int capacity) {
+            if(comps1.length < capacity) {
+                int newCapacity = Math.max(capacity, comps1.length*2);
+                comps1 = Arrays.copyOf(comps1, newCapacity);
+                ports1 = Arrays.copyOf(ports1, newCapacity);
+                comps2 = Arrays.copyOf(comps2, newCapacity);
+                ports2 = Arrays.copyOf(ports2, newCapacity);
+                horis = Arrays.copyOf(horis, newCapacity);
+                movPers = Arrays.copyOf(movPers, newCapacity);
+            }
+        }
+
+    }
+
+    private ProjectFormat() {}
+
+}
@@ -3,18 +3,34 @@ package com.coolspy3.hde;
 import com.coolspy3.hde.component.BaseComponent;
 import com.coolspy3.hde.component.EditorComponent;
 import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.net.URL;
 import java.lang.ref.Cleaner;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.imageio.ImageIO;
 import javax.swing.JOptionPane;
@@ -25,12 +41,44 @@ import javax.swing.JOptionPane;
 public final class ResourceManager {
 
     private static final Cleaner cleaner = Cleaner.create();
-    private static final HashMap<String, BufferedImage> images = new HashMap<>();
-    private static final HashMap<Long, WeakReference<BaseComponent<?>>> compids = new HashMap<>();
-    private static final HashMap<Long, ArrayList<String>> ports = new HashMap<>();
-    private static final ReentrantReadWriteLock compidLock = new ReentrantReadWriteLock();
+    /**
+     * The maximum number of scaled images which are kept by {@link #getScaledImage(java.lang.String, int, int, java.awt.GraphicsConfiguration)}
+     */
+    public static final int SPRITE_CACHE_SIZE = 256;
+
+    private static final ConcurrentHashMap<String, BufferedImage> images = new ConcurrentHashMap<>();
+    // Images which have been registered but not yet loaded. Each alias maps to a function which starts loading and rotating the image, and returns the same future on every call
+    private static final ConcurrentHashMap<String, Supplier<CompletableFuture<BufferedImage>>> lazyImages = new ConcurrentHashMap<>();
+    // Functions which are run whenever a lazily loaded image becomes available
+    private static final CopyOnWriteArrayList<Runnable> imageListeners = new CopyOnWriteArrayList<>();
+    private static final ExecutorService imageLoader = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+        Thread t = new Thread(r, "Image Loader");
+        t.setDaemon(true);
+        return t;
+    });
+    // Scaled copies of images, ordered from least to most recently used so that sizes from old zoom levels are evicted first
+    private static final LinkedHashMap<SpriteKey, BufferedImage> sprites = new LinkedHashMap<SpriteKey, BufferedImage>(16, 0.75f, true) {
+        private static final long serialVersionUID = 2978424061379262375L;
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SpriteKey, BufferedImage> eldest) {
+            return size() > SPRITE_CACHE_SIZE;
+        }
+    };
+    // Components are split across stripes by the low bits of their ids, so consecutive allocations lock different stripes
+    private static final int ID_STRIPES = 16;
+    private static final LongHashMap<WeakReference<BaseComponent<?>>>[] compids = newIdStripes();
+    // Maps each component id to a bitset of its reserved ports, which are indexed through portIndices
+    private static final LongHashMap<long[]> ports = new LongHashMap<>();
+    private static final HashMap<String, Integer> portIndices = new HashMap<>();
+    // Writers take the write lock of the stripe which holds the id, while getComponent reads optimistically and only falls back to the read lock if a write happened during the read
+    private static final StampedLock[] compidLocks = newIdLocks();
     private static final ReentrantReadWriteLock portLock = new ReentrantReadWriteLock();
-    private static Object stateKey = new Object();
+    // Ids which have never been allocated start at the high-water mark. Ids of garbage-collected components are recycled through the free list
+    private static final AtomicLong nextId = new AtomicLong();
+    private static final Object freeLock = new Object();
+    private static long[] freeIds = new long[64];
+    private static int freeCount = 0;
+    private static volatile Object stateKey = new Object();
 
     /**
      * Loads the image from the given file and stores it with the given alias
@@ -42,7 +90,7 @@ public final class ResourceManager {
      * @see #putImage(java.lang.String, java.awt.image.BufferedImage) 
      */
     public static void loadImage(String name, String path) throws IOException {
-        images.put(name, ImageIO.read(new File(path)));
+        putImage(name, readImage(path));
     }
 
     /**
@@ -58,19 +106,63 @@ public final class ResourceManager {
      * @throws IOException if an error occurs loading the image
      * @see #getImage(java.lang.String) 
      * @see #loadImage(java.lang.String, java.lang.String)  
+     * @see #registerImages(java.lang.String, java.lang.String) 
      * @see #putImage(java.lang.String, java.awt.image.BufferedImage) 
      */
     public static void loadImages(String name, String path) throws IOException {
-        BufferedImage img = ImageIO.read(new File(path));
+        BufferedImage img = readImage(path);
 
-        images.put(name, img);
-        images.put(name + "0", img);
+        putImage(name, img);
+        putImage(name + "0", img);
         img = Utils.rotateClockwise90(img);
-        images.put(name + "90", img);
+        putImage(name + "90", img);
         img = Utils.rotateClockwise90(img);
-        images.put(name + "180", img);
+        putImage(name + "180", img);
         img = Utils.rotateClockwise90(img);
-        images.put(name + "270", img);
+        putImage(name + "270", img);
+    }
+
+    /**
+     * Registers the same aliases as {@link #loadImages(java.lang.String, java.lang.String)} without waiting for the image to load.
+     * The image is decoded in the background, and each rotation is only created in the background once its alias is first requested through {@link #getImage(java.lang.String)}.
+     * If the image cannot be loaded, the error is printed and the aliases will not correspond to any image
+     * @param name The alias of the image
+     * @param path The classpath resource or file from which to load the image
+     * @see #getImage(java.lang.String) 
+     * @see #loadImages(java.lang.String, java.lang.String) 
+     */
+    public static void registerImages(String name, String path) {
+        CompletableFuture<BufferedImage> decoded = CompletableFuture.supplyAsync(() -> {
+            try {
+                return readImage(path);
+            } catch(IOException e) {
+                e.printStackTrace(System.err);
+                return null;
+            }
+        }, imageLoader);
+
+        registerImage(name, () -> decoded, 0);
+        registerImage(name + "0", () -> decoded, 0);
+        registerImage(name + "90", () -> decoded, 1);
+        registerImage(name + "180", () -> decoded, 2);
+        registerImage(name + "270", () -> decoded, 3);
+    }
+
+    /**
+     * Registers the same aliases as {@link #loadImages(java.lang.String, java.lang.String)} for an image which is drawn by the given function.
+     * The image is only drawn in the background once the first of its aliases is requested through {@link #getImage(java.lang.String)}, so images which are never displayed are never drawn
+     * @param name The alias of the image
+     * @param source The function which draws the image
+     * @see #registerImages(java.lang.String, java.lang.String)
+     */
+    public static void registerImages(String name, Supplier<BufferedImage> source) {
+        Supplier<CompletableFuture<BufferedImage>> once = memoize(() -> CompletableFuture.supplyAsync(source, imageLoader));
+
+        registerImage(name, once, 0);
+        registerImage(name + "0", once, 0);
+        registerImage(name + "90", once, 1);
+        registerImage(name + "180", once, 2);
+        registerImage(name + "270", once, 3);
     }
 
     /**
@@ -82,19 +174,150 @@ public final class ResourceManager {
      * @see #loadImages(java.lang.String, java.lang.String) 
      */
     public static void putImage(String name, BufferedImage img) {
-        images.put(name, img);
+        lazyImages.remove(name);
+        if(img == null) {
+            images.remove(name);
+        } else {
+            images.put(name, img);
+        }
+
+        // Discard any scaled copies of the image which was replaced
+        synchronized(sprites) {
+            sprites.keySet().removeIf(key -> key.name.equals(name));
+        }
     }
 
     /**
-     * Retrieves the image which corresponds to the given alias
+     * Retrieves the image which corresponds to the given alias without waiting for it to load.
+     * If the image was registered through {@link #registerImages(java.lang.String, java.lang.String)} and has not finished loading, loading is started in the background, <code>null</code> is returned, and every listener added through {@link #addImageListener(java.lang.Runnable)} is run once the image is available
      * @param name The alias of the image to search for
-     * @return The image which corresponds to the given alias or <code>null</code> if none is found
+     * @return The image which corresponds to the given alias or <code>null</code> if none is found or it is still loading
+     * @see #awaitImage(java.lang.String)
      * @see #loadImage(java.lang.String, java.lang.String) 
      * @see #loadImages(java.lang.String, java.lang.String) 
+     * @see #registerImages(java.lang.String, java.lang.String) 
      * @see #putImage(java.lang.String, java.awt.image.BufferedImage) 
      */
     public static BufferedImage getImage(String name) {
-        return images.get(name);
+        BufferedImage img = images.get(name);
+        if(img == null) {
+            Supplier<CompletableFuture<BufferedImage>> loader = lazyImages.get(name);
+            if(loader != null) {
+                img = loader.get().getNow(null);
+            }
+        }
+        return img;
+    }
+
+    /**
+     * Retrieves the image which corresponds to the given alias, waiting for it to load if it was registered through {@link #registerImages(java.lang.String, java.lang.String)}.
+     * This should not be called while painting, since decoding an image may take a long time
+     * @param name The alias of the image to search for
+     * @return The image which corresponds to the given alias or <code>null</code> if none is found or it could not be loaded
+     * @see #getImage(java.lang.String)
+     */
+    public static BufferedImage awaitImage(String name) {
+        BufferedImage img = images.get(name);
+        if(img == null) {
+            Supplier<CompletableFuture<BufferedImage>> loader = lazyImages.get(name);
+            if(loader != null) {
+                img = loader.get().join();
+            }
+        }
+        return img;
+    }
+
+    /**
+     * Adds a function which is run on a background thread whenever an image which was still loading when it was requested through {@link #getImage(java.lang.String)} becomes available, so that anything which was drawn without it can be drawn again
+     * @param listener The function to run
+     */
+    public static void addImageListener(Runnable listener) {
+        imageListeners.add(listener);
+    }
+
+    /**
+     * Retrieves a copy of the image which corresponds to the given alias scaled to the given size, so that it can be drawn without being scaled again.
+     * Scaled images are cached separately for each size and device configuration until {@link #SPRITE_CACHE_SIZE} other sizes or images have been used more recently
+     * @param name The alias of the image to search for
+     * @param width The width of the scaled image in pixels
+     * @param height The height of the scaled image in pixels
+     * @param gc The configuration of the device the image will be drawn to, which the scaled image will be compatible with, or <code>null</code> to create a standard ARGB image
+     * @return The scaled image or <code>null</code> if no image corresponds to the given alias or the size is empty
+     * @see #getImage(java.lang.String)
+     */
+    public static BufferedImage getScaledImage(String name, int width, int height, GraphicsConfiguration gc) {
+        if(width <= 0 || height <= 0) {
+            return null;
+        }
+        SpriteKey key = new SpriteKey(name, width, height, gc);
+        synchronized(sprites) {
+            BufferedImage sprite = sprites.get(key);
+            if(sprite != null) {
+                return sprite;
+            }
+        }
+        // Load the image outside of the lock since it may still be decoding
+        BufferedImage img = getImage(name);
+        if(img == null) {
+            return null;
+        }
+
+        // Scale the image once in the same way as drawing it at this size
+        BufferedImage sprite = gc == null ? new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB) : gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        Graphics2D g = sprite.createGraphics();
+        g.drawImage(img, 0, 0, width, height, null);
+        g.dispose();
+        synchronized(sprites) {
+            sprites.put(key, sprite);
+        }
+        return sprite;
+    }
+
+    private static void registerImage(String name, Supplier<CompletableFuture<BufferedImage>> decoded, int rotation) {
+        images.remove(name);
+        synchronized(sprites) {
+            sprites.keySet().removeIf(key -> key.name.equals(name));
+        }
+        AtomicReference<Supplier<CompletableFuture<BufferedImage>>> loader = new AtomicReference<>();
+        loader.set(memoize(() -> decoded.get().thenApplyAsync(img -> {
+            for(int i = 0; img != null && i < rotation; i++) {
+                img = Utils.rotateClockwise90(img);
+            }
+            // Only publish the image if the alias was not replaced while it was loading
+            if(img != null && lazyImages.remove(name, loader.get())) {
+                BufferedImage existing = images.putIfAbsent(name, img);
+                if(existing != null) {
+                    img = existing;
+                }
+                imageListeners.forEach(Runnable::run);
+            }
+            return img;
+        }, imageLoader)));
+        lazyImages.put(name, loader.get());
+    }
+
+    private static <T> Supplier<CompletableFuture<T>> memoize(Supplier<CompletableFuture<T>> start) {
+        // Only the first call starts the work, and every call returns its future
+        AtomicReference<CompletableFuture<T>> started = new AtomicReference<>();
+        return () -> {
+            CompletableFuture<T> future = started.get();
+            if(future == null) {
+                synchronized(started) {
+                    future = started.get();
+                    if(future == null) {
+                        future = start.get();
+                        started.set(future);
+                    }
+                }
+            }
+            return future;
+        };
+    }
+
+    private static BufferedImage readImage(String path) throws IOException {
+        // Prefer images which are bundled on the classpath and fall back to the working directory
+        URL url = ResourceManager.class.getClassLoader().getResource(path);
+        return url == null ? ImageIO.read(new File(path)) : ImageIO.read(url);
     }
 
     /**
@@ -183,8 +406,11 @@ public final class ResourceManager {
      * @param lines The new Lines to register
      */
     public static void forceLoad(ArrayList<EditorComponent> comps, ArrayList<Line> lines) {
-        // Lock the component and port locks
-        compidLock.writeLock().lock();
+        // Lock every component stripe and the port lock
+        long[] compidStamps = new long[ID_STRIPES];
+        for(int i = 0; i < ID_STRIPES; i++) {
+            compidStamps[i] = compidLocks[i].writeLock();
+        }
         try {
             portLock.writeLock().lock();
             try {
@@ -192,11 +418,23 @@ public final class ResourceManager {
                 stateKey = new Object();
 
                 // Clear the currently loaded components and ports
-                compids.clear();
+                for(LongHashMap<WeakReference<BaseComponent<?>>> stripe: compids) {
+                    stripe.clear();
+                }
                 ports.clear();
 
                 // Add the new components
-                comps.forEach(comp -> compids.put(comp.getId(), new WeakReference<>(comp)));
+                long maxId = -1;
+                for(EditorComponent comp: comps) {
+                    compids[stripe(comp.getId())].put(comp.getId(), new WeakReference<>(comp));
+                    maxId = Math.max(maxId, comp.getId());
+                }
+
+                // Ids freed before the load may belong to the new components, so forget them and move the high-water mark past every loaded id
+                synchronized(freeLock) {
+                    freeCount = 0;
+                }
+                nextId.accumulateAndGet(maxId+1, Math::max);
 
                 // Reserve ports
                 lines.forEach(ResourceManager::reservePorts);
@@ -206,41 +444,58 @@ public final class ResourceManager {
                 portLock.writeLock().unlock();
             }
         } finally {
-            compidLock.writeLock().unlock();
+            for(int i = ID_STRIPES-1; i >= 0; i--) {
+                compidLocks[i].unlockWrite(compidStamps[i]);
+            }
         }
     }
 
     /**
-     * Allocates a unique id for the given component
+     * Allocates a unique id for the given component. Ids of garbage-collected components are reused before any new ids are taken
      * @param comp The component for which an id should be allocated
      * @return The id allocated to the component
      * @see #getComponent(long) 
      */
     public static long allocId(BaseComponent<?> comp) {
-        // Lock the component lock
-        compidLock.writeLock().lock();
-        try {
-            // Search for an id
-            for(long i = 0; i < Long.MAX_VALUE; i++) {
-                // If the id <i> is not in use
-                if(!compids.containsKey(i)) {
-                    // Map the component to id <i>
-                    compids.put(i, new WeakReference<>(comp));
-
-                    // Register a DeallocIdRunner to check for when the component is garbage-collected
-                    cleaner.register(comp, new DeallocIdRunner(i, stateKey));
-
-                    // Return the id
-                    return i;
+        while(true) {
+            // Take a recycled id if there is one, otherwise take a new id from the high-water mark
+            long id = -1;
+            synchronized(freeLock) {
+                if(freeCount > 0) {
+                    id = freeIds[--freeCount];
+                }
+            }
+            if(id == -1) {
+                id = nextId.getAndIncrement();
+                if(id < 0) {
+                    // All valid 2^63 ids have been allocated, throw an error
+                    throw new IndexOutOfBoundsException("No valid id found");
                 }
             }
 
-            // All valid 2^31 ids are in use, throw an error
-            throw new IndexOutOfBoundsException("No valid id found");
+            // Lock only the stripe which holds the id, so allocations of neighbouring ids never wait for each other
+            int stripe = stripe(id);
+            StampedLock lock = compidLocks[stripe];
+            long compidStamp = lock.writeLock();
+            try {
+                // A concurrent load may have registered a component with this id after it was taken, in which case another id is needed
+                if(compids[stripe].containsKey(id)) {
+                    continue;
+                }
 
-            // Unlock locks
-        } finally {
-            compidLock.writeLock().unlock();
+                // Map the component to the id
+                compids[stripe].put(id, new WeakReference<>(comp));
+
+                // Register a DeallocIdRunner to check for when the component is garbage-collected
+                cleaner.register(comp, new DeallocIdRunner(id, stateKey));
+
+                // Return the id
+                return id;
+
+                // Unlock locks
+            } finally {
+                lock.unlockWrite(compidStamp);
+            }
         }
     }
 
@@ -251,16 +506,23 @@ public final class ResourceManager {
      * @see #allocId(com.coolspy3.hde.component.BaseComponent)  
      */
     public static BaseComponent<?> getComponent(long id) {
-        // Lock the component lock
-        compidLock.readLock().lock();
-        try {
-            // Find the component
-            return compids.containsKey(id) ? compids.get(id).get() : null;
+        // Find the component without locking
+        int stripe = stripe(id);
+        StampedLock lock = compidLocks[stripe];
+        long stamp = lock.tryOptimisticRead();
+        WeakReference<BaseComponent<?>> ref = compids[stripe].getOptimistic(id);
+        if(!lock.validate(stamp)) {
+            // The stripe was modified during the read, so lock it and try again
+            stamp = lock.readLock();
+            try {
+                ref = compids[stripe].get(id);
 
-            // Unlock locks
-        } finally {
-            compidLock.readLock().unlock();
+                // Unlock locks
+            } finally {
+                lock.unlockRead(stamp);
+            }
         }
+        return ref == null ? null : ref.get();
     }
 
     /**
@@ -314,18 +576,28 @@ public final class ResourceManager {
         // Lock the port lock
         portLock.writeLock().lock();
         try {
-            if(ports.containsKey(comp)) {
-                if(ports.get(comp).contains(port)) {
-                    // The port is already in use. Throw an exception
-                    throw new IllegalArgumentException("Port in use: " + port + " on device: " + comp);
-                }
-            } else {
-                // There is not an ArrayList for tracking the ports on this component. Create one
-                ports.put(comp, new ArrayList<>());
+            // Find the bit which represents this port, creating one if this port id has never been reserved
+            Integer index = portIndices.get(port);
+            if(index == null) {
+                index = portIndices.size();
+                portIndices.put(port, index);
+            }
+            int word = index >> 6;
+            long bit = 1L << index;
+
+            long[] reserved = ports.get(comp);
+            if(reserved == null || reserved.length <= word) {
+                // There is not a large enough bitset for tracking the ports on this component. Create one
+                reserved = reserved == null ? new long[word+1] : Arrays.copyOf(reserved, word+1);
+                ports.put(comp, reserved);
+            }
+            if((reserved[word] & bit) != 0) {
+                // The port is already in use. Throw an exception
+                throw new IllegalArgumentException("Port in use: " + port + " on device: " + comp);
             }
 
             // Reserve the port
-            ports.get(comp).add(port);
+            reserved[word] |= bit;
 
             // Unlock locks
         } finally {
@@ -381,9 +653,15 @@ public final class ResourceManager {
         // Lock the port lock
         portLock.writeLock().lock();
         try {
-            if(ports.containsKey(comp)) {
-                // If there is an ArrayList tracking the ports on this component, attempt to free the requested port
-                ports.get(comp).remove(port);
+            Integer index = portIndices.get(port);
+            long[] reserved = ports.get(comp);
+            if(index != null && reserved != null && reserved.length > index >> 6) {
+                // If there is a bitset tracking the ports on this component, attempt to free the requested port
+                reserved[index >> 6] &= ~(1L << index);
+                if(isClear(reserved)) {
+                    // Stop tracking components which have no reserved ports
+                    ports.remove(comp);
+                }
             }
 
             // Unlock locks
@@ -426,12 +704,14 @@ public final class ResourceManager {
         // Lock the port lock
         portLock.readLock().lock();
         try {
-            if(ports.containsKey(comp)) {
-                // If there is an ArrayList tracking the ports on this component, check the requested port
-                return ports.get(comp).contains(port);
+            Integer index = portIndices.get(port);
+            long[] reserved = ports.get(comp);
+            if(index != null && reserved != null && reserved.length > index >> 6) {
+                // If there is a bitset tracking the ports on this component, check the requested port
+                return (reserved[index >> 6] & (1L << index)) != 0;
             }
 
-            // No ports on this component have ever reserved. Return false
+            // No ports on this component are reserved. Return false
             return false;
 
             // Unlock locks
@@ -440,22 +720,45 @@ public final class ResourceManager {
         }
     }
 
+    private static boolean isClear(long[] bitset) {
+        for(long word: bitset) {
+            if(word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static void doDeallocId(long id, Object stateKey) {
         if(stateKey != ResourceManager.stateKey) {
             // The stateKey has changed. The requested component has already been freed
             return;
         }
 
-        // Lock the component lock
-        compidLock.writeLock().lock();
+        // Lock the stripe which holds the component
+        int stripe = stripe(id);
+        long compidStamp = compidLocks[stripe].writeLock();
         try {
+            if(stateKey != ResourceManager.stateKey) {
+                // The state changed while waiting for the lock
+                return;
+            }
+
             // Remove the component
-            compids.remove(id);
+            compids[stripe].remove(id);
+
+            // Recycle the id
+            synchronized(freeLock) {
+                if(freeCount == freeIds.length) {
+                    freeIds = Arrays.copyOf(freeIds, freeCount*2);
+                }
+                freeIds[freeCount++] = id;
+            }
 
             // Lock the port lock
             portLock.writeLock().lock();
             try {
-                // Remove the ArrayList which is tracking ports for this component if it exists
+                // Remove the bitset which is tracking ports for this component if it exists
                 ports.remove(id);
 
                 // Unlock locks
@@ -463,7 +766,54 @@ public final class ResourceManager {
                 portLock.writeLock().unlock();
             }
         } finally {
-            compidLock.writeLock().unlock();
+            compidLocks[stripe].unlockWrite(compidStamp);
+        }
+    }
+
+    private static int stripe(long id) {
+        return (int)id & (ID_STRIPES-1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static LongHashMap<WeakReference<BaseComponent<?>>>[] newIdStripes() {
+        LongHashMap<WeakReference<BaseComponent<?>>>[] stripes = (LongHashMap<WeakReference<BaseComponent<?>>>[])new LongHashMap<?>[ID_STRIPES];
+        for(int i = 0; i < ID_STRIPES; i++) {
+            stripes[i] = new LongHashMap<>();
+        }
+        return stripes;
+    }
+
+    private static StampedLock[] newIdLocks() {
+        StampedLock[] locks = new StampedLock[ID_STRIPES];
+        for(int i = 0; i < ID_STRIPES; i++) {
+            locks[i] = new StampedLock();
+        }
+        return locks;
+    }
+
+    private static final class SpriteKey {
+        private final String name;
+        private final int width;
+        private final int height;
+        // Images compatible with one device may be slow or wrong on another, so each configuration has its own sprites
+        private final GraphicsConfiguration gc;
+        SpriteKey(String name, int width, int height, GraphicsConfiguration gc) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.gc = gc;
+        }
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof SpriteKey)) {
+                return false;
+            }
+            SpriteKey other = (SpriteKey)obj;
+            return width == other.width && height == other.height && name.equals(other.name) && Objects.equals(gc, other.gc);
+        }
+        @Override
+        public int hashCode() {
+            return ((name.hashCode() * 31 + width) * 31 + height) * 31 + Objects.hashCode(gc);
         }
     }
 
@@ -98,6 +98,37 @@ public final class Utils {
         }
     }
 
+    /**
+     * Computes the corners of the Line defined by the given parameters
+     * @param x1 The x-coordinate of the start position of the line
+     * @param y1 The y-coordinate of the start position of the line
+     * @param x2 The x-coordinate of the end position of the line
+     * @param y2 The y-coordinate of the end position of the line
+     * @param isHoris Whether the line initially moves in the horizontal direction
+     * @param movPer The percentage of the line between the start position and the first bend in the Line
+     * @param out An array of at least 8 elements which should receive the x and y coordinates of the start position, both bends, and the end position in that order
+     * @see #drawLine(java.awt.Graphics, int, int, int, int, boolean, double) 
+     */
+    public static void routeLine(double x1, double y1, double x2, double y2, boolean isHoris, double movPer, double[] out) {
+        out[0] = x1;
+        out[1] = y1;
+        if(isHoris) {
+            double bend = x1 + movPer * (x2-x1);
+            out[2] = bend;
+            out[3] = y1;
+            out[4] = bend;
+            out[5] = y2;
+        } else {
+            double bend = y1 + movPer * (y2-y1);
+            out[2] = x1;
+            out[3] = bend;
+            out[4] = x2;
+            out[5] = bend;
+        }
+        out[6] = x2;
+        out[7] = y2;
+    }
+
     /**
      * Constructs a rectangle from its top left and bottom right corners
      * @param topLeft The top left corner of the rectangle
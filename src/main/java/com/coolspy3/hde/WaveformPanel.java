@@ -0,0 +1,269 @@
+package com.coolspy3.hde;
+
+import com.coolspy3.hde.sim.Waveform;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import javax.swing.JPanel;
+
+/**
+ * Displays the traces of a {@link Waveform} as one row per net, with time running from left to right.
+ * Each row is drawn from one summary per pixel, so the time taken to draw does not depend on the length of the traces.
+ * Scrolling zooms around the mouse, dragging pans through time and scrolling over the names or while holding shift moves between rows. Double clicking shows the whole trace
+ */
+public class WaveformPanel extends JPanel implements MouseListener, MouseMotionListener, MouseWheelListener {
+
+    private static final long serialVersionUID = 2750930188385613548L;
+
+    /**
+     * The width of the column in which the names of the nets are drawn
+     */
+    public static final int NAME_WIDTH = 160;
+    /**
+     * The height of each row
+     */
+    public static final int ROW_HEIGHT = 22;
+    /**
+     * The height of the ruler above the rows
+     */
+    public static final int RULER_HEIGHT = 20;
+    /**
+     * The factor by which the view is zoomed for every unit scrolled
+     */
+    public static final double ZOOM_STEP = 1.15;
+    /**
+     * The minimum number of ticks shown in each pixel
+     */
+    public static final double TICKS_PER_PIXEL_MIN = 1.0/64;
+    /**
+     * The minimum distance between labels on the ruler in pixels
+     */
+    public static final int LABEL_SPACING = 90;
+
+    private static final Color BACKGROUND = Color.BLACK;
+    private static final Color GRID = new Color(48, 48, 48);
+    private static final Color TEXT = Color.LIGHT_GRAY;
+    private static final Color TRACE = Color.GREEN;
+    private static final Color CURSOR = Color.YELLOW;
+
+    private final Waveform waveform;
+    // The tick at the left edge of the traces and the number of ticks covered by each pixel, or 0 if the view has not been fitted to the panel yet
+    private double startTick;
+    private double ticksPerPixel;
+    private int firstRow;
+    // The summary of each pixel of the row being drawn
+    private int[] summary;
+
+    private int dragStartX;
+    private double dragStartTick;
+    private int mouseX;
+
+    /**
+     * Creates a new WaveformPanel which initially shows the whole of the given traces
+     * @param waveform The traces to display
+     */
+    @SuppressWarnings("LeakingThisInConstructor")
+    public WaveformPanel(Waveform waveform) {
+        this.waveform = waveform;
+        this.startTick = waveform.getStartTick();
+        this.ticksPerPixel = 0;
+        this.firstRow = 0;
+        this.summary = new int[0];
+        this.mouseX = -1;
+        setPreferredSize(new Dimension(800, RULER_HEIGHT + ROW_HEIGHT*Math.min(waveform.getTraceCount(), 12)));
+        addMouseListener(this);
+        addMouseMotionListener(this);
+        addMouseWheelListener(this);
+    }
+
+    /**
+     * @return The traces being displayed
+     */
+    public Waveform getWaveform() {
+        return waveform;
+    }
+
+    /**
+     * Zooms and pans so that the whole of the traces fits in the panel
+     */
+    public void fit() {
+        startTick = waveform.getStartTick();
+        ticksPerPixel = Math.max((waveform.getEndTick() - waveform.getStartTick() + 1) / (double)Math.max(getTraceWidth(), 1), TICKS_PER_PIXEL_MIN);
+        repaint();
+    }
+
+    @Override
+    public void paintComponent(Graphics g) {
+        if(ticksPerPixel == 0 && getTraceWidth() > 0) {
+            fit();
+        }
+        int width = getTraceWidth();
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, getWidth(), getHeight());
+        FontMetrics metrics = g.getFontMetrics();
+        int textOffset = (ROW_HEIGHT + metrics.getAscent() - metrics.getDescent())/2;
+
+        // Draw the ruler, labelling ticks at a round interval which leaves room for the labels
+        long interval = 1;
+        for(int step = 0; interval/ticksPerPixel < LABEL_SPACING; step++) {
+            // 1, 2, 5, 10, 20, 50, ...
+            interval = step % 3 == 1 ? interval*5/2 : interval*2;
+        }
+        for(long tick = (long)Math.ceil(startTick/interval)*interval; tick < startTick + width*ticksPerPixel; tick += interval) {
+            int x = NAME_WIDTH + (int)((tick - startTick)/ticksPerPixel);
+            g.setColor(GRID);
+            g.drawLine(x, RULER_HEIGHT-4, x, getHeight());
+            g.setColor(TEXT);
+            g.drawString(Long.toString(tick), x+2, RULER_HEIGHT-6);
+        }
+
+        // Draw each visible row
+        if(summary.length < width) {
+            summary = new int[width];
+        }
+        int rows = Math.min(waveform.getTraceCount() - firstRow, (getHeight() - RULER_HEIGHT + ROW_HEIGHT-1)/ROW_HEIGHT);
+        for(int i = 0; i < rows; i++) {
+            int trace = firstRow + i;
+            int top = RULER_HEIGHT + i*ROW_HEIGHT;
+            g.setColor(GRID);
+            g.drawLine(0, top, getWidth(), top);
+            Graphics name = g.create(0, top, NAME_WIDTH-4, ROW_HEIGHT);
+            name.setColor(TEXT);
+            name.drawString(waveform.getName(trace), 4, textOffset);
+            name.dispose();
+            Graphics row = g.create(NAME_WIDTH, top, width, ROW_HEIGHT);
+            row.setColor(TRACE);
+            drawTrace(row, trace, width);
+            row.dispose();
+        }
+
+        // Draw the tick under the mouse
+        if(mouseX >= NAME_WIDTH) {
+            long tick = (long)Math.floor(startTick + (mouseX - NAME_WIDTH)*ticksPerPixel);
+            g.setColor(CURSOR);
+            g.drawLine(mouseX, RULER_HEIGHT, mouseX, getHeight());
+            String label = "#" + tick;
+            g.setColor(BACKGROUND);
+            g.fillRect(mouseX+1, 0, metrics.stringWidth(label)+4, RULER_HEIGHT-4);
+            g.setColor(CURSOR);
+            g.drawString(label, mouseX+3, RULER_HEIGHT-6);
+        }
+    }
+
+    private void drawTrace(Graphics g, int trace, int width) {
+        // Draws the trace into a Graphics whose origin is the top-left corner of its row
+        int high = 4;
+        int low = ROW_HEIGHT - 4;
+        waveform.summarize(trace, startTick, ticksPerPixel, summary, width);
+        // Consecutive pixels without transitions are merged into a single horizontal line, and consecutive pixels with transitions into a single block
+        int runStart = -1;
+        boolean runValue = false;
+        int busyStart = -1;
+        for(int x = 0; x < width; x++) {
+            int s = summary[x];
+            if(s == Waveform.NONE || s >>> 1 != 0) {
+                if(runStart != -1) {
+                    g.drawLine(runStart, runValue ? high : low, x, runValue ? high : low);
+                    runStart = -1;
+                }
+                if(s != Waveform.NONE) {
+                    if(busyStart == -1) {
+                        busyStart = x;
+                    }
+                    continue;
+                }
+            }
+            if(busyStart != -1) {
+                g.fillRect(busyStart, high, x - busyStart, low - high + 1);
+                busyStart = -1;
+            }
+            if(s == Waveform.NONE) {
+                continue;
+            }
+            boolean value = (s & 1) != 0;
+            if(runStart != -1 && runValue == value) {
+                continue;
+            }
+            if(runStart != -1) {
+                g.drawLine(runStart, runValue ? high : low, x, runValue ? high : low);
+            }
+            runStart = x;
+            runValue = value;
+        }
+        if(runStart != -1) {
+            g.drawLine(runStart, runValue ? high : low, width, runValue ? high : low);
+        }
+        if(busyStart != -1) {
+            g.fillRect(busyStart, high, width - busyStart, low - high + 1);
+        }
+    }
+
+    private int getTraceWidth() {
+        return Math.max(getWidth() - NAME_WIDTH, 0);
+    }
+
+    @Override
+    public void mouseWheelMoved(MouseWheelEvent e) {
+        if(e.isShiftDown() || e.getX() < NAME_WIDTH) {
+            // Scroll through the rows
+            firstRow = Math.max(Math.min(firstRow + e.getUnitsToScroll(), waveform.getTraceCount()-1), 0);
+        } else {
+            // Zoom around the tick under the mouse, without zooming out past the whole trace
+            double tick = startTick + (e.getX() - NAME_WIDTH)*ticksPerPixel;
+            double max = Math.max((waveform.getEndTick() - waveform.getStartTick() + 1) / (double)Math.max(getTraceWidth(), 1), TICKS_PER_PIXEL_MIN);
+            ticksPerPixel *= Math.pow(ZOOM_STEP, e.getUnitsToScroll());
+            ticksPerPixel = ticksPerPixel < TICKS_PER_PIXEL_MIN ? TICKS_PER_PIXEL_MIN : ticksPerPixel;
+            ticksPerPixel = ticksPerPixel > max ? max : ticksPerPixel;
+            startTick = tick - (e.getX() - NAME_WIDTH)*ticksPerPixel;
+        }
+        repaint();
+    }
+
+    @Override
+    public void mouseClicked(MouseEvent e) {
+        if(e.getClickCount() == 2) {
+            fit();
+        }
+    }
+
+    @Override
+    public void mousePressed(MouseEvent e) {
+        dragStartX = e.getX();
+        dragStartTick = startTick;
+    }
+
+    @Override
+    public void mouseReleased(MouseEvent e) {
+    }
+
+    @Override
+    public void mouseEntered(MouseEvent e) {
+    }
+
+    @Override
+    public void mouseExited(MouseEvent e) {
+        mouseX = -1;
+        repaint();
+    }
+
+    @Override
+    public void mouseDragged(MouseEvent e) {
+        // Pan so that the tick under the mouse follows it
+        startTick = dragStartTick - (e.getX() - dragStartX)*ticksPerPixel;
+        mouseX = e.getX();
+        repaint();
+    }
+
+    @Override
+    public void mouseMoved(MouseEvent e) {
+        mouseX = e.getX();
+        repaint();
+    }
+
+}
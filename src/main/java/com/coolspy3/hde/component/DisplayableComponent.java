@@ -3,6 +3,7 @@ package com.coolspy3.hde.component;
 import com.coolspy3.hde.ResourceManager;
 import com.coolspy3.hde.Utils;
 import java.awt.Dimension;
+import java.awt.GraphicsConfiguration;
 import java.awt.Image;
 import java.awt.Rectangle;
 import java.awt.geom.Point2D;
@@ -51,4 +52,17 @@ public interface DisplayableComponent extends Serializable {
      */
     public Image getImage();
 
+    /**
+     * Retrieves the image which should be used to render this component scaled to the given size.
+     * This uses the {@link ResourceManager#getScaledImage(java.lang.String, int, int, java.awt.GraphicsConfiguration)} function with the same id as {@link #getImage()}, so the result is cached between frames
+     * @param width The width at which the component will be drawn in pixels
+     * @param height The height at which the component will be drawn in pixels
+     * @param gc The configuration of the device the image will be drawn to, or <code>null</code> if it is unknown
+     * @return The image which should be used to render this component at the given size, or <code>null</code> if none exists
+     * @see #getImage()
+     */
+    public default Image getScaledImage(int width, int height, GraphicsConfiguration gc) {
+        return ResourceManager.getScaledImage(getImageName() + (getRotation() * 90), width, height, gc);
+    }
+
 }
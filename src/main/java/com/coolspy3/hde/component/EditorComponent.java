@@ -26,6 +26,14 @@ public class EditorComponent extends BaseComponent<Pair<EditorComponent.Side, In
     private final Point2D.Double pos;
     //in terms of pi/2 c
     private int rotation;
+    // The index which must be notified when this component moves
+    transient SpatialIndex index;
+    // Incremented whenever this component moves or rotates so that anything derived from its ports can tell when it is out of date
+    private transient int geometryVersion;
+    // The ids of the ports on this component and their positions in component coordinate space as consecutive x and y values, which are rebuilt on first use after the component moves, rotates, or gains a port
+    private transient String[] portIds;
+    private transient double[] portCoords;
+    private transient boolean portGeometryValid;
 
     /**
      * Creates a new DComponent with the given information
@@ -47,6 +55,7 @@ public class EditorComponent extends BaseComponent<Pair<EditorComponent.Side, In
      */
     protected void putLeft(String portId, int pos) {
         ports.put(portId, new Pair<>(Side.LEFT, pos));
+        portGeometryValid = false;
     }
 
     /**
@@ -56,6 +65,7 @@ public class EditorComponent extends BaseComponent<Pair<EditorComponent.Side, In
      */
     protected void putRight(String portId, int pos) {
         ports.put(portId, new Pair<>(Side.RIGHT, pos));
+        portGeometryValid = false;
     }
 
     /**
@@ -65,6 +75,7 @@ public class EditorComponent extends BaseComponent<Pair<EditorComponent.Side, In
      */
     protected void putTop(String portId, int pos) {
         ports.put(portId, new Pair<>(Side.TOP, pos));
+        portGeometryValid = false;
     }
 
     /**
@@ -74,6 +85,7 @@ public class EditorComponent extends BaseComponent<Pair<EditorComponent.Side, In
      */
     protected void putBottom(String portId, int pos) {
         ports.put(portId, new Pair<>(Side.BOTTOM, pos));
+        portGeometryValid = false;
     }
 
     /**
@@ -152,6 +164,12 @@ public class EditorComponent extends BaseComponent<Pair<EditorComponent.Side, In
             }
             port.setT(newSide);
         });
+
+        geometryVersion++;
+        portGeometryValid = false;
+        if(index != null) {
+            index.update(this);
+        }
     }
 
     /**
@@ -195,17 +213,10 @@ public class EditorComponent extends BaseComponent<Pair<EditorComponent.Side, In
      * @return A list of TaggedDoublePoint objects representing the locations of all of the ports on this component in component coordinate space with their tags set to the id of the corresponding port
      */
     public List<TaggedDoublePoint> getPoints() {
-        List<TaggedDoublePoint> out = new ArrayList<>();
-
-        // Get all ports and their positions
-        out.addAll(getLeftPorts().entrySet().stream().map(p -> new TaggedDoublePoint(0, p.getValue(), p.getKey())).collect(Collectors.toList()));
-        out.addAll(getRightPorts().entrySet().stream().map(p -> new TaggedDoublePoint(size.width-1, p.getValue(), p.getKey())).collect(Collectors.toList()));
-        out.addAll(getTopPorts().entrySet().stream().map(p -> new TaggedDoublePoint(p.getValue(), 0, p.getKey())).collect(Collectors.toList()));
-        out.addAll(getBottomPorts().entrySet().stream().map(p -> new TaggedDoublePoint(p.getValue(), size.height-1, p.getKey())).collect(Collectors.toList()));
-
-        // Convert coordinates from being relative to the top-left corner to being relative to the component space
-        out = out.stream().map(point -> new TaggedDoublePoint(point.x+pos.x+1, point.y+pos.y+1, point.tag)).collect(Collectors.toList());
-
+        List<TaggedDoublePoint> out = new ArrayList<>(getPortCount());
+        for(int i = 0; i < portIds.length; i++) {
+            out.add(new TaggedDoublePoint(portCoords[2*i], portCoords[2*i+1], portIds[i]));
+        }
         return out;
     }
 
@@ -214,10 +225,127 @@ public class EditorComponent extends BaseComponent<Pair<EditorComponent.Side, In
      * @param id The id of the port to search for
      * @return A TaggedDoublePoint with a position which represents the location of the specified port and its tag set to the port id
      * @throws NoSuchElementException if this component does not contain a port wit the given id
+     * @see #getPortIndex(java.lang.String) 
      */
     public TaggedDoublePoint getPoint(String id) throws NoSuchElementException {
-        // For all ports, find any with a matching id. Return one of them or throw an exception if none exist
-        return getPoints().stream().filter(p -> p.tag.equals(id)).findAny().orElseThrow();
+        int i = getPortIndex(id);
+        if(i < 0) {
+            throw new NoSuchElementException("No such port: " + id);
+        }
+        return new TaggedDoublePoint(portCoords[2*i], portCoords[2*i+1], portIds[i]);
+    }
+
+    /**
+     * @return The number of ports on this component. Ports are indexed from 0 to one less than this value
+     * @see #getPortIndex(java.lang.String) 
+     */
+    public int getPortCount() {
+        updatePortGeometry();
+        return portIds.length;
+    }
+
+    /**
+     * Retrieves the index of the given port, which can be used to find its position without allocating any objects
+     * @param id The id of the port to search for
+     * @return The index of the port or -1 if this component does not contain a port with the given id
+     * @see #getPortX(int) 
+     * @see #getPortY(int) 
+     */
+    public int getPortIndex(String id) {
+        updatePortGeometry();
+        // Components only have a few ports, so a linear search is faster than hashing
+        for(int i = 0; i < portIds.length; i++) {
+            if(portIds[i].equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param index The index of the port
+     * @return The id of the port with the given index
+     * @throws ArrayIndexOutOfBoundsException if the index is not between 0 and {@link #getPortCount()}
+     */
+    public String getPortId(int index) {
+        updatePortGeometry();
+        return portIds[index];
+    }
+
+    /**
+     * @param index The index of the port
+     * @return The x coordinate of the port with the given index in component coordinate space
+     * @throws ArrayIndexOutOfBoundsException if the index is not between 0 and {@link #getPortCount()}
+     */
+    public double getPortX(int index) {
+        updatePortGeometry();
+        return portCoords[2*index];
+    }
+
+    /**
+     * @param index The index of the port
+     * @return The y coordinate of the port with the given index in component coordinate space
+     * @throws ArrayIndexOutOfBoundsException if the index is not between 0 and {@link #getPortCount()}
+     */
+    public double getPortY(int index) {
+        updatePortGeometry();
+        return portCoords[2*index+1];
+    }
+
+    private void updatePortGeometry() {
+        if(portGeometryValid) {
+            return;
+        }
+        // Reuse the arrays unless a port was added, since components are moved far more often than they gain ports
+        if(portIds == null || portIds.length != ports.size()) {
+            portIds = new String[ports.size()];
+            portCoords = new double[ports.size()*2];
+        }
+
+        // Ports are ordered by side and then by their order in the port map
+        int i = 0;
+        for(Side side: Side.values()) {
+            for(Map.Entry<String, Pair<Side, Integer>> port: ports.entrySet()) {
+                if(port.getValue().getT() != side) {
+                    continue;
+                }
+                int offset = port.getValue().getU();
+                double x;
+                double y;
+                switch(side) {
+                    case LEFT:
+                        x = 0;
+                        y = offset;
+                        break;
+                    case RIGHT:
+                        x = size.width-1;
+                        y = offset;
+                        break;
+                    case TOP:
+                        x = offset;
+                        y = 0;
+                        break;
+                    default:
+                        x = offset;
+                        y = size.height-1;
+                        break;
+                }
+
+                // Convert coordinates from being relative to the top-left corner to being relative to the component space
+                portIds[i] = port.getKey();
+                portCoords[2*i] = x+pos.x+1;
+                portCoords[2*i+1] = y+pos.y+1;
+                i++;
+            }
+        }
+        portGeometryValid = true;
+    }
+
+    /**
+     * @return A value which changes whenever this component is moved or rotated, and so whenever the positions of its ports may have changed
+     */
+    public int getGeometryVersion() {
+        return geometryVersion;
     }
 
     @Override
@@ -246,12 +374,17 @@ public class EditorComponent extends BaseComponent<Pair<EditorComponent.Side, In
     }
 
     /**
-     * Sets the position of this component
+     * Sets the position of this component and updates the {@link SpatialIndex} containing it, if any
      * @param x The x coordinate to which to set the position
      * @param y The y coordinate to which to set the position
      */
     public void setPosition(double x, double y) {
         this.pos.setLocation(x, y);
+        geometryVersion++;
+        portGeometryValid = false;
+        if(index != null) {
+            index.update(this);
+        }
     }
 
     /**
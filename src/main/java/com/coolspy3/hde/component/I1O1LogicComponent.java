@@ -32,12 +32,12 @@ public abstract class I1O1LogicComponent extends LogicComponent {
 
     @Override
     public void queueState() {
-        nextState = getNextState(getPortState("I1"));
+        nextState = getNextState(getInputState("I"));
     }
 
     @Override
-    public void pushState() {
-        setPortState("O", nextState);
+    public boolean pushState() {
+        return setPortState("O", nextState);
     }
 
     @Override
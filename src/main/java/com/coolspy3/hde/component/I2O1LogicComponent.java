@@ -33,12 +33,12 @@ public abstract class I2O1LogicComponent extends LogicComponent {
 
     @Override
     public void queueState() {
-        nextState = getNextState(getPortState("I1"), getPortState("I2"));
+        nextState = getNextState(getInputState("I1"), getInputState("I2"));
     }
 
     @Override
-    public void pushState() {
-        setPortState("O", nextState);
+    public boolean pushState() {
+        return setPortState("O", nextState);
     }
 
     @Override
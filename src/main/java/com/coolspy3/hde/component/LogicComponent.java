@@ -41,14 +41,27 @@ public abstract class LogicComponent extends BaseComponent<Pair<Boolean, ArrayLi
 
     /**
      * Updates the outputs of this component in response to the state of its inputs as was retrieved by the previous call to {@link #queueState()}
+     * @return Whether the state of any of this component's outputs changed
      */
-    public abstract void pushState();
+    public abstract boolean pushState();
 
     /**
      * @return Whether any of the outputs of this component is active
      */
     public abstract boolean isActive();
 
+    /**
+     * Connects the given port on this component to a port on another component.
+     * This does not connect the other component back to this component
+     * @param portId The id of the port on this component
+     * @param comp The component to connect to
+     * @param compPortId The id of the port on the other component
+     */
+    public void connect(String portId, LogicComponent comp, String compPortId) {
+        createPort(portId);
+        ports.get(portId).getU().add(new Pair<>(comp, compPortId));
+    }
+
     /**
      * Retrieves the state of the given port of this LogicComponent
      * @param id The id of the port to check
@@ -65,21 +78,33 @@ public abstract class LogicComponent extends BaseComponent<Pair<Boolean, ArrayLi
      * @return Whether any of the components connected to the given port are outputting a signal to that port
      */
     protected boolean getInputState(String id) {
-        if(!ports.containsKey(id)) {
+        Pair<Boolean, ArrayList<Pair<LogicComponent, String>>> port = ports.get(id);
+        if(port == null) {
             return false;
         }
-        return ports.get(id).getU().stream().map(comp -> comp.getT().getPortState(comp.getU())).anyMatch(Boolean::booleanValue);
+
+        // Iterate directly instead of streaming, this is called for every input on every tick
+        for(Pair<LogicComponent, String> comp: port.getU()) {
+            if(comp.getT().getPortState(comp.getU())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
      * Sets the state of the given output port
      * @param id The id of the port to set
      * @param state The new state of the given port
+     * @return Whether the state of the port changed
      */
-    protected void setPortState(String id, boolean state) {
-        if(ports.containsKey(id)) {
-            ports.get(id).setT(state);
+    protected boolean setPortState(String id, boolean state) {
+        Pair<Boolean, ArrayList<Pair<LogicComponent, String>>> port = ports.get(id);
+        if(port == null || port.getT() == state) {
+            return false;
         }
+        port.setT(state);
+        return true;
     }
 
 }
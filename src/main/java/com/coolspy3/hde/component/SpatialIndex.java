@@ -0,0 +1,198 @@
+package com.coolspy3.hde.component;
+
+import com.coolspy3.hde.LongHashMap;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+
+/**
+ * Indexes editor components by the area which they occupy using a uniform grid so that the components near a point or within an area can be found without checking every component.
+ * Components which are in an index keep it up to date when they are moved or rotated. This class is not thread-safe
+ */
+public final class SpatialIndex {
+
+    /**
+     * The width and height of each grid cell in component coordinate space
+     */
+    public static final int CELL_SIZE = 128;
+
+    private final LongHashMap<ArrayList<Entry>> cells;
+    private final IdentityHashMap<EditorComponent, Entry> entries;
+    private long nextOrder;
+
+    /**
+     * Creates a new, empty SpatialIndex
+     */
+    public SpatialIndex() {
+        this.cells = new LongHashMap<>();
+        this.entries = new IdentityHashMap<>();
+        this.nextOrder = 0;
+    }
+
+    /**
+     * @return The number of components in this index
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Adds the given component to this index. Components added later are considered to be above components added earlier
+     * @param comp The component to add
+     * @throws IllegalArgumentException if the component is already in an index
+     */
+    public void add(EditorComponent comp) {
+        if(comp.index != null) {
+            throw new IllegalArgumentException("Component is already indexed: " + comp.getId());
+        }
+        Entry entry = new Entry(comp, nextOrder++);
+        entries.put(comp, entry);
+        comp.index = this;
+        insert(entry);
+    }
+
+    /**
+     * Adds all of the given components to this index in iteration order
+     * @param comps The components to add
+     * @see #add(com.coolspy3.hde.component.EditorComponent)
+     */
+    public void addAll(Collection<? extends EditorComponent> comps) {
+        comps.forEach(this::add);
+    }
+
+    /**
+     * Removes the given component from this index
+     * @param comp The component to remove
+     */
+    public void remove(EditorComponent comp) {
+        Entry entry = entries.remove(comp);
+        if(entry != null) {
+            erase(entry);
+            comp.index = null;
+        }
+    }
+
+    /**
+     * Removes every component from this index
+     */
+    public void clear() {
+        entries.keySet().forEach(comp -> comp.index = null);
+        entries.clear();
+        cells.clear();
+    }
+
+    /**
+     * Finds every component which may intersect the given area. The result may contain components which are near, but do not intersect, the area
+     * @param area The area to search in component coordinate space
+     * @param out A Collection which should receive the components, from the bottom-most to the top-most
+     */
+    public void query(Rectangle2D area, Collection<EditorComponent> out) {
+        int cx0 = cell(area.getMinX());
+        int cy0 = cell(area.getMinY());
+        int cx1 = cell(area.getMaxX());
+        int cy1 = cell(area.getMaxY());
+        ArrayList<Entry> found = new ArrayList<>();
+        for(int cx = cx0; cx <= cx1; cx++) {
+            for(int cy = cy0; cy <= cy1; cy++) {
+                ArrayList<Entry> cell = cells.get(key(cx, cy));
+                if(cell == null) {
+                    continue;
+                }
+                for(Entry entry: cell) {
+                    // A component is stored in every cell which it covers, so only report it from the first cell which is also in the area
+                    if(cx == Math.max(cx0, entry.cx0) && cy == Math.max(cy0, entry.cy0)) {
+                        found.add(entry);
+                    }
+                }
+            }
+        }
+        found.sort((a, b) -> Long.compare(a.order, b.order));
+        found.forEach(entry -> out.add(entry.comp));
+    }
+
+    /**
+     * Moves the given component to the cells which match its current bounds
+     * @param comp The component which was moved
+     */
+    void update(EditorComponent comp) {
+        Entry entry = entries.get(comp);
+        if(entry == null) {
+            return;
+        }
+        Point2D.Double pos = comp.getPosition();
+        if(entry.cx0 == cell(pos.x-1) && entry.cy0 == cell(pos.y-1)
+                && entry.cx1 == cell(pos.x+comp.getSize().width+1) && entry.cy1 == cell(pos.y+comp.getSize().height+1)) {
+            // The component is still in the same cells
+            return;
+        }
+        erase(entry);
+        insert(entry);
+    }
+
+    private void insert(Entry entry) {
+        Point2D.Double pos = entry.comp.getPosition();
+        // Pad the component by a unit on each side since getBounds() rounds its position
+        entry.cx0 = cell(pos.x-1);
+        entry.cy0 = cell(pos.y-1);
+        entry.cx1 = cell(pos.x+entry.comp.getSize().width+1);
+        entry.cy1 = cell(pos.y+entry.comp.getSize().height+1);
+        for(int cx = entry.cx0; cx <= entry.cx1; cx++) {
+            for(int cy = entry.cy0; cy <= entry.cy1; cy++) {
+                long key = key(cx, cy);
+                ArrayList<Entry> cell = cells.get(key);
+                if(cell == null) {
+                    cell = new ArrayList<>(4);
+                    cells.put(key, cell);
+                }
+                cell.add(entry);
+            }
+        }
+    }
+
+    private void erase(Entry entry) {
+        for(int cx = entry.cx0; cx <= entry.cx1; cx++) {
+            for(int cy = entry.cy0; cy <= entry.cy1; cy++) {
+                long key = key(cx, cy);
+                ArrayList<Entry> cell = cells.get(key);
+                if(cell != null) {
+                    // Cells only hold a few components, so swap the entry with the last one instead of shifting the list
+                    int i = cell.indexOf(entry);
+                    if(i >= 0) {
+                        cell.set(i, cell.get(cell.size()-1));
+                        cell.remove(cell.size()-1);
+                    }
+                    if(cell.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int cell(double coord) {
+        return (int)Math.floor(coord / CELL_SIZE);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long)cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    private static final class Entry {
+
+        private final EditorComponent comp;
+        private final long order;
+        private int cx0;
+        private int cy0;
+        private int cx1;
+        private int cy1;
+
+        private Entry(EditorComponent comp, long order) {
+            this.comp = comp;
+            this.order = order;
+        }
+
+    }
+
+}
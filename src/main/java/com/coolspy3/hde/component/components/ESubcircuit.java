@@ -0,0 +1,153 @@
+package com.coolspy3.hde.component.components;
+
+import com.coolspy3.hde.ResourceManager;
+import com.coolspy3.hde.component.EditorComponent;
+import com.coolspy3.hde.sim.Subcircuit;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * Represents an instance of another project which is used as a block in the editor.
+ * The inputs of the project are placed on the left side of the block and its outputs on the right side. Every instance of the same project shares a single {@link Subcircuit} definition
+ */
+public class ESubcircuit extends EditorComponent {
+
+    private static final long serialVersionUID = 6104586229416405313L;
+
+    /**
+     * The width of every subcircuit block
+     */
+    public static final int WIDTH = 100;
+    /**
+     * The distance between adjacent ports
+     */
+    public static final int PORT_SPACING = 20;
+
+    // Every definition file is drawn under a single alias, which is only used by its instances and is drawn again when the file changes
+    private static final HashMap<File, String> imageNames = new HashMap<>();
+    private static final HashMap<File, Subcircuit> drawnDefinitions = new HashMap<>();
+
+    private final transient Subcircuit definition;
+
+    /**
+     * Creates a new ESubcircuit at the given position
+     * @param pos The position of the top left corner of the component
+     * @param file The project file which defines the subcircuit
+     * @throws IOException if the project cannot be loaded
+     * @see Subcircuit#load(java.io.File)
+     */
+    public ESubcircuit(Point2D.Double pos, File file) throws IOException {
+        this(pos, Subcircuit.load(file));
+    }
+
+    /**
+     * Creates a new ESubcircuit at the given position
+     * @param pos The position of the top left corner of the component
+     * @param definition The definition of the subcircuit
+     */
+    public ESubcircuit(Point2D.Double pos, Subcircuit definition) {
+        super(getImageAlias(definition), getUnrotatedSize(definition), pos);
+        this.definition = definition;
+        for(int i = 0; i < definition.getInputCount(); i++) {
+            putLeft(definition.getInputPort(i), PORT_SPACING/2 + i*PORT_SPACING);
+        }
+        for(int i = 0; i < definition.getOutputCount(); i++) {
+            putRight(definition.getOutputPort(i), PORT_SPACING/2 + i*PORT_SPACING);
+        }
+    }
+
+    /**
+     * @return The definition of this subcircuit
+     */
+    public Subcircuit getDefinition() {
+        return definition;
+    }
+
+    @Override
+    public EditorComponent copy() throws ReflectiveOperationException {
+        // The definition cannot be passed through the constructor used by EditorComponent.copy()
+        EditorComponent comp = new ESubcircuit(getPosition(), definition);
+        for(int i = 0; i < getRotation(); i++) {
+            comp.rotate();
+        }
+        return comp;
+    }
+
+    /**
+     * @param definition The definition of a subcircuit
+     * @return The size of an unrotated instance of the given subcircuit
+     */
+    public static Dimension getUnrotatedSize(Subcircuit definition) {
+        return new Dimension(WIDTH, Math.max(Math.max(definition.getInputCount(), definition.getOutputCount()), 1) * PORT_SPACING);
+    }
+
+    private static synchronized String getImageAlias(Subcircuit definition) {
+        String name = imageNames.get(definition.getFile());
+        if(name == null) {
+            name = "Subcircuit" + imageNames.size();
+            imageNames.put(definition.getFile(), name);
+        }
+        if(drawnDefinitions.put(definition.getFile(), definition) != definition) {
+            // Replacing the alias discards the image of the previous definition along with its scaled copies
+            ResourceManager.registerImages(name, () -> drawImage(definition));
+        }
+        return name;
+    }
+
+    private static BufferedImage drawImage(Subcircuit definition) {
+        // Draw at twice the size of the component so that the image stays sharp when zoomed in
+        Dimension size = getUnrotatedSize(definition);
+        BufferedImage img = new BufferedImage(size.width*2, size.height*2, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.scale(2, 2);
+        g.setStroke(new BasicStroke(1.5f));
+
+        // Leads run from the edges to a box in the middle
+        int lead = PORT_SPACING/2;
+        g.setColor(Color.BLACK);
+        for(int i = 0; i < definition.getInputCount(); i++) {
+            int y = PORT_SPACING/2 + i*PORT_SPACING;
+            g.drawLine(0, y, lead, y);
+        }
+        for(int i = 0; i < definition.getOutputCount(); i++) {
+            int y = PORT_SPACING/2 + i*PORT_SPACING;
+            g.drawLine(size.width - lead, y, size.width, y);
+        }
+        g.setColor(Color.GRAY);
+        g.fillRect(lead, 1, size.width - 2*lead, size.height-2);
+        g.setColor(Color.BLACK);
+        g.drawRect(lead, 1, size.width - 2*lead, size.height-2);
+
+        // Label the ports along the sides and the subcircuit in the middle
+        g.setColor(Color.WHITE);
+        g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 8));
+        FontMetrics metrics = g.getFontMetrics();
+        int textOffset = (metrics.getAscent() - metrics.getDescent())/2;
+        for(int i = 0; i < definition.getInputCount(); i++) {
+            g.drawString(definition.getInputPort(i), lead+2, PORT_SPACING/2 + i*PORT_SPACING + textOffset);
+        }
+        for(int i = 0; i < definition.getOutputCount(); i++) {
+            String port = definition.getOutputPort(i);
+            g.drawString(port, size.width - lead - 2 - metrics.stringWidth(port), PORT_SPACING/2 + i*PORT_SPACING + textOffset);
+        }
+        g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 10));
+        metrics = g.getFontMetrics();
+        String name = definition.getName();
+        g.drawString(name, (size.width - metrics.stringWidth(name))/2, (size.height + metrics.getAscent() - metrics.getDescent())/2);
+        g.dispose();
+        return img;
+    }
+
+}
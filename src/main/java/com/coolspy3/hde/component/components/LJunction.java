@@ -25,7 +25,9 @@ public class LJunction extends LogicComponent {
     public void queueState() {}
 
     @Override
-    public void pushState() {}
+    public boolean pushState() {
+        return false;
+    }
 
     @Override
     public boolean isActive() {
@@ -5,7 +5,6 @@ import com.coolspy3.hde.component.LogicComponent;
 import com.coolspy3.hde.component.SimulatedComponent;
 import java.awt.Dimension;
 import java.awt.geom.Point2D;
-import java.io.IOException;
 
 /**
  * Represents an AND gate which can be displayed in the simulator
@@ -15,11 +14,7 @@ public class SANDGate extends SimulatedComponent {
     private static final long serialVersionUID = 5625495014542080494L;
 
     static {
-        try {
-            ResourceManager.loadImages("DANDGate", "Assets/ANDGate.png");
-        } catch(IOException e) {
-            e.printStackTrace(System.err);
-        }
+        ResourceManager.registerImages("DANDGate", "Assets/ANDGate.png");
     }
 
     /**
@@ -5,7 +5,6 @@ import com.coolspy3.hde.component.LogicComponent;
 import com.coolspy3.hde.component.SimulatedComponent;
 import java.awt.Dimension;
 import java.awt.geom.Point2D;
-import java.io.IOException;
 
 /**
  * Represents a buffer which can be displayed in the simulator
@@ -15,11 +14,7 @@ public class SBuffer extends SimulatedComponent {
     private static final long serialVersionUID = 4118267798345265357L;
 
     static {
-        try {
-            ResourceManager.loadImages("Buffer", "Assets/Buffer.png");
-        } catch(IOException e) {
-            e.printStackTrace(System.err);
-        }
+        ResourceManager.registerImages("Buffer", "Assets/Buffer.png");
     }
 
     /**
@@ -5,7 +5,6 @@ import com.coolspy3.hde.component.LogicComponent;
 import com.coolspy3.hde.component.SimulatedComponent;
 import java.awt.Dimension;
 import java.awt.geom.Point2D;
-import java.io.IOException;
 
 /**
  * Represents a junction which can be displayed in the simulator
@@ -15,11 +14,7 @@ public class SJunction extends SimulatedComponent {
     private static final long serialVersionUID = 1334345269714914209L;
 
     static {
-        try {
-            ResourceManager.loadImages("Junction", "Assets/Junction.png");
-        } catch(IOException e) {
-            e.printStackTrace(System.err);
-        }
+        ResourceManager.registerImages("Junction", "Assets/Junction.png");
     }
 
     /**
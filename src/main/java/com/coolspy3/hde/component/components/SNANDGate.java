@@ -5,7 +5,6 @@ import com.coolspy3.hde.component.LogicComponent;
 import com.coolspy3.hde.component.SimulatedComponent;
 import java.awt.Dimension;
 import java.awt.geom.Point2D;
-import java.io.IOException;
 
 /**
  * Represents a NAND gate which can be displayed in the simulator
@@ -15,11 +14,7 @@ public class SNANDGate extends SimulatedComponent {
     private static final long serialVersionUID = 6205571129343177432L;
 
     static {
-        try {
-            ResourceManager.loadImages("DNANDGate", "Assets/NANDGate.png");
-        } catch(IOException e) {
-            e.printStackTrace(System.err);
-        }
+        ResourceManager.registerImages("DNANDGate", "Assets/NANDGate.png");
     }
 
     /**
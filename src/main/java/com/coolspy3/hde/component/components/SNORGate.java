@@ -5,7 +5,6 @@ import com.coolspy3.hde.component.LogicComponent;
 import com.coolspy3.hde.component.SimulatedComponent;
 import java.awt.Dimension;
 import java.awt.geom.Point2D;
-import java.io.IOException;
 
 /**
  * Represents a NOR gate which can be displayed in the simulator
@@ -15,11 +14,7 @@ public class SNORGate extends SimulatedComponent {
     private static final long serialVersionUID = 4157833764764319875L;
 
     static {
-        try {
-            ResourceManager.loadImages("DNORGate", "Assets/NORGate.png");
-        } catch(IOException e) {
-            e.printStackTrace(System.err);
-        }
+        ResourceManager.registerImages("DNORGate", "Assets/NORGate.png");
     }
 
     /**
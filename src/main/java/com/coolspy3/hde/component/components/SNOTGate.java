@@ -5,7 +5,6 @@ import com.coolspy3.hde.component.LogicComponent;
 import com.coolspy3.hde.component.SimulatedComponent;
 import java.awt.Dimension;
 import java.awt.geom.Point2D;
-import java.io.IOException;
 
 /**
  * Represents a NOT gate which can be displayed in the simulator
@@ -15,11 +14,7 @@ public class SNOTGate extends SimulatedComponent {
     private static final long serialVersionUID = 6745696924455287109L;
 
     static {
-        try {
-            ResourceManager.loadImages("DNOTGate", "Assets/NOTGate.png");
-        } catch(IOException e) {
-            e.printStackTrace(System.err);
-        }
+        ResourceManager.registerImages("DNOTGate", "Assets/NOTGate.png");
     }
 
     /**
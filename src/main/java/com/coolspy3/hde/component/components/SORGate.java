@@ -5,7 +5,6 @@ import com.coolspy3.hde.component.LogicComponent;
 import com.coolspy3.hde.component.SimulatedComponent;
 import java.awt.Dimension;
 import java.awt.geom.Point2D;
-import java.io.IOException;
 
 /**
  * Represents an OR gate which can be displayed in the simulator
@@ -15,11 +14,7 @@ public class SORGate extends SimulatedComponent {
     private static final long serialVersionUID = -7298136320618914714L;
 
     static {
-        try {
-            ResourceManager.loadImages("DORGate", "Assets/ORGate.png");
-        } catch(IOException e) {
-            e.printStackTrace(System.err);
-        }
+        ResourceManager.registerImages("DORGate", "Assets/ORGate.png");
     }
 
     /**
@@ -5,7 +5,6 @@ import com.coolspy3.hde.component.LogicComponent;
 import com.coolspy3.hde.component.SimulatedComponent;
 import java.awt.Dimension;
 import java.awt.geom.Point2D;
-import java.io.IOException;
 
 /**
  * Represents a XNOR gate which can be displayed in the simulator
@@ -15,11 +14,7 @@ public class SXNORGate extends SimulatedComponent {
     private static final long serialVersionUID = -2830584833025663074L;
 
     static {
-        try {
-            ResourceManager.loadImages("DXNORGate", "Assets/XNORGate.png");
-        } catch(IOException e) {
-            e.printStackTrace(System.err);
-        }
+        ResourceManager.registerImages("DXNORGate", "Assets/XNORGate.png");
     }
 
     /**
@@ -5,7 +5,6 @@ import com.coolspy3.hde.component.LogicComponent;
 import com.coolspy3.hde.component.SimulatedComponent;
 import java.awt.Dimension;
 import java.awt.geom.Point2D;
-import java.io.IOException;
 
 /**
  * Represents a XOR gate which can be displayed in the simulator
@@ -15,11 +14,7 @@ public class SXORGate extends SimulatedComponent {
     private static final long serialVersionUID = -7794926008043804648L;
 
     static {
-        try {
-            ResourceManager.loadImages("DXORGate", "Assets/XORGate.png");
-        } catch(IOException e) {
-            e.printStackTrace(System.err);
-        }
+        ResourceManager.registerImages("DXORGate", "Assets/XORGate.png");
     }
 
     /**
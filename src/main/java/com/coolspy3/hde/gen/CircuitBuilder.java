@@ -0,0 +1,292 @@
+package com.coolspy3.hde.gen;
+
+import com.coolspy3.hde.Line;
+import com.coolspy3.hde.Pair;
+import com.coolspy3.hde.component.EditorComponent;
+import com.coolspy3.hde.component.components.EANDGate;
+import com.coolspy3.hde.component.components.EBuffer;
+import com.coolspy3.hde.component.components.EJunction;
+import com.coolspy3.hde.component.components.ENANDGate;
+import com.coolspy3.hde.component.components.ENORGate;
+import com.coolspy3.hde.component.components.ENOTGate;
+import com.coolspy3.hde.component.components.EORGate;
+import com.coolspy3.hde.component.components.EXNORGate;
+import com.coolspy3.hde.component.components.EXORGate;
+import java.awt.geom.Point2D;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.Function;
+
+/**
+ * Builds a layout of editor components and Lines one gate at a time.
+ * Components are placed on a grid, and any signal which is read more than once is fanned out through a chain of junctions since every port can only have one Line
+ * @see CircuitGenerator
+ */
+public class CircuitBuilder {
+
+    /**
+     * The horizontal distance between grid cells in component coordinate space
+     */
+    public static final int CELL_WIDTH = 150;
+    /**
+     * The vertical distance between grid cells in component coordinate space
+     */
+    public static final int CELL_HEIGHT = 75;
+
+    private final ArrayList<EditorComponent> comps;
+    private final ArrayList<Line> lines;
+    private final HashMap<String, Signal> signals;
+    private final int columnHeight;
+    private int cell;
+
+    /**
+     * Creates a new CircuitBuilder which places 64 components in each column
+     */
+    public CircuitBuilder() {
+        this(64);
+    }
+
+    /**
+     * Creates a new CircuitBuilder
+     * @param columnHeight The number of components to place in each column of the grid
+     */
+    public CircuitBuilder(int columnHeight) {
+        this.comps = new ArrayList<>();
+        this.lines = new ArrayList<>();
+        this.signals = new HashMap<>();
+        this.columnHeight = columnHeight;
+        this.cell = 0;
+    }
+
+    /**
+     * @return The components which have been created
+     */
+    public ArrayList<EditorComponent> getComponents() {
+        return comps;
+    }
+
+    /**
+     * @return The Lines which have been created
+     */
+    public ArrayList<Line> getLines() {
+        return lines;
+    }
+
+    /**
+     * Creates the given component at the next position on the grid
+     * @param constructor A function which creates a component at the given position
+     * @return The created component
+     */
+    public EditorComponent place(Function<Point2D.Double, EditorComponent> constructor) {
+        EditorComponent comp = constructor.apply(new Point2D.Double((cell / columnHeight) * CELL_WIDTH, (cell % columnHeight) * CELL_HEIGHT));
+        cell++;
+        comps.add(comp);
+        return comp;
+    }
+
+    /**
+     * Creates an input to the circuit. Inputs are junctions which are not driven by any gate
+     * @return The new input
+     */
+    public Signal input() {
+        EditorComponent junction = place(EJunction::new);
+        Signal signal = signal(junction, "P1");
+        signal.free.add(new Pair<>(junction.getId(), "P2"));
+        signal.free.add(new Pair<>(junction.getId(), "P3"));
+        signal.free.add(new Pair<>(junction.getId(), "P4"));
+        return signal;
+    }
+
+    /**
+     * Creates the given number of inputs to the circuit
+     * @param count The number of inputs to create
+     * @return The new inputs
+     * @see #input()
+     */
+    public Signal[] inputs(int count) {
+        Signal[] inputs = new Signal[count];
+        for(int i = 0; i < count; i++) {
+            inputs[i] = input();
+        }
+        return inputs;
+    }
+
+    /**
+     * Retrieves the signal produced by the given port
+     * @param comp The component on which the port is located
+     * @param port The id of the port
+     * @return A Signal which can be connected to any number of inputs
+     */
+    public Signal signal(EditorComponent comp, String port) {
+        return signals.computeIfAbsent(comp.getId() + "." + port, key -> new Signal(comp, port));
+    }
+
+    /**
+     * Connects the given signal to a port
+     * @param signal The signal to connect
+     * @param comp The component on which the port is located
+     * @param port The id of the port
+     */
+    public void connect(Signal signal, EditorComponent comp, String port) {
+        Pair<Long, String> tap = tap(signal);
+        lines.add(new Line(tap.getT(), tap.getU(), comp.getId(), port, true, 0.5));
+        if(signal.directLine == -2) {
+            // This is the first connection to this signal. Remember it so that it can be moved onto a junction if the signal is read again
+            signal.directLine = lines.size()-1;
+        }
+    }
+
+    /**
+     * @param a The input of the buffer
+     * @return The output of a new buffer
+     */
+    public Signal buffer(Signal a) {
+        return unary(EBuffer::new, a);
+    }
+
+    /**
+     * @param a The input of the gate
+     * @return The output of a new NOT gate
+     */
+    public Signal not(Signal a) {
+        return unary(ENOTGate::new, a);
+    }
+
+    /**
+     * @param a The first input of the gate
+     * @param b The second input of the gate
+     * @return The output of a new AND gate
+     */
+    public Signal and(Signal a, Signal b) {
+        return binary(EANDGate::new, a, b);
+    }
+
+    /**
+     * @param a The first input of the gate
+     * @param b The second input of the gate
+     * @return The output of a new OR gate
+     */
+    public Signal or(Signal a, Signal b) {
+        return binary(EORGate::new, a, b);
+    }
+
+    /**
+     * @param a The first input of the gate
+     * @param b The second input of the gate
+     * @return The output of a new XOR gate
+     */
+    public Signal xor(Signal a, Signal b) {
+        return binary(EXORGate::new, a, b);
+    }
+
+    /**
+     * @param a The first input of the gate
+     * @param b The second input of the gate
+     * @return The output of a new NAND gate
+     */
+    public Signal nand(Signal a, Signal b) {
+        return binary(ENANDGate::new, a, b);
+    }
+
+    /**
+     * @param a The first input of the gate
+     * @param b The second input of the gate
+     * @return The output of a new NOR gate
+     */
+    public Signal nor(Signal a, Signal b) {
+        return binary(ENORGate::new, a, b);
+    }
+
+    /**
+     * @param a The first input of the gate
+     * @param b The second input of the gate
+     * @return The output of a new XNOR gate
+     */
+    public Signal xnor(Signal a, Signal b) {
+        return binary(EXNORGate::new, a, b);
+    }
+
+    private Signal unary(Function<Point2D.Double, EditorComponent> constructor, Signal a) {
+        EditorComponent gate = place(constructor);
+        connect(a, gate, "I");
+        return signal(gate, "O");
+    }
+
+    private Signal binary(Function<Point2D.Double, EditorComponent> constructor, Signal a, Signal b) {
+        EditorComponent gate = place(constructor);
+        connect(a, gate, "I1");
+        connect(b, gate, "I2");
+        return signal(gate, "O");
+    }
+
+    private Pair<Long, String> tap(Signal signal) {
+        if(signal.directLine == -2) {
+            // The signal has not been read yet, so it can be connected directly
+            return new Pair<>(signal.comp.getId(), signal.port);
+        }
+        if(signal.directLine >= 0) {
+            // The signal is being read a second time, so move its existing Line onto a new junction
+            Line direct = lines.get(signal.directLine);
+            EditorComponent junction = createJunction(signal);
+            lines.set(signal.directLine, new Line(signal.comp.getId(), signal.port, junction.getId(), "P2", true, 0.5));
+            lines.add(new Line(junction.getId(), "P1", direct.compId2, direct.portId2, direct.isHoris, direct.movPer));
+            signal.free.add(new Pair<>(junction.getId(), "P4"));
+            signal.free.add(new Pair<>(junction.getId(), "P3"));
+            signal.directLine = -1;
+        }
+        if(signal.free.size() == 1) {
+            // Use the last free port to extend the chain of junctions
+            Pair<Long, String> last = signal.free.poll();
+            EditorComponent junction = createJunction(signal);
+            lines.add(new Line(last.getT(), last.getU(), junction.getId(), "P2", true, 0.5));
+            signal.free.add(new Pair<>(junction.getId(), "P1"));
+            signal.free.add(new Pair<>(junction.getId(), "P4"));
+            signal.free.add(new Pair<>(junction.getId(), "P3"));
+        }
+        return signal.free.poll();
+    }
+
+    private EditorComponent createJunction(Signal signal) {
+        // Place the junction just to the right of the component producing the signal
+        Point2D.Double pos = signal.comp.getPosition();
+        EditorComponent junction = new EJunction(new Point2D.Double(pos.x+signal.comp.getSize().width+10, pos.y+signal.comp.getSize().height/2D-10));
+        comps.add(junction);
+        return junction;
+    }
+
+    /**
+     * Represents a signal produced by a port which can be connected to any number of inputs
+     */
+    public static class Signal {
+
+        private final EditorComponent comp;
+        private final String port;
+        private final ArrayDeque<Pair<Long, String>> free;
+        // -2 if the signal has not been read, -1 if it is read through junctions, otherwise the index of the only Line reading it
+        private int directLine;
+
+        private Signal(EditorComponent comp, String port) {
+            this.comp = comp;
+            this.port = port;
+            this.free = new ArrayDeque<>();
+            this.directLine = -2;
+        }
+
+        /**
+         * @return The component which produces this signal
+         */
+        public EditorComponent getComponent() {
+            return comp;
+        }
+
+        /**
+         * @return The id of the port which produces this signal
+         */
+        public String getPort() {
+            return port;
+        }
+
+    }
+
+}
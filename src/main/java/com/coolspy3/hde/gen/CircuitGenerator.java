@@ -0,0 +1,354 @@
+package com.coolspy3.hde.gen;
+
+import com.coolspy3.hde.component.EditorComponent;
+import com.coolspy3.hde.component.components.EBuffer;
+import com.coolspy3.hde.component.components.ENORGate;
+import com.coolspy3.hde.component.components.ENOTGate;
+import com.coolspy3.hde.gen.CircuitBuilder.Signal;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Generates common circuits inside of a {@link CircuitBuilder}.
+ * Multi-bit values are represented as arrays of signals with the least significant bit first
+ */
+public final class CircuitGenerator {
+
+    /**
+     * The number of bits in each carry-lookahead block
+     */
+    public static final int LOOKAHEAD_BLOCK = 4;
+
+    /**
+     * Creates a half adder
+     * @param b The builder in which to create the circuit
+     * @param x The first bit to add
+     * @param y The second bit to add
+     * @return The sum followed by the carry
+     */
+    public static Signal[] halfAdder(CircuitBuilder b, Signal x, Signal y) {
+        return new Signal[] {b.xor(x, y), b.and(x, y)};
+    }
+
+    /**
+     * Creates a full adder
+     * @param b The builder in which to create the circuit
+     * @param x The first bit to add
+     * @param y The second bit to add
+     * @param cin The carry input
+     * @return The sum followed by the carry
+     */
+    public static Signal[] fullAdder(CircuitBuilder b, Signal x, Signal y, Signal cin) {
+        Signal partial = b.xor(x, y);
+        return new Signal[] {b.xor(partial, cin), b.or(b.and(x, y), b.and(partial, cin))};
+    }
+
+    /**
+     * Creates a ripple-carry adder
+     * @param b The builder in which to create the circuit
+     * @param x The first value to add
+     * @param y The second value to add, which must have the same length as x
+     * @param cin The carry input, or null if there is none
+     * @return The sum, which is one bit longer than the inputs
+     * @throws IllegalArgumentException if the inputs are not the same length
+     */
+    public static Signal[] rippleCarryAdder(CircuitBuilder b, Signal[] x, Signal[] y, Signal cin) {
+        checkWidth(x, y);
+        Signal[] sum = new Signal[x.length+1];
+        Signal carry = cin;
+        for(int i = 0; i < x.length; i++) {
+            Signal[] bit = carry == null ? halfAdder(b, x[i], y[i]) : fullAdder(b, x[i], y[i], carry);
+            sum[i] = bit[0];
+            carry = bit[1];
+        }
+        sum[x.length] = carry;
+        return sum;
+    }
+
+    /**
+     * Creates a carry-lookahead adder. Carries are computed directly from the generate and propagate signals within each block of {@link #LOOKAHEAD_BLOCK} bits and ripple between blocks
+     * @param b The builder in which to create the circuit
+     * @param x The first value to add
+     * @param y The second value to add, which must have the same length as x
+     * @param cin The carry input
+     * @return The sum, which is one bit longer than the inputs
+     * @throws IllegalArgumentException if the inputs are not the same length
+     */
+    public static Signal[] carryLookaheadAdder(CircuitBuilder b, Signal[] x, Signal[] y, Signal cin) {
+        checkWidth(x, y);
+        Signal[] sum = new Signal[x.length+1];
+        Signal[] generate = new Signal[x.length];
+        Signal[] propagate = new Signal[x.length];
+        for(int i = 0; i < x.length; i++) {
+            generate[i] = b.and(x[i], y[i]);
+            propagate[i] = b.xor(x[i], y[i]);
+        }
+        Signal blockCarry = cin;
+        for(int start = 0; start < x.length; start += LOOKAHEAD_BLOCK) {
+            int end = Math.min(start+LOOKAHEAD_BLOCK, x.length);
+            Signal carry = blockCarry;
+            for(int i = start; i < end; i++) {
+                sum[i] = b.xor(propagate[i], carry);
+                // c(i+1) = g(i) | p(i)g(i-1) | p(i)p(i-1)g(i-2) | ... | p(i)...p(start)c(start)
+                Signal term = generate[i];
+                Signal chain = propagate[i];
+                for(int j = i-1; j >= start; j--) {
+                    term = b.or(term, b.and(chain, generate[j]));
+                    chain = b.and(chain, propagate[j]);
+                }
+                carry = b.or(term, b.and(chain, blockCarry));
+            }
+            blockCarry = carry;
+        }
+        sum[x.length] = blockCarry;
+        return sum;
+    }
+
+    /**
+     * Creates an array multiplier, which adds each row of partial products to the running sum with a ripple-carry adder
+     * @param b The builder in which to create the circuit
+     * @param x The first value to multiply
+     * @param y The second value to multiply
+     * @return The product, which is as long as both inputs combined
+     * @throws IllegalArgumentException if either input is shorter than two bits
+     */
+    public static Signal[] arrayMultiplier(CircuitBuilder b, Signal[] x, Signal[] y) {
+        if(x.length < 2 || y.length < 2) {
+            throw new IllegalArgumentException("Inputs must be at least two bits wide");
+        }
+        Signal[] product = new Signal[x.length+y.length];
+        Signal[] row = new Signal[x.length];
+        for(int i = 0; i < x.length; i++) {
+            row[i] = b.and(x[i], y[0]);
+        }
+        for(int j = 1; j < y.length; j++) {
+            // The lowest bit of the running sum is final once the next row is shifted past it
+            product[j-1] = row[0];
+            Signal[] high = new Signal[x.length];
+            Signal[] partial = new Signal[x.length];
+            for(int i = 0; i < x.length; i++) {
+                high[i] = i+1 < row.length ? row[i+1] : null;
+                partial[i] = b.and(x[i], y[j]);
+            }
+            Signal[] next = new Signal[x.length+1];
+            Signal carry = null;
+            for(int i = 0; i < x.length; i++) {
+                Signal[] bit;
+                if(high[i] == null) {
+                    bit = carry == null ? new Signal[] {partial[i], null} : halfAdder(b, partial[i], carry);
+                } else {
+                    bit = carry == null ? halfAdder(b, high[i], partial[i]) : fullAdder(b, high[i], partial[i], carry);
+                }
+                next[i] = bit[0];
+                carry = bit[1];
+            }
+            next[x.length] = carry;
+            row = next;
+        }
+        for(int i = 0; i < row.length && y.length-1+i < product.length; i++) {
+            product[y.length-1+i] = row[i];
+        }
+        return product;
+    }
+
+    /**
+     * Creates a gated D latch from a pair of cross-coupled NOR gates
+     * @param b The builder in which to create the circuit
+     * @param d The data input
+     * @param enable The signal which allows the latch to change while it is high
+     * @return The output of the latch
+     */
+    public static Signal dLatch(CircuitBuilder b, Signal d, Signal enable) {
+        Signal set = b.and(d, enable);
+        Signal reset = b.and(b.not(d), enable);
+        EditorComponent qGate = b.place(ENORGate::new);
+        EditorComponent qBarGate = b.place(ENORGate::new);
+        Signal q = b.signal(qGate, "O");
+        b.connect(reset, qGate, "I1");
+        b.connect(b.signal(qBarGate, "O"), qGate, "I2");
+        b.connect(set, qBarGate, "I1");
+        b.connect(q, qBarGate, "I2");
+        return q;
+    }
+
+    /**
+     * Creates a master-slave D flip-flop which changes on the rising edge of the clock
+     * @param b The builder in which to create the circuit
+     * @param d The data input
+     * @param clock The clock signal
+     * @param clockBar The inverse of the clock signal
+     * @return The output of the flip-flop
+     */
+    public static Signal dFlipFlop(CircuitBuilder b, Signal d, Signal clock, Signal clockBar) {
+        return dLatch(b, dLatch(b, d, clockBar), clock);
+    }
+
+    /**
+     * Creates a Fibonacci linear-feedback shift register. The feedback is the XNOR of the tapped bits, so the only state which the register cannot leave is the one in which every bit is high.
+     * The latches do not have a defined state until they are written, so reset should be held high for bits clock cycles to shift the register into the all-zero state.
+     * Whether the sequence has the maximum length depends on the taps
+     * @param b The builder in which to create the circuit
+     * @param bits The number of bits in the register
+     * @param taps The indices of the bits which are fed back into the first bit
+     * @param clock The clock signal
+     * @param reset The signal which shifts zeros into the register while it is high
+     * @return The outputs of the register
+     * @throws IllegalArgumentException if there are no taps or any tap is out of range
+     */
+    public static Signal[] lfsr(CircuitBuilder b, int bits, int[] taps, Signal clock, Signal reset) {
+        if(taps.length == 0) {
+            throw new IllegalArgumentException("An LFSR must have at least one tap");
+        }
+        for(int tap: taps) {
+            if(tap < 0 || tap >= bits) {
+                throw new IllegalArgumentException("Invalid tap: " + tap);
+            }
+        }
+        Signal clockBar = b.not(clock);
+        // The first bit reads the feedback, which can only be computed once every bit exists, so its data input is connected through a buffer which is wired last
+        EditorComponent feedbackBuffer = b.place(EBuffer::new);
+        Signal[] state = new Signal[bits];
+        Signal d = b.and(b.signal(feedbackBuffer, "O"), b.not(reset));
+        for(int i = 0; i < bits; i++) {
+            state[i] = dFlipFlop(b, d, clock, clockBar);
+            d = state[i];
+        }
+        Signal feedback = state[taps[0]];
+        for(int i = 1; i < taps.length; i++) {
+            feedback = b.xnor(feedback, state[taps[i]]);
+        }
+        if(taps.length == 1) {
+            feedback = b.not(feedback);
+        }
+        b.connect(feedback, feedbackBuffer, "I");
+        return state;
+    }
+
+    /**
+     * Creates an address decoder
+     * @param b The builder in which to create the circuit
+     * @param address The address to decode
+     * @param enable A signal which must be high for any output to be high, or null if the decoder is always enabled
+     * @param outputs The number of outputs to create, which must not be more than 2^address.length
+     * @return The outputs of the decoder, where only the output corresponding to the address is high
+     * @throws IllegalArgumentException if the address is too short for the number of outputs
+     */
+    public static Signal[] decoder(CircuitBuilder b, Signal[] address, Signal enable, int outputs) {
+        if(address.length < 31 && outputs > 1 << address.length) {
+            throw new IllegalArgumentException("Address is too short for " + outputs + " outputs");
+        }
+        Signal[] inverted = new Signal[address.length];
+        for(int i = 0; i < address.length; i++) {
+            inverted[i] = b.not(address[i]);
+        }
+        Signal[] decoded = new Signal[outputs];
+        for(int i = 0; i < outputs; i++) {
+            Signal term = enable;
+            for(int bit = 0; bit < address.length; bit++) {
+                Signal literal = (i >> bit & 1) == 1 ? address[bit] : inverted[bit];
+                term = term == null ? literal : b.and(term, literal);
+            }
+            decoded[i] = term == null ? enable : term;
+        }
+        return decoded;
+    }
+
+    /**
+     * Creates a register file in which every bit is stored in a gated D latch built from NOR gates. The file has a single address which is used for both reads and writes
+     * @param b The builder in which to create the circuit
+     * @param words The number of words in the file
+     * @param data The value to write
+     * @param address The address of the word to read and write
+     * @param writeEnable The signal which writes the data into the addressed word while it is high
+     * @return The value of the addressed word
+     * @throws IllegalArgumentException if the address is too short for the number of words
+     */
+    public static Signal[] registerFile(CircuitBuilder b, int words, Signal[] data, Signal[] address, Signal writeEnable) {
+        Signal[] select = decoder(b, address, null, words);
+        Signal[] read = new Signal[data.length];
+        for(int word = 0; word < words; word++) {
+            Signal write = b.and(select[word], writeEnable);
+            for(int bit = 0; bit < data.length; bit++) {
+                Signal value = b.and(dLatch(b, data[bit], write), select[word]);
+                read[bit] = read[bit] == null ? value : b.or(read[bit], value);
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Creates a ring oscillator from an odd number of NOT gates. The output changes every stages ticks
+     * @param b The builder in which to create the circuit
+     * @param stages The number of NOT gates in the ring
+     * @return The output of the oscillator
+     * @throws IllegalArgumentException if stages is not a positive odd number
+     */
+    public static Signal ringOscillator(CircuitBuilder b, int stages) {
+        if(stages < 1 || stages % 2 == 0) {
+            throw new IllegalArgumentException("A ring oscillator must have a positive odd number of stages");
+        }
+        EditorComponent first = b.place(ENOTGate::new);
+        Signal output = b.signal(first, "O");
+        for(int i = 1; i < stages; i++) {
+            output = b.not(output);
+        }
+        b.connect(output, first, "I");
+        return output;
+    }
+
+    /**
+     * Creates a random directed acyclic graph of gates. Each gate reads from recently created gates or inputs so that the circuit has locality
+     * @param b The builder in which to create the circuit
+     * @param inputs The inputs of the circuit
+     * @param gates The number of gates to create
+     * @param random The source of randomness
+     * @return The outputs of every created gate
+     * @throws IllegalArgumentException if there are no inputs
+     */
+    public static Signal[] randomDag(CircuitBuilder b, Signal[] inputs, int gates, Random random) {
+        if(inputs.length == 0) {
+            throw new IllegalArgumentException("A random circuit must have at least one input");
+        }
+        ArrayList<Signal> pool = new ArrayList<>(inputs.length+gates);
+        for(Signal input: inputs) {
+            pool.add(input);
+        }
+        int window = Math.max(2, 2*(int)Math.sqrt(gates));
+        Signal[] outputs = new Signal[gates];
+        for(int i = 0; i < gates; i++) {
+            Signal x = pool.get(Math.max(0, pool.size()-1-random.nextInt(window)));
+            Signal y = pool.get(Math.max(0, pool.size()-1-random.nextInt(window)));
+            switch(random.nextInt(6)) {
+                case 0:
+                    outputs[i] = b.and(x, y);
+                    break;
+                case 1:
+                    outputs[i] = b.or(x, y);
+                    break;
+                case 2:
+                    outputs[i] = b.xor(x, y);
+                    break;
+                case 3:
+                    outputs[i] = b.nand(x, y);
+                    break;
+                case 4:
+                    outputs[i] = b.nor(x, y);
+                    break;
+                default:
+                    outputs[i] = b.not(x);
+                    break;
+            }
+            pool.add(outputs[i]);
+        }
+        return outputs;
+    }
+
+    private static void checkWidth(Signal[] x, Signal[] y) {
+        if(x.length != y.length) {
+            throw new IllegalArgumentException("Inputs must be the same width: " + x.length + " != " + y.length);
+        }
+    }
+
+    private CircuitGenerator() {}
+
+}
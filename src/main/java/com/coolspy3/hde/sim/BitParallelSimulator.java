@@ -0,0 +1,189 @@
+package com.coolspy3.hde.sim;
+
+/**
+ * Simulates 64 independent copies of a {@link Netlist} at once. Every net carries a long in which each bit (or lane) belongs to a different copy,
+ * so every gate evaluation applies one bitwise operation to all 64 copies.
+ * This is intended for running many test vectors through the same circuit
+ * @see NetlistSimulator
+ */
+public class BitParallelSimulator {
+
+    /**
+     * The number of copies of the circuit which are simulated at once
+     */
+    public static final int LANES = Long.SIZE;
+
+    private final Netlist netlist;
+    private final long[] nets;
+    private final long[] gates;
+    private final long[] next;
+    private final Frontier frontier;
+    private long tickCount;
+
+    /**
+     * Creates a new BitParallelSimulator with every net inactive in every lane and schedules every gate for evaluation on the first tick
+     * @param netlist The circuit to simulate
+     * @throws IllegalArgumentException if the circuit contains subcircuit instances
+     * @see Netlist#flatten()
+     */
+    public BitParallelSimulator(Netlist netlist) throws IllegalArgumentException {
+        netlist.requireFlat();
+        this.netlist = netlist;
+        this.nets = new long[netlist.netCount];
+        this.gates = new long[netlist.ops.length];
+        this.next = new long[netlist.ops.length];
+        this.frontier = new Frontier(netlist.ops.length);
+        this.tickCount = 0;
+
+        // Every gate needs to be evaluated once to establish its initial state
+        scheduleAll();
+    }
+
+    /**
+     * Calculates the value an input should take to enumerate every combination of input values.
+     * Combination <code>pass * 64 + lane</code> is applied to lane <code>lane</code> when every input <code>i</code> is set to <code>exhaustiveLanes(i, pass)</code>
+     * @param input The index of the input within the list of inputs being enumerated
+     * @param pass The index of the current batch of 64 combinations
+     * @return The lanes which should be active for the given input
+     */
+    public static long exhaustiveLanes(int input, long pass) {
+        if(input < 6) {
+            // The first 6 inputs vary within a single pass (0xAAAA..., 0xCCCC..., 0xF0F0..., etc.)
+            long pattern = 0;
+            for(int lane = 0; lane < LANES; lane++) {
+                if((lane >>> input & 1) != 0) {
+                    pattern |= 1L << lane;
+                }
+            }
+            return pattern;
+        }
+
+        // The remaining inputs are constant within a pass and are taken from the pass number
+        return (pass >>> (input-6) & 1) != 0 ? -1L : 0;
+    }
+
+    /**
+     * @return The circuit being simulated
+     */
+    public Netlist getNetlist() {
+        return netlist;
+    }
+
+    /**
+     * @param net The index of the net
+     * @return The state of the given net in every lane
+     */
+    public long getNet(int net) {
+        return nets[net];
+    }
+
+    /**
+     * @param net The index of the net
+     * @param lane The lane to check
+     * @return Whether the given net is active in the given lane
+     */
+    public boolean getNet(int net, int lane) {
+        return (nets[net] >>> lane & 1) != 0;
+    }
+
+    /**
+     * Sets the state of the given net in every lane and schedules every gate which reads from it.
+     * This is intended for nets without drivers. The value of a driven net will be overwritten when one of its drivers changes
+     * @param net The index of the net
+     * @param state The new state of the net in every lane
+     */
+    public void setNet(int net, long state) {
+        if(nets[net] != state) {
+            nets[net] = state;
+            scheduleReaders(net);
+        }
+    }
+
+    /**
+     * Schedules every gate to be re-evaluated on the next tick
+     */
+    public void scheduleAll() {
+        frontier.scheduleAll();
+    }
+
+    /**
+     * Advances the simulation by one tick in every lane
+     * @return Whether any gates are scheduled for the next tick
+     * @see NetlistSimulator#tick()
+     */
+    public boolean tick() {
+        int[] ops = netlist.ops;
+        int[] in1 = netlist.in1;
+        int[] in2 = netlist.in2;
+        int[] out = netlist.out;
+
+        // Newly scheduled gates are collected separately from the gates being evaluated
+        int size = frontier.advance();
+        int[] current = frontier.current();
+
+        // Phase 1: read inputs
+        for(int i = 0; i < size; i++) {
+            int gate = current[i];
+            next[gate] = Netlist.eval(ops[gate], nets[in1[gate]], nets[in2[gate]]);
+        }
+
+        // Phase 2: write outputs and wake up any readers of changed nets
+        for(int i = 0; i < size; i++) {
+            int gate = current[i];
+            if(gates[gate] != next[gate]) {
+                gates[gate] = next[gate];
+                updateNet(out[gate]);
+            }
+        }
+
+        tickCount++;
+        return !frontier.isEmpty();
+    }
+
+    /**
+     * Repeatedly calls {@link #tick()} until no gates are scheduled or the given number of ticks have elapsed
+     * @param maxTicks The maximum number of ticks to run
+     * @return The number of ticks which were run
+     */
+    public int settle(int maxTicks) {
+        int ticks = 0;
+        while(ticks < maxTicks && !frontier.isEmpty()) {
+            tick();
+            ticks++;
+        }
+        return ticks;
+    }
+
+    /**
+     * @return Whether no gates are scheduled for the next tick
+     */
+    public boolean isQuiescent() {
+        return frontier.isEmpty();
+    }
+
+    /**
+     * @return The number of ticks which have been run by this simulator
+     */
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    private void updateNet(int net) {
+        // A net is active in every lane in which any of its drivers are active
+        long state = 0;
+        for(int i = netlist.driverStart[net]; i < netlist.driverStart[net+1]; i++) {
+            state |= gates[netlist.drivers[i]];
+        }
+        if(nets[net] != state) {
+            nets[net] = state;
+            scheduleReaders(net);
+        }
+    }
+
+    private void scheduleReaders(int net) {
+        for(int i = netlist.readerStart[net]; i < netlist.readerStart[net+1]; i++) {
+            frontier.schedule(netlist.readers[i]);
+        }
+    }
+
+}
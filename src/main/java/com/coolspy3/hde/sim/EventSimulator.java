@@ -0,0 +1,199 @@
+package com.coolspy3.hde.sim;
+
+import com.coolspy3.hde.Pair;
+import com.coolspy3.hde.component.LogicComponent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.NoSuchElementException;
+
+/**
+ * Drives a set of LogicComponents through the two-phase {@link LogicComponent#queueState()} / {@link LogicComponent#pushState()} protocol.
+ * Only the components which read from an output that changed during the previous tick are re-evaluated, so quiescent parts of the circuit cost nothing
+ */
+public class EventSimulator {
+
+    private final LogicComponent[] comps;
+    private final IdentityHashMap<LogicComponent, Integer> indices;
+    private final int[][] fanout;
+    private final boolean[] scheduled;
+    private int[] frontier;
+    private int frontierSize;
+    private int[] evaluating;
+    private long tickCount;
+
+    /**
+     * Creates a new EventSimulator and schedules every component for evaluation on the first tick
+     * @param comps The components to simulate. Every component which is connected to one of these components should also be included
+     */
+    public EventSimulator(Collection<? extends LogicComponent> comps) {
+        this.comps = comps.toArray(new LogicComponent[0]);
+        this.indices = new IdentityHashMap<>();
+        for(int i = 0; i < this.comps.length; i++) {
+            indices.put(this.comps[i], i);
+        }
+
+        // Invert the connection lists so that each component knows which components read from it
+        ArrayList<ArrayList<Integer>> readers = new ArrayList<>();
+        for(int i = 0; i < this.comps.length; i++) {
+            readers.add(new ArrayList<>());
+        }
+        for(int i = 0; i < this.comps.length; i++) {
+            for(Pair<Boolean, ArrayList<Pair<LogicComponent, String>>> port: this.comps[i].ports.values()) {
+                for(Pair<LogicComponent, String> conn: port.getU()) {
+                    Integer source = indices.get(conn.getT());
+                    if(source == null) {
+                        // The connected component is not being simulated
+                        continue;
+                    }
+                    ArrayList<Integer> list = readers.get(source);
+
+                    // Components are visited in order, so a duplicate can only be the last entry
+                    if(list.isEmpty() || list.get(list.size()-1) != i) {
+                        list.add(i);
+                    }
+                }
+            }
+        }
+        this.fanout = new int[this.comps.length][];
+        for(int i = 0; i < this.comps.length; i++) {
+            fanout[i] = readers.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        // Initialize variables
+        this.scheduled = new boolean[this.comps.length];
+        this.frontier = new int[this.comps.length];
+        this.evaluating = new int[this.comps.length];
+        this.frontierSize = 0;
+        this.tickCount = 0;
+
+        // Every component needs to be evaluated once to establish its initial state
+        scheduleAll();
+    }
+
+    /**
+     * Schedules the given component to be re-evaluated on the next tick
+     * @param comp The component to schedule
+     * @throws NoSuchElementException if the component is not part of this simulation
+     */
+    public void schedule(LogicComponent comp) throws NoSuchElementException {
+        schedule(indexOf(comp));
+    }
+
+    /**
+     * Schedules every component which reads from the given component to be re-evaluated on the next tick.
+     * This should be called whenever the outputs of a component are modified outside of {@link #tick()}
+     * @param comp The component whose outputs changed
+     * @throws NoSuchElementException if the component is not part of this simulation
+     */
+    public void scheduleFanout(LogicComponent comp) throws NoSuchElementException {
+        for(int reader: fanout[indexOf(comp)]) {
+            schedule(reader);
+        }
+    }
+
+    /**
+     * Schedules every component in this simulation to be re-evaluated on the next tick
+     */
+    public void scheduleAll() {
+        for(int i = 0; i < comps.length; i++) {
+            schedule(i);
+        }
+    }
+
+    /**
+     * Advances the simulation by one tick. Every scheduled component queues its next state, then every scheduled component pushes it.
+     * Components which read from an output that changed are scheduled for the next tick
+     * @return Whether any components are scheduled for the next tick
+     */
+    public boolean tick() {
+        // Swap the frontier out so that newly scheduled components are collected separately
+        int[] current = frontier;
+        int size = frontierSize;
+        frontier = evaluating;
+        evaluating = current;
+        frontierSize = 0;
+        for(int i = 0; i < size; i++) {
+            scheduled[current[i]] = false;
+        }
+
+        // Phase 1: read inputs
+        for(int i = 0; i < size; i++) {
+            comps[current[i]].queueState();
+        }
+
+        // Phase 2: write outputs and wake up any readers of changed outputs
+        for(int i = 0; i < size; i++) {
+            int comp = current[i];
+            if(comps[comp].pushState()) {
+                for(int reader: fanout[comp]) {
+                    schedule(reader);
+                }
+            }
+        }
+
+        tickCount++;
+        return frontierSize != 0;
+    }
+
+    /**
+     * Repeatedly calls {@link #tick()} until no components are scheduled or the given number of ticks have elapsed.
+     * Circuits which oscillate will never settle
+     * @param maxTicks The maximum number of ticks to run
+     * @return The number of ticks which were run
+     */
+    public int settle(int maxTicks) {
+        int ticks = 0;
+        while(ticks < maxTicks && frontierSize != 0) {
+            tick();
+            ticks++;
+        }
+        return ticks;
+    }
+
+    /**
+     * @return Whether no components are scheduled for the next tick
+     */
+    public boolean isQuiescent() {
+        return frontierSize == 0;
+    }
+
+    /**
+     * @return The number of components which are scheduled for the next tick
+     */
+    public int getActivity() {
+        return frontierSize;
+    }
+
+    /**
+     * @return The number of ticks which have been run by this simulator
+     */
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * @return An unmodifiable view of the components in this simulation
+     */
+    public Collection<LogicComponent> getComponents() {
+        return Collections.unmodifiableList(Arrays.asList(comps));
+    }
+
+    private int indexOf(LogicComponent comp) throws NoSuchElementException {
+        Integer index = indices.get(comp);
+        if(index == null) {
+            throw new NoSuchElementException("Component is not part of this simulation: " + comp.getId());
+        }
+        return index;
+    }
+
+    private void schedule(int comp) {
+        if(!scheduled[comp]) {
+            scheduled[comp] = true;
+            frontier[frontierSize++] = comp;
+        }
+    }
+
+}
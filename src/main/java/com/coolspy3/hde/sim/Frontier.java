@@ -0,0 +1,77 @@
+package com.coolspy3.hde.sim;
+
+/**
+ * Holds the items (gates or subcircuit instances) which a simulator has scheduled for the next tick, and the items being evaluated during the current tick.
+ * Scheduling an item which is already scheduled does nothing, so every item is evaluated at most once per tick
+ * @see NetlistSimulator
+ * @see BitParallelSimulator
+ */
+final class Frontier {
+
+    private final boolean[] scheduled;
+    private int[] next;
+    private int nextSize;
+    private int[] current;
+
+    /**
+     * Creates a new Frontier with nothing scheduled
+     * @param capacity The number of items which can be scheduled
+     */
+    Frontier(int capacity) {
+        this.scheduled = new boolean[capacity];
+        this.next = new int[capacity];
+        this.nextSize = 0;
+        this.current = new int[capacity];
+    }
+
+    /**
+     * Schedules an item for the next tick, unless it is already scheduled
+     * @param item The index of the item
+     */
+    void schedule(int item) {
+        if(!scheduled[item]) {
+            scheduled[item] = true;
+            next[nextSize++] = item;
+        }
+    }
+
+    /**
+     * Schedules every item for the next tick
+     */
+    void scheduleAll() {
+        for(int item = 0; item < scheduled.length; item++) {
+            schedule(item);
+        }
+    }
+
+    /**
+     * Starts a tick by moving every scheduled item into {@link #current()}. Items scheduled from now on are collected separately for the following tick
+     * @return The number of items to evaluate during this tick
+     */
+    int advance() {
+        int[] items = next;
+        int size = nextSize;
+        next = current;
+        current = items;
+        nextSize = 0;
+        for(int i = 0; i < size; i++) {
+            scheduled[items[i]] = false;
+        }
+        return size;
+    }
+
+    /**
+     * @return The items to evaluate during this tick, as returned by the last call to {@link #advance()}
+     */
+    int[] current() {
+        return current;
+    }
+
+    /**
+     * @return Whether nothing is scheduled for the next tick
+     */
+    boolean isEmpty() {
+        return nextSize == 0;
+    }
+
+}
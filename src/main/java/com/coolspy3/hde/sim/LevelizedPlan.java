@@ -0,0 +1,263 @@
+package com.coolspy3.hde.sim;
+
+import java.util.Arrays;
+
+/**
+ * Represents an evaluation order for the gates of a {@link Netlist} in which every gate is evaluated after all of the gates which drive its inputs.
+ * Gates which form a loop (such as a latch built from NOR gates) cannot be ordered this way, so each loop is grouped into a block which must be iterated until it settles.
+ * A LevelizedPlan holds no simulation state, so it can be shared between any number of simulators
+ * @see LevelizedSimulator
+ */
+public class LevelizedPlan {
+
+    final Netlist netlist;
+    final int[] order;
+    final int[] blockStart;
+    final boolean[] cyclic;
+    final int[] levels;
+    private final int depth;
+
+    /**
+     * Creates a new LevelizedPlan by topologically sorting the strongly connected components of the gate graph of the given Netlist
+     * @param netlist The Netlist to levelize
+     * @throws IllegalArgumentException if the Netlist contains subcircuit instances
+     * @see Netlist#flatten()
+     */
+    public LevelizedPlan(Netlist netlist) throws IllegalArgumentException {
+        netlist.requireFlat();
+        this.netlist = netlist;
+        int gateCount = netlist.ops.length;
+
+        // Find the strongly connected components using an iterative version of Tarjan's algorithm
+        // Components are found in reverse topological order, so the gates are written to the order array from the back
+        int[] index = new int[gateCount];
+        int[] lowLink = new int[gateCount];
+        boolean[] onStack = new boolean[gateCount];
+        int[] stack = new int[gateCount];
+        int stackSize = 0;
+        int[] callGate = new int[gateCount];
+        int[] callEdge = new int[gateCount];
+        int callSize = 0;
+        int nextIndex = 1;
+        int[] sccOrder = new int[gateCount];
+        int sccOrderStart = gateCount;
+        int[] sccStarts = new int[gateCount+1];
+        int sccCount = 0;
+        for(int root = 0; root < gateCount; root++) {
+            if(index[root] != 0) {
+                continue;
+            }
+            callGate[callSize] = root;
+            callEdge[callSize++] = netlist.readerStart[netlist.out[root]];
+            index[root] = lowLink[root] = nextIndex++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while(callSize != 0) {
+                int gate = callGate[callSize-1];
+                int net = netlist.out[gate];
+                if(callEdge[callSize-1] < netlist.readerStart[net+1]) {
+                    // Visit the next reader of this gate
+                    int reader = netlist.readers[callEdge[callSize-1]++];
+                    if(index[reader] == 0) {
+                        callGate[callSize] = reader;
+                        callEdge[callSize++] = netlist.readerStart[netlist.out[reader]];
+                        index[reader] = lowLink[reader] = nextIndex++;
+                        stack[stackSize++] = reader;
+                        onStack[reader] = true;
+                    } else if(onStack[reader]) {
+                        lowLink[gate] = Math.min(lowLink[gate], index[reader]);
+                    }
+                    continue;
+                }
+
+                // All readers have been visited
+                callSize--;
+                if(callSize != 0) {
+                    int parent = callGate[callSize-1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[gate]);
+                }
+                if(lowLink[gate] == index[gate]) {
+                    // This gate is the root of a strongly connected component. Pop it off the stack
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+                        sccOrder[--sccOrderStart] = member;
+                    } while(member != gate);
+                    sccStarts[sccCount++] = sccOrderStart;
+                }
+            }
+        }
+
+        // The components were found sinks-first, so reverse the block list to put it in topological order
+        this.order = sccOrder;
+        this.blockStart = new int[sccCount+1];
+        for(int i = 0; i < sccCount; i++) {
+            blockStart[i] = sccStarts[sccCount-1-i];
+        }
+        blockStart[sccCount] = gateCount;
+
+        // Determine which blocks contain loops and assign each block a level
+        this.cyclic = new boolean[sccCount];
+        this.levels = new int[sccCount];
+        int[] blockOf = new int[gateCount];
+        for(int block = 0; block < sccCount; block++) {
+            for(int i = blockStart[block]; i < blockStart[block+1]; i++) {
+                blockOf[order[i]] = block;
+            }
+        }
+        int maxLevel = -1;
+        for(int block = 0; block < sccCount; block++) {
+            cyclic[block] = blockStart[block+1]-blockStart[block] > 1;
+            int level = 0;
+            for(int i = blockStart[block]; i < blockStart[block+1]; i++) {
+                int gate = order[i];
+                level = Math.max(level, inputLevel(netlist, blockOf, block, netlist.in1[gate]));
+                level = Math.max(level, inputLevel(netlist, blockOf, block, netlist.in2[gate]));
+
+                // A gate which reads its own output is a loop on its own
+                cyclic[block] |= netlist.in1[gate] == netlist.out[gate] || netlist.in2[gate] == netlist.out[gate];
+            }
+            levels[block] = level;
+            maxLevel = Math.max(maxLevel, level);
+        }
+        this.depth = maxLevel+1;
+    }
+
+    private int inputLevel(Netlist netlist, int[] blockOf, int block, int net) {
+        // A block is one level above the highest block which drives any of its inputs
+        int level = 0;
+        for(int i = netlist.driverStart[net]; i < netlist.driverStart[net+1]; i++) {
+            int driverBlock = blockOf[netlist.drivers[i]];
+            if(driverBlock != block) {
+                level = Math.max(level, levels[driverBlock]+1);
+            }
+        }
+        return level;
+    }
+
+    /**
+     * Evaluates every gate in level order, reading and writing the state of the circuit at the given offsets so that many copies of the circuit can share the same arrays
+     * @param nets The state of every net, with net <code>n</code> at index <code>netBase + n</code>
+     * @param netBase The index of the first net of the copy being evaluated
+     * @param gates The output of every gate, with gate <code>g</code> at index <code>gateBase + g</code>
+     * @param next The scratch space used to iterate loops, indexed in the same way as <code>gates</code>
+     * @param gateBase The index of the first gate of the copy being evaluated
+     * @return Whether every loop in the circuit settled. If this is <code>false</code>, the circuit contains an oscillator
+     * @see LevelizedSimulator#evaluate()
+     */
+    boolean evaluate(boolean[] nets, int netBase, boolean[] gates, boolean[] next, int gateBase) {
+        int[] ops = netlist.ops;
+        int[] in1 = netlist.in1;
+        int[] in2 = netlist.in2;
+        int[] out = netlist.out;
+        boolean settled = true;
+
+        for(int block = 0; block < cyclic.length; block++) {
+            int start = blockStart[block];
+            int end = blockStart[block+1];
+            if(!cyclic[block]) {
+                // Every input of this gate has already been evaluated, so its output can be written immediately
+                int gate = order[start];
+                boolean state = Netlist.eval(ops[gate], nets[netBase+in1[gate]], nets[netBase+in2[gate]]);
+                if(gates[gateBase+gate] != state) {
+                    gates[gateBase+gate] = state;
+                    updateNet(nets, netBase, gates, gateBase, out[gate]);
+                }
+                continue;
+            }
+
+            // Iterate the loop using the two-phase protocol until none of its outputs change
+            // A loop which has not settled after this many iterations is assumed to oscillate
+            int maxIterations = 4*(end-start);
+            boolean changed = true;
+            for(int iteration = 0; changed && iteration < maxIterations; iteration++) {
+                for(int i = start; i < end; i++) {
+                    int gate = order[i];
+                    next[gateBase+gate] = Netlist.eval(ops[gate], nets[netBase+in1[gate]], nets[netBase+in2[gate]]);
+                }
+                changed = false;
+                for(int i = start; i < end; i++) {
+                    int gate = order[i];
+                    if(gates[gateBase+gate] != next[gateBase+gate]) {
+                        gates[gateBase+gate] = next[gateBase+gate];
+                        updateNet(nets, netBase, gates, gateBase, out[gate]);
+                        changed = true;
+                    }
+                }
+            }
+            settled &= !changed;
+        }
+        return settled;
+    }
+
+    private void updateNet(boolean[] nets, int netBase, boolean[] gates, int gateBase, int net) {
+        // A net is active if any of its drivers are active
+        boolean state = false;
+        for(int i = netlist.driverStart[net]; i < netlist.driverStart[net+1]; i++) {
+            if(gates[gateBase+netlist.drivers[i]]) {
+                state = true;
+                break;
+            }
+        }
+        nets[netBase+net] = state;
+    }
+
+    /**
+     * @return The Netlist which this plan evaluates
+     */
+    public Netlist getNetlist() {
+        return netlist;
+    }
+
+    /**
+     * @return The number of blocks in this plan. Each block is either a single gate or a loop of gates
+     */
+    public int getBlockCount() {
+        return cyclic.length;
+    }
+
+    /**
+     * @param block The index of the block
+     * @return The gates in the given block
+     */
+    public int[] getBlock(int block) {
+        return Arrays.copyOfRange(order, blockStart[block], blockStart[block+1]);
+    }
+
+    /**
+     * @param block The index of the block
+     * @return Whether the given block contains a loop and must be iterated until it settles
+     */
+    public boolean isCyclic(int block) {
+        return cyclic[block];
+    }
+
+    /**
+     * @param block The index of the block
+     * @return The level of the given block. Blocks only read from blocks with a lower level, so blocks with the same level can be evaluated in any order
+     */
+    public int getLevel(int block) {
+        return levels[block];
+    }
+
+    /**
+     * @return The number of distinct levels in this plan
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return Whether this plan does not contain any loops
+     */
+    public boolean isAcyclic() {
+        for(boolean c: cyclic) {
+            if(c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.coolspy3.hde.sim;
+
+/**
+ * Simulates a {@link Netlist} by evaluating every gate once in the order given by a {@link LevelizedPlan}.
+ * Acyclic logic settles in a single call to {@link #evaluate()} no matter how deep it is.
+ * Loops fall back to the two-phase protocol used by {@link NetlistSimulator} and are iterated until they settle
+ */
+public class LevelizedSimulator {
+
+    private final LevelizedPlan plan;
+    private final Netlist netlist;
+    private final boolean[] nets;
+    private final boolean[] gates;
+    private final boolean[] next;
+    private long evaluationCount;
+
+    /**
+     * Creates a new LevelizedSimulator with every net inactive
+     * @param netlist The circuit to simulate
+     * @throws IllegalArgumentException if the circuit contains subcircuit instances
+     */
+    public LevelizedSimulator(Netlist netlist) throws IllegalArgumentException {
+        this(new LevelizedPlan(netlist));
+    }
+
+    /**
+     * Creates a new LevelizedSimulator with every net inactive
+     * @param plan The evaluation order of the circuit to simulate
+     */
+    public LevelizedSimulator(LevelizedPlan plan) {
+        this.plan = plan;
+        this.netlist = plan.netlist;
+        this.nets = new boolean[netlist.netCount];
+        this.gates = new boolean[netlist.ops.length];
+        this.next = new boolean[netlist.ops.length];
+        this.evaluationCount = 0;
+    }
+
+    /**
+     * @return The evaluation order being used by this simulator
+     */
+    public LevelizedPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * @param net The index of the net
+     * @return Whether the given net is active
+     */
+    public boolean getNet(int net) {
+        return nets[net];
+    }
+
+    /**
+     * Sets the state of the given net. The change will not propagate until the next call to {@link #evaluate()}.
+     * This is intended for nets without drivers. The value of a driven net will be overwritten during the next evaluation
+     * @param net The index of the net
+     * @param state The new state of the net
+     */
+    public void setNet(int net, boolean state) {
+        nets[net] = state;
+    }
+
+    /**
+     * Evaluates every gate in the circuit in level order
+     * @return Whether every loop in the circuit settled. If this is <code>false</code>, the circuit contains an oscillator
+     */
+    public boolean evaluate() {
+        boolean settled = plan.evaluate(nets, 0, gates, next, 0);
+        evaluationCount++;
+        return settled;
+    }
+
+    /**
+     * @return The number of times {@link #evaluate()} has been called
+     */
+    public long getEvaluationCount() {
+        return evaluationCount;
+    }
+
+}
@@ -0,0 +1,463 @@
+package com.coolspy3.hde.sim;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Represents a compiled circuit in which every gate is an opcode and every connection is an integer net index.
+ * A circuit may also contain instances of {@link Subcircuit}s, which are connected to nets through their ports but whose gates are not copied into this Netlist.
+ * A Netlist is immutable and holds no simulation state, so it can be shared between any number of simulators
+ * @see NetlistCompiler
+ * @see NetlistSimulator
+ */
+public class Netlist {
+
+    /**
+     * The opcode of a buffer. This gate only reads its first input
+     */
+    public static final int OP_BUFFER = 0;
+    /**
+     * The opcode of a NOT gate. This gate only reads its first input
+     */
+    public static final int OP_NOT = 1;
+    /**
+     * The opcode of an AND gate
+     */
+    public static final int OP_AND = 2;
+    /**
+     * The opcode of an OR gate
+     */
+    public static final int OP_OR = 3;
+    /**
+     * The opcode of a XOR gate
+     */
+    public static final int OP_XOR = 4;
+    /**
+     * The opcode of a NAND gate
+     */
+    public static final int OP_NAND = 5;
+    /**
+     * The opcode of a NOR gate
+     */
+    public static final int OP_NOR = 6;
+    /**
+     * The opcode of a XNOR gate
+     */
+    public static final int OP_XNOR = 7;
+
+    final int netCount;
+    final int[] ops;
+    final int[] in1;
+    final int[] in2;
+    final int[] out;
+    final int[] driverStart;
+    final int[] drivers;
+    final int[] readerStart;
+    final int[] readers;
+    final long[] gateIds;
+    final String[] netNames;
+    private final HashMap<String, Integer> portNets;
+    // The nets connected to the inputs of instance i are instanceInputs[inputStart[i]] to instanceInputs[inputStart[i+1]-1], and likewise for the outputs
+    final Subcircuit[] instances;
+    final long[] instanceIds;
+    final int[] inputStart;
+    final int[] instanceInputs;
+    final int[] outputStart;
+    final int[] instanceOutputs;
+    // The instances which read from each net, and the indices into instanceOutputs of the instance outputs which drive each net
+    final int[] instanceReaderStart;
+    final int[] instanceReaders;
+    final int[] instanceDriverStart;
+    final int[] instanceDrivers;
+
+    /**
+     * Creates a new Netlist
+     * @param netCount The number of nets in the circuit
+     * @param ops The opcode of every gate
+     * @param in1 The net connected to the first input of every gate
+     * @param in2 The net connected to the second input of every gate. For gates with one input, this is the same as the first input
+     * @param out The net connected to the output of every gate
+     * @param gateIds The id of the component from which every gate was compiled
+     * @param netNames The name of every net
+     * @param portNets A map mapping port names in the form <code>componentId.portId</code> to the net they are connected to
+     */
+    Netlist(int netCount, int[] ops, int[] in1, int[] in2, int[] out, long[] gateIds, String[] netNames, HashMap<String, Integer> portNets) {
+        this(netCount, ops, in1, in2, out, gateIds, netNames, portNets, new Subcircuit[0], new long[0], new int[0], new int[0]);
+    }
+
+    /**
+     * Creates a new Netlist which contains instances of subcircuits
+     * @param netCount The number of nets in the circuit
+     * @param ops The opcode of every gate
+     * @param in1 The net connected to the first input of every gate
+     * @param in2 The net connected to the second input of every gate. For gates with one input, this is the same as the first input
+     * @param out The net connected to the output of every gate
+     * @param gateIds The id of the component from which every gate was compiled
+     * @param netNames The name of every net
+     * @param portNets A map mapping port names in the form <code>componentId.portId</code> to the net they are connected to
+     * @param instances The definition of every subcircuit instance
+     * @param instanceIds The id of the component from which every instance was compiled
+     * @param instanceInputs The nets connected to the inputs of every instance, with the inputs of each instance following those of the previous one
+     * @param instanceOutputs The nets connected to the outputs of every instance, with the outputs of each instance following those of the previous one
+     */
+    Netlist(int netCount, int[] ops, int[] in1, int[] in2, int[] out, long[] gateIds, String[] netNames, HashMap<String, Integer> portNets,
+            Subcircuit[] instances, long[] instanceIds, int[] instanceInputs, int[] instanceOutputs) {
+        this.netCount = netCount;
+        this.ops = ops;
+        this.in1 = in1;
+        this.in2 = in2;
+        this.out = out;
+        this.gateIds = gateIds;
+        this.netNames = netNames;
+        this.portNets = portNets;
+
+        // Index the drivers and readers of every net
+        this.driverStart = new int[netCount+1];
+        this.readerStart = new int[netCount+1];
+        for(int gate = 0; gate < ops.length; gate++) {
+            driverStart[out[gate]+1]++;
+            readerStart[in1[gate]+1]++;
+            if(in2[gate] != in1[gate]) {
+                readerStart[in2[gate]+1]++;
+            }
+        }
+        for(int net = 0; net < netCount; net++) {
+            driverStart[net+1] += driverStart[net];
+            readerStart[net+1] += readerStart[net];
+        }
+        this.drivers = new int[driverStart[netCount]];
+        this.readers = new int[readerStart[netCount]];
+        int[] driverFill = new int[netCount];
+        int[] readerFill = new int[netCount];
+        for(int gate = 0; gate < ops.length; gate++) {
+            drivers[driverStart[out[gate]]+driverFill[out[gate]]++] = gate;
+            readers[readerStart[in1[gate]]+readerFill[in1[gate]]++] = gate;
+            if(in2[gate] != in1[gate]) {
+                readers[readerStart[in2[gate]]+readerFill[in2[gate]]++] = gate;
+            }
+        }
+
+        // Index the ports of every instance
+        this.instances = instances;
+        this.instanceIds = instanceIds;
+        this.instanceInputs = instanceInputs;
+        this.instanceOutputs = instanceOutputs;
+        this.inputStart = new int[instances.length+1];
+        this.outputStart = new int[instances.length+1];
+        for(int i = 0; i < instances.length; i++) {
+            inputStart[i+1] = inputStart[i] + instances[i].inputs.length;
+            outputStart[i+1] = outputStart[i] + instances[i].outputs.length;
+        }
+        this.instanceReaderStart = new int[netCount+1];
+        this.instanceDriverStart = new int[netCount+1];
+        // An instance with several inputs connected to the same net only reads it once
+        int[] lastReader = new int[netCount];
+        Arrays.fill(lastReader, -1);
+        for(int i = 0; i < instances.length; i++) {
+            for(int j = inputStart[i]; j < inputStart[i+1]; j++) {
+                if(lastReader[instanceInputs[j]] != i) {
+                    lastReader[instanceInputs[j]] = i;
+                    instanceReaderStart[instanceInputs[j]+1]++;
+                }
+            }
+        }
+        for(int pin = 0; pin < instanceOutputs.length; pin++) {
+            instanceDriverStart[instanceOutputs[pin]+1]++;
+        }
+        for(int net = 0; net < netCount; net++) {
+            instanceReaderStart[net+1] += instanceReaderStart[net];
+            instanceDriverStart[net+1] += instanceDriverStart[net];
+        }
+        this.instanceReaders = new int[instanceReaderStart[netCount]];
+        this.instanceDrivers = new int[instanceDriverStart[netCount]];
+        Arrays.fill(lastReader, -1);
+        Arrays.fill(readerFill, 0);
+        Arrays.fill(driverFill, 0);
+        for(int i = 0; i < instances.length; i++) {
+            for(int j = inputStart[i]; j < inputStart[i+1]; j++) {
+                int net = instanceInputs[j];
+                if(lastReader[net] != i) {
+                    lastReader[net] = i;
+                    instanceReaders[instanceReaderStart[net]+readerFill[net]++] = i;
+                }
+            }
+        }
+        for(int pin = 0; pin < instanceOutputs.length; pin++) {
+            int net = instanceOutputs[pin];
+            instanceDrivers[instanceDriverStart[net]+driverFill[net]++] = pin;
+        }
+    }
+
+    /**
+     * Evaluates a gate
+     * @param op The opcode of the gate
+     * @param a The state of the first input of the gate
+     * @param b The state of the second input of the gate
+     * @return The state of the output of the gate
+     * @throws IllegalArgumentException if the opcode is not valid
+     */
+    public static boolean eval(int op, boolean a, boolean b) throws IllegalArgumentException {
+        switch(op) {
+            case OP_BUFFER:
+                return a;
+            case OP_NOT:
+                return !a;
+            case OP_AND:
+                return a && b;
+            case OP_OR:
+                return a || b;
+            case OP_XOR:
+                return a != b;
+            case OP_NAND:
+                return !(a && b);
+            case OP_NOR:
+                return !(a || b);
+            case OP_XNOR:
+                return a == b;
+            default:
+                throw new IllegalArgumentException("Invalid opcode: " + op);
+        }
+    }
+
+    /**
+     * Evaluates a gate for 64 independent sets of inputs at once. Bit <code>n</code> of the result is the output of the gate for bit <code>n</code> of each input
+     * @param op The opcode of the gate
+     * @param a The states of the first input of the gate packed into a long
+     * @param b The states of the second input of the gate packed into a long
+     * @return The states of the output of the gate packed into a long
+     * @throws IllegalArgumentException if the opcode is not valid
+     * @see #eval(int, boolean, boolean)
+     */
+    public static long eval(int op, long a, long b) throws IllegalArgumentException {
+        switch(op) {
+            case OP_BUFFER:
+                return a;
+            case OP_NOT:
+                return ~a;
+            case OP_AND:
+                return a & b;
+            case OP_OR:
+                return a | b;
+            case OP_XOR:
+                return a ^ b;
+            case OP_NAND:
+                return ~(a & b);
+            case OP_NOR:
+                return ~(a | b);
+            case OP_XNOR:
+                return ~(a ^ b);
+            default:
+                throw new IllegalArgumentException("Invalid opcode: " + op);
+        }
+    }
+
+    /**
+     * @return The number of nets in this circuit
+     */
+    public int getNetCount() {
+        return netCount;
+    }
+
+    /**
+     * @return The number of gates in this circuit
+     */
+    public int getGateCount() {
+        return ops.length;
+    }
+
+    /**
+     * @param gate The index of the gate
+     * @return The opcode of the given gate
+     */
+    public int getOp(int gate) {
+        return ops[gate];
+    }
+
+    /**
+     * @param gate The index of the gate
+     * @return The net connected to the first input of the given gate
+     */
+    public int getInput1(int gate) {
+        return in1[gate];
+    }
+
+    /**
+     * @param gate The index of the gate
+     * @return The net connected to the second input of the given gate. For gates with one input, this is the same as {@link #getInput1(int)}
+     */
+    public int getInput2(int gate) {
+        return in2[gate];
+    }
+
+    /**
+     * @param gate The index of the gate
+     * @return The net connected to the output of the given gate
+     */
+    public int getOutput(int gate) {
+        return out[gate];
+    }
+
+    /**
+     * @param gate The index of the gate
+     * @return The id of the component from which the given gate was compiled
+     */
+    public long getGateId(int gate) {
+        return gateIds[gate];
+    }
+
+    /**
+     * @param net The index of the net
+     * @return The name of the given net in the form <code>componentId.portId</code> of one of the ports connected to it
+     */
+    public String getNetName(int net) {
+        return netNames[net];
+    }
+
+    /**
+     * Retrieves the net to which the given port is connected
+     * @param comp The id of the component on which the port is located
+     * @param port The id of the port
+     * @return The index of the net or <code>-1</code> if the port is not part of this circuit
+     */
+    public int getNet(long comp, String port) {
+        return portNets.getOrDefault(comp + "." + port, -1);
+    }
+
+    /**
+     * @return The number of subcircuit instances in this circuit
+     */
+    public int getInstanceCount() {
+        return instances.length;
+    }
+
+    /**
+     * @param instance The index of the instance
+     * @return The definition of the given instance, which is shared with every other instance of the same subcircuit
+     */
+    public Subcircuit getInstanceDefinition(int instance) {
+        return instances[instance];
+    }
+
+    /**
+     * @param instance The index of the instance
+     * @return The id of the component from which the given instance was compiled
+     */
+    public long getInstanceId(int instance) {
+        return instanceIds[instance];
+    }
+
+    /**
+     * @param instance The index of the instance
+     * @param input The index of the input within the definition of the instance
+     * @return The net connected to the given input of the given instance
+     */
+    public int getInstanceInput(int instance, int input) {
+        return instanceInputs[inputStart[instance]+input];
+    }
+
+    /**
+     * @param instance The index of the instance
+     * @param output The index of the output within the definition of the instance
+     * @return The net connected to the given output of the given instance
+     */
+    public int getInstanceOutput(int instance, int output) {
+        return instanceOutputs[outputStart[instance]+output];
+    }
+
+    /**
+     * Creates an equivalent Netlist in which the gates of every subcircuit instance are copied into the circuit, for use with simulators which do not support subcircuits.
+     * The nets of this circuit keep their indices, and the internal nets of each instance are appended after them with names in the form <code>instanceId/netName</code>.
+     * The copied gates settle one tick at a time, whereas an instance settles within the tick in which its inputs change
+     * @return The flattened Netlist, or this Netlist if it does not contain any subcircuit instances
+     */
+    public Netlist flatten() {
+        if(instances.length == 0) {
+            return this;
+        }
+        int flatNets = netCount;
+        int flatGates = ops.length;
+        for(Subcircuit def: instances) {
+            flatNets += def.netlist.netCount - def.inputs.length - def.outputs.length;
+            flatGates += def.netlist.ops.length;
+        }
+        int[] flatOps = Arrays.copyOf(ops, flatGates);
+        int[] flatIn1 = Arrays.copyOf(in1, flatGates);
+        int[] flatIn2 = Arrays.copyOf(in2, flatGates);
+        int[] flatOut = Arrays.copyOf(out, flatGates);
+        long[] flatIds = Arrays.copyOf(gateIds, flatGates);
+        String[] flatNames = Arrays.copyOf(netNames, flatNets);
+        int nextNet = netCount;
+        int gate = ops.length;
+        for(int i = 0; i < instances.length; i++) {
+            Subcircuit def = instances[i];
+            Netlist inner = def.netlist;
+            // Ports are mapped onto the nets they are connected to, and every other net of the definition becomes a new net
+            int[] netMap = new int[inner.netCount];
+            Arrays.fill(netMap, -1);
+            for(int k = 0; k < def.inputs.length; k++) {
+                netMap[def.inputs[k]] = instanceInputs[inputStart[i]+k];
+            }
+            for(int k = 0; k < def.outputs.length; k++) {
+                netMap[def.outputs[k]] = instanceOutputs[outputStart[i]+k];
+            }
+            for(int net = 0; net < inner.netCount; net++) {
+                if(netMap[net] == -1) {
+                    flatNames[nextNet] = instanceIds[i] + "/" + inner.netNames[net];
+                    netMap[net] = nextNet++;
+                }
+            }
+            for(int g = 0; g < inner.ops.length; g++) {
+                flatOps[gate] = inner.ops[g];
+                flatIn1[gate] = netMap[inner.in1[g]];
+                flatIn2[gate] = netMap[inner.in2[g]];
+                flatOut[gate] = netMap[inner.out[g]];
+                flatIds[gate] = instanceIds[i];
+                gate++;
+            }
+        }
+        return new Netlist(flatNets, flatOps, flatIn1, flatIn2, flatOut, flatIds, flatNames, portNets);
+    }
+
+    /**
+     * @return The indices of every net which is read by a gate or instance but has no drivers, in ascending order. These are the inputs of the circuit
+     */
+    public int[] getInputNets() {
+        return IntStream.range(0, netCount).filter(net -> getDriverCount(net) == 0 && getReaderCount(net) != 0).toArray();
+    }
+
+    /**
+     * @return The indices of every net which is driven by a gate or instance but has no readers, in ascending order. These are the outputs of the circuit
+     */
+    public int[] getOutputNets() {
+        return IntStream.range(0, netCount).filter(net -> getDriverCount(net) != 0 && getReaderCount(net) == 0).toArray();
+    }
+
+    /**
+     * @param net The index of the net
+     * @return The number of gates and instance outputs which drive the given net. Nets with more than one driver are active when any of their drivers are active
+     */
+    public int getDriverCount(int net) {
+        return driverStart[net+1]-driverStart[net] + instanceDriverStart[net+1]-instanceDriverStart[net];
+    }
+
+    /**
+     * @param net The index of the net
+     * @return The number of gates and instances which read from the given net
+     */
+    public int getReaderCount(int net) {
+        return readerStart[net+1]-readerStart[net] + instanceReaderStart[net+1]-instanceReaderStart[net];
+    }
+
+    /**
+     * Checks that this circuit can be simulated by code which only understands gates
+     * @throws IllegalArgumentException if this circuit contains any subcircuit instances
+     * @see #flatten()
+     */
+    void requireFlat() throws IllegalArgumentException {
+        if(instances.length != 0) {
+            throw new IllegalArgumentException("Circuit contains " + instances.length + " subcircuit instances and must be flattened first");
+        }
+    }
+
+}
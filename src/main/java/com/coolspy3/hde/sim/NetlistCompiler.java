@@ -0,0 +1,202 @@
+package com.coolspy3.hde.sim;
+
+import com.coolspy3.hde.Line;
+import com.coolspy3.hde.component.EditorComponent;
+import com.coolspy3.hde.component.components.EANDGate;
+import com.coolspy3.hde.component.components.EBuffer;
+import com.coolspy3.hde.component.components.EJunction;
+import com.coolspy3.hde.component.components.ENANDGate;
+import com.coolspy3.hde.component.components.ENORGate;
+import com.coolspy3.hde.component.components.ENOTGate;
+import com.coolspy3.hde.component.components.EORGate;
+import com.coolspy3.hde.component.components.ESubcircuit;
+import com.coolspy3.hde.component.components.EXNORGate;
+import com.coolspy3.hde.component.components.EXORGate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Compiles the components and Lines of an editor workspace into a {@link Netlist}.
+ * Every port is assigned to a net, and ports connected by Lines or by a junction share the same net.
+ * {@link ESubcircuit}s are compiled into instances which refer to their shared {@link Subcircuit} definition, so the gates of a definition are never copied
+ */
+public final class NetlistCompiler {
+
+    private static final HashMap<Class<? extends EditorComponent>, Integer> gateOps = new HashMap<>();
+    private static final HashSet<Class<? extends EditorComponent>> junctions = new HashSet<>();
+
+    static {
+        registerGate(EBuffer.class, Netlist.OP_BUFFER);
+        registerGate(ENOTGate.class, Netlist.OP_NOT);
+        registerGate(EANDGate.class, Netlist.OP_AND);
+        registerGate(EORGate.class, Netlist.OP_OR);
+        registerGate(EXORGate.class, Netlist.OP_XOR);
+        registerGate(ENANDGate.class, Netlist.OP_NAND);
+        registerGate(ENORGate.class, Netlist.OP_NOR);
+        registerGate(EXNORGate.class, Netlist.OP_XNOR);
+        registerJunction(EJunction.class);
+    }
+
+    /**
+     * Registers a component type as a gate. Gates with one input must have ports named "I" and "O",
+     * and gates with two inputs must have ports named "I1", "I2", and "O"
+     * @param clazz The type of component
+     * @param op The opcode to compile the component to
+     * @see #registerJunction(java.lang.Class)
+     */
+    public static void registerGate(Class<? extends EditorComponent> clazz, int op) {
+        gateOps.put(clazz, op);
+    }
+
+    /**
+     * Registers a component type as a junction. All of the ports on a junction are compiled into the same net
+     * @param clazz The type of component
+     * @see #registerGate(java.lang.Class, int)
+     */
+    public static void registerJunction(Class<? extends EditorComponent> clazz) {
+        junctions.add(clazz);
+    }
+
+    /**
+     * Compiles the given components and Lines into a Netlist
+     * @param comps The components to compile
+     * @param lines The Lines connecting the components
+     * @return The resulting Netlist
+     * @throws IllegalArgumentException if a component has not been registered or a Line references a port which does not exist
+     */
+    public static Netlist compile(Collection<? extends EditorComponent> comps, Collection<Line> lines) throws IllegalArgumentException {
+        // Assign every port an index
+        HashMap<String, Integer> portIndices = new HashMap<>();
+        ArrayList<String> portNames = new ArrayList<>();
+        for(EditorComponent comp: comps) {
+            if(!gateOps.containsKey(comp.getClass()) && !junctions.contains(comp.getClass()) && !(comp instanceof ESubcircuit)) {
+                throw new IllegalArgumentException("Unsupported component: " + comp.getClass().getName());
+            }
+            comp.ports.keySet().stream().sorted().forEachOrdered(port -> {
+                String name = comp.getId() + "." + port;
+                portIndices.put(name, portNames.size());
+                portNames.add(name);
+            });
+        }
+
+        // Merge connected ports into nets
+        int[] parents = new int[portNames.size()];
+        for(int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+        }
+        for(Line line: lines) {
+            union(parents, portIndex(portIndices, line.compId1, line.portId1), portIndex(portIndices, line.compId2, line.portId2));
+        }
+        for(EditorComponent comp: comps) {
+            if(junctions.contains(comp.getClass())) {
+                List<String> ports = new ArrayList<>(comp.ports.keySet());
+                for(int i = 1; i < ports.size(); i++) {
+                    union(parents, portIndex(portIndices, comp.getId(), ports.get(0)), portIndex(portIndices, comp.getId(), ports.get(i)));
+                }
+            }
+        }
+
+        // Number the nets in the order of their first port
+        int[] netOf = new int[parents.length];
+        ArrayList<String> netNames = new ArrayList<>();
+        int[] rootNets = new int[parents.length];
+        Arrays.fill(rootNets, -1);
+        for(int i = 0; i < parents.length; i++) {
+            int root = find(parents, i);
+            if(rootNets[root] == -1) {
+                rootNets[root] = netNames.size();
+                netNames.add(portNames.get(i));
+            }
+            netOf[i] = rootNets[root];
+        }
+        HashMap<String, Integer> portNets = new HashMap<>();
+        portIndices.forEach((name, index) -> portNets.put(name, netOf[index]));
+
+        // Emit the gates
+        int gateCount = (int)comps.stream().filter(comp -> gateOps.containsKey(comp.getClass())).count();
+        int[] ops = new int[gateCount];
+        int[] in1 = new int[gateCount];
+        int[] in2 = new int[gateCount];
+        int[] out = new int[gateCount];
+        long[] gateIds = new long[gateCount];
+        int gate = 0;
+        for(EditorComponent comp: comps) {
+            Integer op = gateOps.get(comp.getClass());
+            if(op == null) {
+                continue;
+            }
+            ops[gate] = op;
+            if(comp.ports.containsKey("I")) {
+                in1[gate] = netOf[portIndex(portIndices, comp.getId(), "I")];
+                in2[gate] = in1[gate];
+            } else {
+                in1[gate] = netOf[portIndex(portIndices, comp.getId(), "I1")];
+                in2[gate] = netOf[portIndex(portIndices, comp.getId(), "I2")];
+            }
+            out[gate] = netOf[portIndex(portIndices, comp.getId(), "O")];
+            gateIds[gate] = comp.getId();
+            gate++;
+        }
+
+        // Emit the subcircuit instances
+        ArrayList<ESubcircuit> subcircuits = new ArrayList<>();
+        int inputCount = 0;
+        int outputCount = 0;
+        for(EditorComponent comp: comps) {
+            if(comp instanceof ESubcircuit) {
+                ESubcircuit subcircuit = (ESubcircuit)comp;
+                subcircuits.add(subcircuit);
+                inputCount += subcircuit.getDefinition().getInputCount();
+                outputCount += subcircuit.getDefinition().getOutputCount();
+            }
+        }
+        Subcircuit[] instances = new Subcircuit[subcircuits.size()];
+        long[] instanceIds = new long[instances.length];
+        int[] instanceInputs = new int[inputCount];
+        int[] instanceOutputs = new int[outputCount];
+        int input = 0;
+        int output = 0;
+        for(int i = 0; i < instances.length; i++) {
+            ESubcircuit subcircuit = subcircuits.get(i);
+            Subcircuit def = subcircuit.getDefinition();
+            instances[i] = def;
+            instanceIds[i] = subcircuit.getId();
+            for(int k = 0; k < def.getInputCount(); k++) {
+                instanceInputs[input++] = netOf[portIndex(portIndices, subcircuit.getId(), def.getInputPort(k))];
+            }
+            for(int k = 0; k < def.getOutputCount(); k++) {
+                instanceOutputs[output++] = netOf[portIndex(portIndices, subcircuit.getId(), def.getOutputPort(k))];
+            }
+        }
+
+        return new Netlist(netNames.size(), ops, in1, in2, out, gateIds, netNames.toArray(new String[0]), portNets, instances, instanceIds, instanceInputs, instanceOutputs);
+    }
+
+    private static int portIndex(HashMap<String, Integer> portIndices, long comp, String port) throws IllegalArgumentException {
+        Integer index = portIndices.get(comp + "." + port);
+        if(index == null) {
+            throw new IllegalArgumentException("No such port: " + port + " on device: " + comp);
+        }
+        return index;
+    }
+
+    private static int find(int[] parents, int i) {
+        while(parents[i] != i) {
+            // Path halving
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parents, int a, int b) {
+        parents[find(parents, a)] = find(parents, b);
+    }
+
+    private NetlistCompiler() {}
+
+}
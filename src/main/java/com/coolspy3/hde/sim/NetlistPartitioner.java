@@ -0,0 +1,94 @@
+package com.coolspy3.hde.sim;
+
+import java.util.Arrays;
+
+/**
+ * Splits the gates of a {@link Netlist} into partitions of roughly equal size which can be simulated on separate threads.
+ * Partitions are grown outward from a seed gate along connected nets so that most nets stay within a single partition
+ * @see ParallelSimulator
+ */
+public final class NetlistPartitioner {
+
+    /**
+     * Assigns every gate in the given Netlist to a partition.
+     * Each partition is grown breadth-first from an unassigned gate until it reaches its target size, which approximates a minimum cut for locally connected circuits.
+     * No partition is left empty, so a Netlist with fewer gates than the requested number of partitions is split into {@link #getPartitionCount(Netlist, int)} partitions
+     * @param netlist The Netlist to partition
+     * @param partitions The maximum number of partitions to create
+     * @return An array mapping every gate to the index of its partition
+     * @throws IllegalArgumentException if the number of partitions is not positive or the Netlist contains subcircuit instances
+     * @see Netlist#flatten()
+     */
+    public static int[] partition(Netlist netlist, int partitions) throws IllegalArgumentException {
+        netlist.requireFlat();
+        partitions = getPartitionCount(netlist, partitions);
+        int gateCount = netlist.ops.length;
+        int[] partOf = new int[gateCount];
+        Arrays.fill(partOf, -1);
+        int[] queue = new int[gateCount];
+        int seed = 0;
+        int assigned = 0;
+        for(int part = 0; part < partitions && assigned < gateCount; part++) {
+            // Spread any remainder over the last partitions. There are at least as many gates left as partitions, so every target is at least one gate
+            int target = (gateCount-assigned)/(partitions-part);
+
+            // Every gate in the partition is queued exactly once, so the tail of the queue is also the size of the partition
+            int head = 0;
+            int tail = 0;
+            while(tail < target) {
+                if(head == tail) {
+                    // The current region is exhausted, start again from the next unassigned gate
+                    while(partOf[seed] != -1) {
+                        seed++;
+                    }
+                    partOf[seed] = part;
+                    queue[tail++] = seed;
+                    continue;
+                }
+                int gate = queue[head++];
+
+                // Visit every gate which shares a net with this gate
+                tail = visit(netlist, netlist.out[gate], part, target, partOf, queue, tail);
+                tail = visit(netlist, netlist.in1[gate], part, target, partOf, queue, tail);
+                tail = visit(netlist, netlist.in2[gate], part, target, partOf, queue, tail);
+            }
+            assigned += tail;
+        }
+        return partOf;
+    }
+
+    /**
+     * Calculates the number of partitions which {@link #partition(Netlist, int)} creates, which is the requested number limited to one partition per gate
+     * @param netlist The Netlist to partition
+     * @param partitions The requested number of partitions
+     * @return The number of partitions, which is at least one
+     * @throws IllegalArgumentException if the number of partitions is not positive
+     */
+    public static int getPartitionCount(Netlist netlist, int partitions) throws IllegalArgumentException {
+        if(partitions < 1) {
+            throw new IllegalArgumentException("Invalid number of partitions: " + partitions);
+        }
+        return Math.max(1, Math.min(partitions, netlist.ops.length));
+    }
+
+    private static int visit(Netlist netlist, int net, int part, int target, int[] partOf, int[] queue, int tail) {
+        for(int i = netlist.driverStart[net]; i < netlist.driverStart[net+1] && tail < target; i++) {
+            int gate = netlist.drivers[i];
+            if(partOf[gate] == -1) {
+                partOf[gate] = part;
+                queue[tail++] = gate;
+            }
+        }
+        for(int i = netlist.readerStart[net]; i < netlist.readerStart[net+1] && tail < target; i++) {
+            int gate = netlist.readers[i];
+            if(partOf[gate] == -1) {
+                partOf[gate] = part;
+                queue[tail++] = gate;
+            }
+        }
+        return tail;
+    }
+
+    private NetlistPartitioner() {}
+
+}
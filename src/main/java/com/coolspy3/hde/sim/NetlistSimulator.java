@@ -0,0 +1,242 @@
+package com.coolspy3.hde.sim;
+
+/**
+ * Simulates a {@link Netlist} using the same two-phase protocol as {@link EventSimulator}, but with all state held in primitive arrays.
+ * Only gates which read from a net that changed during the previous tick are re-evaluated.
+ * Subcircuit instances are evaluated like gates, except that each evaluation runs the shared {@link LevelizedPlan} of the definition over the instance's own state, so an instance settles within the tick in which its inputs change
+ */
+public class NetlistSimulator {
+
+    private final Netlist netlist;
+    private final boolean[] nets;
+    private final boolean[] gates;
+    private final boolean[] next;
+    private final Frontier frontier;
+    private long tickCount;
+    private VcdRecorder recorder;
+    // The state of every subcircuit instance. The nets and gates of instance i start at netBase[i] and gateBase[i] of the shared arrays
+    private final boolean[] instanceNets;
+    private final boolean[] instanceGates;
+    private final boolean[] instanceNext;
+    private final int[] netBase;
+    private final int[] gateBase;
+    // The state of every instance output, indexed in the same way as the outputs of the Netlist
+    private final boolean[] pins;
+    private final boolean[] nextPins;
+    private final Frontier instanceFrontier;
+
+    /**
+     * Creates a new NetlistSimulator with every net inactive and schedules every gate for evaluation on the first tick
+     * @param netlist The circuit to simulate
+     */
+    public NetlistSimulator(Netlist netlist) {
+        this.netlist = netlist;
+        this.nets = new boolean[netlist.netCount];
+        this.gates = new boolean[netlist.ops.length];
+        this.next = new boolean[netlist.ops.length];
+        this.frontier = new Frontier(netlist.ops.length);
+        this.tickCount = 0;
+        this.recorder = null;
+
+        // Lay out the state of every instance one after another
+        int instanceCount = netlist.instances.length;
+        this.netBase = new int[instanceCount];
+        this.gateBase = new int[instanceCount];
+        int netTotal = 0;
+        int gateTotal = 0;
+        for(int i = 0; i < instanceCount; i++) {
+            netBase[i] = netTotal;
+            gateBase[i] = gateTotal;
+            netTotal += netlist.instances[i].netlist.netCount;
+            gateTotal += netlist.instances[i].netlist.ops.length;
+        }
+        this.instanceNets = new boolean[netTotal];
+        this.instanceGates = new boolean[gateTotal];
+        this.instanceNext = new boolean[gateTotal];
+        this.pins = new boolean[netlist.instanceOutputs.length];
+        this.nextPins = new boolean[netlist.instanceOutputs.length];
+        this.instanceFrontier = new Frontier(instanceCount);
+
+        // Every gate and instance needs to be evaluated once to establish its initial state
+        scheduleAll();
+    }
+
+    /**
+     * @return The circuit being simulated
+     */
+    public Netlist getNetlist() {
+        return netlist;
+    }
+
+    /**
+     * @param net The index of the net
+     * @return Whether the given net is active
+     */
+    public boolean getNet(int net) {
+        return nets[net];
+    }
+
+    /**
+     * Sets the state of the given net and schedules every gate and instance which reads from it.
+     * This is intended for nets without drivers. The value of a driven net will be overwritten when one of its drivers changes
+     * @param net The index of the net
+     * @param state The new state of the net
+     */
+    public void setNet(int net, boolean state) {
+        if(nets[net] != state) {
+            nets[net] = state;
+            if(recorder != null) {
+                recorder.record(tickCount, net, state);
+            }
+            scheduleReaders(net);
+        }
+    }
+
+    /**
+     * Attaches a recorder to which every change of a net is written, starting with the current state of each recorded net.
+     * Changes made by {@link #setNet(int, boolean)} are recorded at the current tick, and changes made while running a tick are recorded at the tick which {@link #getTickCount()} returns once it completes
+     * @param recorder The recorder to attach, which must have been created for this simulator's circuit and not previously attached, or <code>null</code> to detach the current recorder. Detaching a recorder does not close it
+     * @throws IllegalArgumentException if the recorder has already been attached to a simulator or was created for a different circuit
+     */
+    public void setRecorder(VcdRecorder recorder) {
+        if(recorder != null) {
+            recorder.start(tickCount, nets);
+        }
+        this.recorder = recorder;
+    }
+
+    /**
+     * Schedules every gate and instance to be re-evaluated on the next tick
+     */
+    public void scheduleAll() {
+        frontier.scheduleAll();
+        instanceFrontier.scheduleAll();
+    }
+
+    /**
+     * Advances the simulation by one tick
+     * @return Whether any gates or instances are scheduled for the next tick
+     * @see EventSimulator#tick()
+     */
+    public boolean tick() {
+        int[] ops = netlist.ops;
+        int[] in1 = netlist.in1;
+        int[] in2 = netlist.in2;
+        int[] out = netlist.out;
+
+        // Newly scheduled gates and instances are collected separately from the ones being evaluated
+        int size = frontier.advance();
+        int[] current = frontier.current();
+        int instanceCount = instanceFrontier.advance();
+        int[] currentInstances = instanceFrontier.current();
+
+        // Phase 1: read inputs
+        for(int i = 0; i < size; i++) {
+            int gate = current[i];
+            next[gate] = Netlist.eval(ops[gate], nets[in1[gate]], nets[in2[gate]]);
+        }
+        for(int i = 0; i < instanceCount; i++) {
+            evaluateInstance(currentInstances[i]);
+        }
+
+        // Phase 2: write outputs and wake up any readers of changed nets
+        for(int i = 0; i < size; i++) {
+            int gate = current[i];
+            if(gates[gate] != next[gate]) {
+                gates[gate] = next[gate];
+                updateNet(out[gate]);
+            }
+        }
+        int[] outputStart = netlist.outputStart;
+        for(int i = 0; i < instanceCount; i++) {
+            int instance = currentInstances[i];
+            for(int pin = outputStart[instance]; pin < outputStart[instance+1]; pin++) {
+                if(pins[pin] != nextPins[pin]) {
+                    pins[pin] = nextPins[pin];
+                    updateNet(netlist.instanceOutputs[pin]);
+                }
+            }
+        }
+
+        tickCount++;
+        return !isQuiescent();
+    }
+
+    /**
+     * Repeatedly calls {@link #tick()} until nothing is scheduled or the given number of ticks have elapsed
+     * @param maxTicks The maximum number of ticks to run
+     * @return The number of ticks which were run
+     */
+    public int settle(int maxTicks) {
+        int ticks = 0;
+        while(ticks < maxTicks && !isQuiescent()) {
+            tick();
+            ticks++;
+        }
+        return ticks;
+    }
+
+    /**
+     * @return Whether no gates or instances are scheduled for the next tick
+     */
+    public boolean isQuiescent() {
+        return frontier.isEmpty() && instanceFrontier.isEmpty();
+    }
+
+    /**
+     * @return The number of ticks which have been run by this simulator
+     */
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    private void updateNet(int net) {
+        // A net is active if any of its drivers are active
+        boolean state = false;
+        for(int i = netlist.driverStart[net]; i < netlist.driverStart[net+1]; i++) {
+            if(gates[netlist.drivers[i]]) {
+                state = true;
+                break;
+            }
+        }
+        for(int i = netlist.instanceDriverStart[net]; !state && i < netlist.instanceDriverStart[net+1]; i++) {
+            state = pins[netlist.instanceDrivers[i]];
+        }
+        if(nets[net] != state) {
+            nets[net] = state;
+            if(recorder != null) {
+                // Changes are written during phase 2, so they belong to the tick which is completing
+                recorder.record(tickCount+1, net, state);
+            }
+            scheduleReaders(net);
+        }
+    }
+
+    private void scheduleReaders(int net) {
+        for(int i = netlist.readerStart[net]; i < netlist.readerStart[net+1]; i++) {
+            frontier.schedule(netlist.readers[i]);
+        }
+        for(int i = netlist.instanceReaderStart[net]; i < netlist.instanceReaderStart[net+1]; i++) {
+            instanceFrontier.schedule(netlist.instanceReaders[i]);
+        }
+    }
+
+    private void evaluateInstance(int instance) {
+        // Copy the inputs into the instance and run its definition until it settles, then stage its outputs for phase 2
+        Subcircuit def = netlist.instances[instance];
+        int base = netBase[instance];
+        int inputStart = netlist.inputStart[instance];
+        for(int k = 0; k < def.inputs.length; k++) {
+            instanceNets[base+def.inputs[k]] = nets[netlist.instanceInputs[inputStart+k]];
+        }
+        if(!def.plan.evaluate(instanceNets, base, instanceGates, instanceNext, gateBase[instance])) {
+            // The instance contains an oscillator, so keep evaluating it on later ticks
+            instanceFrontier.schedule(instance);
+        }
+        int outputStart = netlist.outputStart[instance];
+        for(int k = 0; k < def.outputs.length; k++) {
+            nextPins[outputStart+k] = instanceNets[base+def.outputs[k]];
+        }
+    }
+
+}
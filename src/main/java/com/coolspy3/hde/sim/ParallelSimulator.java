@@ -0,0 +1,292 @@
+package com.coolspy3.hde.sim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Simulates a {@link Netlist} on multiple threads by splitting it into partitions with {@link NetlistPartitioner} and evaluating the partitions in a {@link ForkJoinPool}.
+ * Each tick runs the queue phase of every partition, waits for all of them to finish, and then runs the push phase of every partition.
+ * Partitions which do not read from a net that changed during the previous tick are skipped
+ * @see NetlistSimulator
+ */
+public class ParallelSimulator {
+
+    private final Netlist netlist;
+    private final ForkJoinPool pool;
+    private final int[] partOf;
+    private final int[][] partGates;
+    private final int[][] partNets;
+    private final int[][] pushTargets;
+    private final boolean[] nets;
+    private final boolean[] next;
+    private final boolean[] active;
+    private final boolean[] evaluating;
+    private final boolean[] pushing;
+    private final PhaseTask[] queueTasks;
+    private final PhaseTask[] pushTasks;
+    private long tickCount;
+
+    /**
+     * Creates a new ParallelSimulator which runs on the common ForkJoinPool with one partition per available processor
+     * @param netlist The circuit to simulate
+     */
+    public ParallelSimulator(Netlist netlist) {
+        this(netlist, ForkJoinPool.getCommonPoolParallelism(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new ParallelSimulator with every net inactive and schedules every partition for evaluation on the first tick
+     * @param netlist The circuit to simulate
+     * @param partitions The number of partitions to split the circuit into, which is reduced to the number of gates if there are fewer
+     * @param pool The pool on which to evaluate the partitions
+     * @throws IllegalArgumentException if the number of partitions is not positive or the circuit contains subcircuit instances
+     * @see NetlistPartitioner#getPartitionCount(Netlist, int)
+     */
+    public ParallelSimulator(Netlist netlist, int partitions, ForkJoinPool pool) throws IllegalArgumentException {
+        this.netlist = netlist;
+        this.pool = pool;
+        this.partOf = NetlistPartitioner.partition(netlist, partitions);
+        partitions = NetlistPartitioner.getPartitionCount(netlist, partitions);
+
+        // Group the gates by partition
+        ArrayList<ArrayList<Integer>> gateLists = new ArrayList<>();
+        ArrayList<ArrayList<Integer>> netLists = new ArrayList<>();
+        for(int part = 0; part < partitions; part++) {
+            gateLists.add(new ArrayList<>());
+            netLists.add(new ArrayList<>());
+        }
+        for(int gate = 0; gate < partOf.length; gate++) {
+            gateLists.get(partOf[gate]).add(gate);
+        }
+
+        // Each driven net is owned by the partition of its first driver so that only one thread ever writes it
+        for(int net = 0; net < netlist.netCount; net++) {
+            if(netlist.getDriverCount(net) != 0) {
+                netLists.get(partOf[netlist.drivers[netlist.driverStart[net]]]).add(net);
+            }
+        }
+        this.partGates = new int[partitions][];
+        this.partNets = new int[partitions][];
+        for(int part = 0; part < partitions; part++) {
+            partGates[part] = gateLists.get(part).stream().mapToInt(Integer::intValue).toArray();
+            partNets[part] = netLists.get(part).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        // A net with several drivers may be owned by a different partition than some of its drivers, so record which partitions must push when a partition is evaluated
+        this.pushTargets = new int[partitions][];
+        for(int part = 0; part < partitions; part++) {
+            pushTargets[part] = Arrays.stream(partGates[part]).map(gate -> partOf[netlist.drivers[netlist.driverStart[netlist.out[gate]]]]).distinct().toArray();
+        }
+
+        // Initialize variables
+        this.nets = new boolean[netlist.netCount];
+        this.next = new boolean[netlist.ops.length];
+        this.active = new boolean[partitions];
+        this.evaluating = new boolean[partitions];
+        this.pushing = new boolean[partitions];
+        this.queueTasks = new PhaseTask[partitions];
+        this.pushTasks = new PhaseTask[partitions];
+        for(int part = 0; part < partitions; part++) {
+            queueTasks[part] = new PhaseTask(part, true);
+            pushTasks[part] = new PhaseTask(part, false);
+        }
+        this.tickCount = 0;
+
+        // Every partition needs to be evaluated once to establish its initial state
+        scheduleAll();
+    }
+
+    /**
+     * @return The circuit being simulated
+     */
+    public Netlist getNetlist() {
+        return netlist;
+    }
+
+    /**
+     * @return The number of partitions the circuit was split into
+     */
+    public int getPartitionCount() {
+        return partGates.length;
+    }
+
+    /**
+     * @param net The index of the net
+     * @return Whether the given net is active
+     */
+    public boolean getNet(int net) {
+        return nets[net];
+    }
+
+    /**
+     * Sets the state of the given net and schedules every partition which reads from it.
+     * This is intended for nets without drivers. The value of a driven net will be overwritten during the next tick in which its owner is evaluated
+     * @param net The index of the net
+     * @param state The new state of the net
+     */
+    public void setNet(int net, boolean state) {
+        if(nets[net] != state) {
+            nets[net] = state;
+            scheduleReaders(net);
+        }
+    }
+
+    /**
+     * Schedules every partition to be re-evaluated on the next tick
+     */
+    public void scheduleAll() {
+        for(int part = 0; part < active.length; part++) {
+            active[part] = true;
+        }
+    }
+
+    /**
+     * Advances the simulation by one tick. This blocks until every partition has been evaluated
+     * @return Whether any partitions are scheduled for the next tick
+     */
+    public boolean tick() {
+        // Take the set of active partitions for this tick
+        boolean any = false;
+        Arrays.fill(pushing, false);
+        for(int part = 0; part < active.length; part++) {
+            evaluating[part] = active[part];
+            active[part] = false;
+            if(evaluating[part]) {
+                any = true;
+                for(int target: pushTargets[part]) {
+                    pushing[target] = true;
+                }
+            }
+        }
+        if(any) {
+            // Joining the tasks in each phase acts as a barrier between the phases
+            pool.invoke(new TickTask());
+        }
+
+        tickCount++;
+        return !isQuiescent();
+    }
+
+    /**
+     * Repeatedly calls {@link #tick()} until no partitions are scheduled or the given number of ticks have elapsed
+     * @param maxTicks The maximum number of ticks to run
+     * @return The number of ticks which were run
+     */
+    public int settle(int maxTicks) {
+        int ticks = 0;
+        while(ticks < maxTicks && !isQuiescent()) {
+            tick();
+            ticks++;
+        }
+        return ticks;
+    }
+
+    /**
+     * @return Whether no partitions are scheduled for the next tick
+     */
+    public boolean isQuiescent() {
+        for(boolean a: active) {
+            if(a) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of ticks which have been run by this simulator
+     */
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    private void queuePartition(int part) {
+        int[] ops = netlist.ops;
+        int[] in1 = netlist.in1;
+        int[] in2 = netlist.in2;
+        for(int gate: partGates[part]) {
+            next[gate] = Netlist.eval(ops[gate], nets[in1[gate]], nets[in2[gate]]);
+        }
+    }
+
+    private void pushPartition(int part) {
+        // The queue phase of every partition has finished, so every driver's next state is final
+        for(int net: partNets[part]) {
+            boolean state = false;
+            for(int i = netlist.driverStart[net]; i < netlist.driverStart[net+1]; i++) {
+                if(next[netlist.drivers[i]]) {
+                    state = true;
+                    break;
+                }
+            }
+            if(nets[net] != state) {
+                nets[net] = state;
+
+                // Several threads may mark the same partition, but they all write the same value
+                scheduleReaders(net);
+            }
+        }
+    }
+
+    private void scheduleReaders(int net) {
+        for(int i = netlist.readerStart[net]; i < netlist.readerStart[net+1]; i++) {
+            active[partOf[netlist.readers[i]]] = true;
+        }
+    }
+
+    private class TickTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 2419185723513014628L;
+
+        @Override
+        protected void compute() {
+            // Phase 1: every evaluated partition reads its inputs
+            ArrayList<PhaseTask> tasks = new ArrayList<>();
+            for(int part = 0; part < evaluating.length; part++) {
+                if(evaluating[part]) {
+                    queueTasks[part].reinitialize();
+                    tasks.add(queueTasks[part]);
+                }
+            }
+            invokeAll(tasks);
+
+            // Phase 2: every partition which owns a net driven by an evaluated partition writes its outputs
+            // Gates which were not evaluated still hold their previous next state, so any partition can safely push
+            tasks.clear();
+            for(int part = 0; part < pushing.length; part++) {
+                if(pushing[part]) {
+                    pushTasks[part].reinitialize();
+                    tasks.add(pushTasks[part]);
+                }
+            }
+            invokeAll(tasks);
+        }
+
+    }
+
+    private class PhaseTask extends RecursiveAction {
+
+        private static final long serialVersionUID = -3381029567142766408L;
+
+        private final int part;
+        private final boolean queue;
+
+        PhaseTask(int part, boolean queue) {
+            this.part = part;
+            this.queue = queue;
+        }
+
+        @Override
+        protected void compute() {
+            if(queue) {
+                queuePartition(part);
+            } else {
+                pushPartition(part);
+            }
+        }
+
+    }
+
+}
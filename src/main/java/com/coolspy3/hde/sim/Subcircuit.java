@@ -0,0 +1,173 @@
+package com.coolspy3.hde.sim;
+
+import com.coolspy3.hde.Line;
+import com.coolspy3.hde.ProjectFormat;
+import com.coolspy3.hde.component.EditorComponent;
+import com.coolspy3.hde.component.components.ESubcircuit;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Represents a project which is used as a block inside other projects. The project is compiled and levelized once, and every instance of it shares the resulting {@link Netlist} and {@link LevelizedPlan}, so simulating an instance only needs its own state arrays.
+ * The ports of a subcircuit are named in the same way as the nets of the batch simulator: <code>i&lt;n&gt;</code> is the nth net returned by {@link Netlist#getInputNets()} and <code>o&lt;n&gt;</code> is the nth net returned by {@link Netlist#getOutputNets()}.
+ * Definitions are cached by file and reloaded when the file changes. Subcircuits used inside a definition are flattened into its Netlist when it is compiled
+ * @see Netlist#getInstanceDefinition(int)
+ */
+public final class Subcircuit {
+
+    private static final HashMap<File, Subcircuit> cache = new HashMap<>();
+    // The files whose definitions are being loaded, which would form a loop if they were loaded again
+    private static final HashSet<File> loading = new HashSet<>();
+
+    private final File file;
+    private final long modified;
+    private final long length;
+    // The canonical project files which this definition is built from: its own file and those of every subcircuit inside it, however deeply nested
+    private final Set<File> uses;
+    final Netlist netlist;
+    final LevelizedPlan plan;
+    final int[] inputs;
+    final int[] outputs;
+
+    private Subcircuit(File file, long modified, long length, Set<File> uses, Netlist netlist) {
+        this.file = file;
+        this.modified = modified;
+        this.length = length;
+        this.uses = uses;
+        this.netlist = netlist;
+        this.plan = new LevelizedPlan(netlist);
+        this.inputs = netlist.getInputNets();
+        this.outputs = netlist.getOutputNets();
+    }
+
+    /**
+     * Retrieves the definition saved in the given project file, compiling it if it has not been loaded before or has changed since it was loaded
+     * @param file The project file
+     * @return The definition, which is shared by every caller until the file changes
+     * @throws IOException if an error occurs reading the file, the project cannot be compiled or it contains itself
+     */
+    public static synchronized Subcircuit load(File file) throws IOException {
+        File canonical = file.getCanonicalFile();
+        long modified = canonical.lastModified();
+        long length = canonical.length();
+        Subcircuit def = cache.get(canonical);
+        if(def != null && def.modified == modified && def.length == length) {
+            return def;
+        }
+        if(!loading.add(canonical)) {
+            throw new IOException("Subcircuit contains itself: " + canonical);
+        }
+        try {
+            // Subcircuits inside this project are loaded while its components are created
+            ArrayList<EditorComponent> comps = new ArrayList<>();
+            ArrayList<Line> lines = new ArrayList<>();
+            ProjectFormat.read(canonical, comps, lines);
+            HashSet<File> uses = new HashSet<>();
+            uses.add(canonical);
+            for(EditorComponent comp: comps) {
+                if(comp instanceof ESubcircuit) {
+                    uses.addAll(((ESubcircuit)comp).getDefinition().uses);
+                }
+            }
+            def = new Subcircuit(canonical, modified, length, Collections.unmodifiableSet(uses), NetlistCompiler.compile(comps, lines).flatten());
+            cache.put(canonical, def);
+            return def;
+        } catch(IllegalArgumentException e) {
+            throw new IOException("Could not compile subcircuit: " + canonical, e);
+        } finally {
+            loading.remove(canonical);
+        }
+    }
+
+    /**
+     * @return The canonical path of the project file which defines this subcircuit
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Checks whether this subcircuit depends on the given project file, in which case placing it in that project or saving a project which contains it to that file would make the project contain itself
+     * @param file The project file
+     * @return Whether the file defines this subcircuit or any subcircuit inside it, however deeply nested
+     * @throws IOException if the canonical path of the file cannot be determined
+     */
+    public boolean uses(File file) throws IOException {
+        return uses.contains(file.getCanonicalFile());
+    }
+
+    /**
+     * @return The name of the project file without its extension
+     */
+    public String getName() {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * @return The compiled circuit, which does not contain any subcircuit instances
+     */
+    public Netlist getNetlist() {
+        return netlist;
+    }
+
+    /**
+     * @return The evaluation order of the compiled circuit, which is shared by every instance
+     */
+    public LevelizedPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * @return The number of inputs of this subcircuit
+     */
+    public int getInputCount() {
+        return inputs.length;
+    }
+
+    /**
+     * @return The number of outputs of this subcircuit
+     */
+    public int getOutputCount() {
+        return outputs.length;
+    }
+
+    /**
+     * @param input The index of the input
+     * @return The net of the compiled circuit which is connected to the given input
+     */
+    public int getInputNet(int input) {
+        return inputs[input];
+    }
+
+    /**
+     * @param output The index of the output
+     * @return The net of the compiled circuit which is connected to the given output
+     */
+    public int getOutputNet(int output) {
+        return outputs[output];
+    }
+
+    /**
+     * @param input The index of the input
+     * @return The id of the port through which instances are connected to the given input
+     */
+    public String getInputPort(int input) {
+        return "i" + input;
+    }
+
+    /**
+     * @param output The index of the output
+     * @return The id of the port through which instances are connected to the given output
+     */
+    public String getOutputPort(int output) {
+        return "o" + output;
+    }
+
+}
@@ -0,0 +1,336 @@
+package com.coolspy3.hde.sim;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records the changes of a set of nets to a Value Change Dump (VCD) file, in which each tick of the simulation is one unit of time.
+ * The simulation thread only stores each change into a preallocated ring buffer, which a background thread drains to the file, so recording costs the simulation a few array writes per change.
+ * The buffer has a single producer and a single consumer, so neither side takes a lock. If the writer falls so far behind that the buffer fills, the simulation thread waits for it rather than losing changes
+ * @see NetlistSimulator#setRecorder(com.coolspy3.hde.sim.VcdRecorder)
+ */
+public final class VcdRecorder implements Closeable {
+
+    /**
+     * The default number of changes which the ring buffer can hold
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    // Entries with the top bit set mark the start of a tick and hold the tick number. Other entries hold the slot of a net shifted left by one, with the new state in the lowest bit
+    private static final long TICK = Long.MIN_VALUE;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long IDLE_NANOS = 100000;
+    private static final int PUBLISH_MASK = 1023;
+
+    // The slot of each net in the circuit, or -1 if it is not recorded
+    private final int[] slots;
+    private final int[] nets;
+    private final byte[][] ids;
+    private final long[] ring;
+    private final int mask;
+    // The number of entries written by the simulation thread and read by the writer thread. Each is only advanced by its own thread
+    private final AtomicLong head;
+    private final AtomicLong tail;
+    private final FileChannel channel;
+    private final Thread writer;
+    // The text waiting to be written to the file, which is only accessed by the writer thread once it has started
+    private final byte[] text;
+    private int textLength;
+    private volatile boolean closed;
+    private volatile IOException failure;
+    // Only advanced by the simulation thread, but may be read from any thread
+    private volatile long stalls;
+
+    // Only accessed by the simulation thread
+    private long written;
+    private long cachedTail;
+    private long lastTick;
+    private boolean started;
+
+    /**
+     * Creates a new VcdRecorder with the default capacity. Changes are not recorded until it is attached to a simulator
+     * @param netlist The circuit which will be recorded
+     * @param nets The nets to record
+     * @param names The name to give each net in the file, which must not contain whitespace, or <code>null</code> to name them after {@link Netlist#getNetName(int)}
+     * @param file The file to which to write
+     * @throws IOException if an error occurs creating the file
+     * @see #VcdRecorder(com.coolspy3.hde.sim.Netlist, int[], java.lang.String[], java.io.File, int)
+     */
+    public VcdRecorder(Netlist netlist, int[] nets, String[] names, File file) throws IOException {
+        this(netlist, nets, names, file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new VcdRecorder. Changes are not recorded until it is attached to a simulator
+     * @param netlist The circuit which will be recorded
+     * @param nets The nets to record
+     * @param names The name to give each net in the file, which must not contain whitespace, or <code>null</code> to name them after {@link Netlist#getNetName(int)}
+     * @param file The file to which to write
+     * @param capacity The number of changes which the ring buffer can hold, which is rounded up to a power of two
+     * @throws IOException if an error occurs creating the file
+     * @throws IllegalArgumentException if a net is not part of the circuit or is given more than once, or the number of names does not match the number of nets
+     */
+    public VcdRecorder(Netlist netlist, int[] nets, String[] names, File file, int capacity) throws IOException {
+        if(names != null && names.length != nets.length) {
+            throw new IllegalArgumentException("Expected " + nets.length + " names: " + names.length);
+        }
+        this.slots = new int[netlist.getNetCount()];
+        Arrays.fill(slots, -1);
+        this.nets = nets.clone();
+        this.ids = new byte[nets.length][];
+        for(int i = 0; i < nets.length; i++) {
+            if(nets[i] < 0 || nets[i] >= slots.length || slots[nets[i]] != -1) {
+                throw new IllegalArgumentException("Invalid net: " + nets[i]);
+            }
+            slots[nets[i]] = i;
+            ids[i] = identifier(i);
+        }
+        this.ring = new long[Integer.highestOneBit(Math.max(capacity, 2)-1) << 1];
+        this.mask = ring.length-1;
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+        this.closed = false;
+        this.failure = null;
+        this.written = 0;
+        this.cachedTail = 0;
+        this.lastTick = -1;
+        this.stalls = 0;
+        this.started = false;
+
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.text = new byte[BUFFER_SIZE];
+        this.textLength = 0;
+        try {
+            // Declare every net as a 1-bit wire in a single scope
+            put("$timescale 1ns $end\n$scope module top $end\n");
+            for(int i = 0; i < nets.length; i++) {
+                String name = names != null ? names[i] : netlist.getNetName(nets[i]).replace('.', '_');
+                put("$var wire 1 ");
+                put(ids[i]);
+                put(" " + name + " $end\n");
+            }
+            put("$upscope $end\n$enddefinitions $end\n");
+        } catch(IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        this.writer = new Thread(this::drain, "VCD Writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return The number of times the simulation thread had to wait because the ring buffer was full
+     */
+    public long getStallCount() {
+        return stalls;
+    }
+
+    /**
+     * Records the state of every recorded net as the initial values of the dump
+     * @param tick The current tick of the simulation
+     * @param states The state of every net in the circuit
+     * @throws IllegalArgumentException if this recorder has already been attached to a simulator or was created for a different circuit
+     */
+    void start(long tick, boolean[] states) {
+        if(started) {
+            throw new IllegalArgumentException("Recorder has already been attached to a simulator");
+        }
+        if(states.length != slots.length) {
+            throw new IllegalArgumentException("Recorder was created for a different circuit");
+        }
+        started = true;
+        // The tick opens the $dumpvars section, so it is recorded even if there are no nets
+        lastTick = tick;
+        offer(TICK | tick);
+        for(int slot = 0; slot < nets.length; slot++) {
+            put(tick, slot, states[nets[slot]]);
+        }
+    }
+
+    /**
+     * Records a change in the state of a net. Nets which are not being recorded are ignored
+     * @param tick The tick during which the net changed
+     * @param net The index of the net
+     * @param state The new state of the net
+     */
+    void record(long tick, int net, boolean state) {
+        int slot = slots[net];
+        if(slot != -1) {
+            put(tick, slot, state);
+        }
+    }
+
+    /**
+     * Waits for every recorded change to be written and closes the file. This must be called by the simulation thread after the recorder is detached from the simulator
+     * @throws IOException if an error occurred writing the file
+     */
+    @Override
+    public void close() throws IOException {
+        head.lazySet(written);
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch(InterruptedException e) {
+            throw new IOException(e);
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    private void put(long tick, int slot, boolean state) {
+        if(tick != lastTick) {
+            lastTick = tick;
+            // Publish the changes of the previous tick to the writer
+            head.lazySet(written);
+            offer(TICK | tick);
+        }
+        offer((long)slot << 1 | (state ? 1 : 0));
+    }
+
+    private void offer(long entry) {
+        if(written - cachedTail == ring.length) {
+            cachedTail = tail.get();
+            if(written - cachedTail == ring.length) {
+                // The buffer is full, so wait for the writer to catch up
+                stalls++;
+                head.lazySet(written);
+                LockSupport.unpark(writer);
+                while(written - (cachedTail = tail.get()) == ring.length) {
+                    if(failure != null) {
+                        // Nothing will drain the buffer, so drop the change. The failure is reported by close()
+                        return;
+                    }
+                    Thread.onSpinWait();
+                }
+            }
+        }
+        ring[(int)written & mask] = entry;
+        written++;
+        // Entries are published in batches, since storing to head on every change makes both threads contend for its cache line
+        if((written & PUBLISH_MASK) == 0) {
+            head.lazySet(written);
+        }
+    }
+
+    private void drain() {
+        try {
+            long read = 0;
+            // The number of initial values which remain to be written in the $dumpvars section
+            int initial = nets.length;
+            while(true) {
+                long available = head.get();
+                if(read == available) {
+                    if(closed && read == head.get()) {
+                        break;
+                    }
+                    LockSupport.parkNanos(IDLE_NANOS);
+                    continue;
+                }
+                for(; read < available; read++) {
+                    long entry = ring[(int)read & mask];
+                    if((entry & TICK) != 0) {
+                        putTick(entry & ~TICK);
+                        if(read == 0) {
+                            put(initial == 0 ? "$dumpvars\n$end\n" : "$dumpvars\n");
+                        }
+                    } else {
+                        byte[] id = ids[(int)(entry >>> 1)];
+                        if(text.length - textLength < id.length + 2) {
+                            flush();
+                        }
+                        text[textLength++] = (byte)((entry & 1) != 0 ? '1' : '0');
+                        System.arraycopy(id, 0, text, textLength, id.length);
+                        textLength += id.length;
+                        text[textLength++] = '\n';
+                        if(initial > 0 && --initial == 0) {
+                            put("$end\n");
+                        }
+                    }
+                }
+                tail.lazySet(read);
+            }
+            flush();
+        } catch(IOException e) {
+            failure = e;
+        } finally {
+            // Let a waiting simulation thread continue if the writer has stopped
+            tail.lazySet(Long.MAX_VALUE / 2);
+            try {
+                channel.close();
+            } catch(IOException e) {
+                if(failure == null) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    private void putTick(long tick) throws IOException {
+        // Writes "#<tick>\n" without formatting a String
+        if(text.length - textLength < 21) {
+            flush();
+        }
+        text[textLength++] = '#';
+        int start = textLength;
+        do {
+            text[textLength++] = (byte)('0' + tick % 10);
+            tick /= 10;
+        } while(tick != 0);
+        for(int i = start, j = textLength-1; i < j; i++, j--) {
+            byte b = text[i];
+            text[i] = text[j];
+            text[j] = b;
+        }
+        text[textLength++] = '\n';
+    }
+
+    private void put(String s) throws IOException {
+        put(s.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        for(int i = 0; i < bytes.length;) {
+            if(textLength == text.length) {
+                flush();
+            }
+            int n = Math.min(bytes.length - i, text.length - textLength);
+            System.arraycopy(bytes, i, text, textLength, n);
+            textLength += n;
+            i += n;
+        }
+    }
+
+    private void flush() throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(text, 0, textLength);
+        while(buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        textLength = 0;
+    }
+
+    private static byte[] identifier(int slot) {
+        // VCD identifiers are strings of the printable characters from '!' to '~', used here as the digits of a base-94 number
+        int length = 1;
+        for(int n = slot / 94; n > 0; n /= 94) {
+            length++;
+        }
+        byte[] id = new byte[length];
+        for(int i = length-1, n = slot; i >= 0; i--, n /= 94) {
+            id[i] = (byte)('!' + n % 94);
+        }
+        return id;
+    }
+
+}
@@ -0,0 +1,240 @@
+package com.coolspy3.hde.sim;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads test vectors from a file one row at a time through a fixed-size buffer, so files of any length can be read without holding them in memory.
+ * Each row is a list of bits which is stored into a caller-supplied array, in which bit <code>i</code> of the row is bit <code>i % 64</code> of element <code>i / 64</code>, so reading a row does not allocate.
+ * Two formats are supported and detected automatically:
+ * <ul>
+ * <li>Text, in which each line is a row of <code>0</code> and <code>1</code> characters which may be separated by commas, spaces, tabs or underscores.
+ * Blank lines and lines starting with <code>#</code> are ignored, and the first line is skipped if it contains any other characters, such as the header written by {@link VectorWriter}</li>
+ * <li>Binary, consisting of the header <code>int magic, int version, int width</code> followed by rows of <code>(width+7)/8</code> bytes, in which bit <code>i</code> of the row is bit <code>i % 8</code> of byte <code>i / 8</code></li>
+ * </ul>
+ * This class is not thread-safe
+ * @see VectorWriter
+ */
+public final class VectorReader implements Closeable {
+
+    /**
+     * The first four bytes of every binary vector file ("HDEV")
+     */
+    public static final int MAGIC = 0x48444556;
+    /**
+     * The version of the binary vector format
+     */
+    public static final int VERSION = 1;
+    /**
+     * The default size of the read buffer in bytes
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final File file;
+    private final FileChannel channel;
+    private final ByteBuffer buf;
+    private final boolean binary;
+    private final int width;
+    // The bits of the first text row, which is read to find the width of the file before next() is called, or null once it has been returned
+    private long[] pending;
+    // The array into which the next text row is parsed
+    private long[] textRow;
+    private long rowCount;
+
+    /**
+     * Opens the given vector file with the default buffer size
+     * @param file The file to read
+     * @throws IOException if an error occurs reading the file or its first row is not valid
+     */
+    public VectorReader(File file) throws IOException {
+        this(file, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Opens the given vector file
+     * @param file The file to read
+     * @param bufferSize The size of the read buffer in bytes
+     * @throws IOException if an error occurs reading the file or its first row is not valid
+     */
+    public VectorReader(File file, int bufferSize) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            this.buf = ByteBuffer.allocateDirect(Math.max(bufferSize, 16));
+            buf.flip();
+            this.rowCount = 0;
+            if(fill(4) && buf.getInt(buf.position()) == MAGIC) {
+                if(!fill(12)) {
+                    throw new IOException("Truncated vector file: " + file);
+                }
+                buf.getInt();
+                int version = buf.getInt();
+                if(version < 1 || version > VERSION) {
+                    throw new IOException("Unsupported vector file version: " + version);
+                }
+                this.binary = true;
+                this.width = buf.getInt();
+                if(width < 1) {
+                    throw new IOException("Invalid width: " + width);
+                }
+                this.pending = null;
+            } else {
+                this.binary = false;
+                this.textRow = new long[1];
+                this.width = readText(true);
+                this.pending = textRow;
+            }
+        } catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The number of bits in each row
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The number of rows which have been read
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Reads the next row
+     * @param row The array into which to store the bits of the row, which must have at least <code>(getWidth()+63)/64</code> elements. Bits past the width of the row are cleared
+     * @return Whether a row was read, or <code>false</code> if the end of the file was reached
+     * @throws IOException if an error occurs reading the file or the row is not valid
+     */
+    public boolean next(long[] row) throws IOException {
+        int words = (width+63)/64;
+        if(row.length < words) {
+            throw new IllegalArgumentException("Row array is too small: " + row.length);
+        }
+        if(binary) {
+            int bytes = (width+7)/8;
+            Arrays.fill(row, 0, words, 0);
+            for(int i = 0; i < bytes; i++) {
+                if(!fill(1)) {
+                    if(i == 0) {
+                        return false;
+                    }
+                    throw new IOException("Truncated row " + rowCount + " in " + file);
+                }
+                row[i >>> 3] |= (buf.get() & 0xFFL) << ((i & 7) << 3);
+            }
+            if((width & 63) != 0) {
+                // Ignore any padding bits in the last byte
+                row[words-1] &= (1L << (width & 63))-1;
+            }
+        } else {
+            if(pending != null) {
+                // The first row was already read to find the width
+                Arrays.fill(row, 0);
+                System.arraycopy(pending, 0, row, 0, words);
+                pending = null;
+            } else {
+                textRow = row;
+                int count = readText(false);
+                if(count == -1) {
+                    return false;
+                }
+                if(count != width) {
+                    throw new IOException("Row " + rowCount + " in " + file + " has " + count + " values, expected " + width);
+                }
+            }
+        }
+        rowCount++;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int readText(boolean first) throws IOException {
+        // Parses the next row into textRow, growing it if this is the first row. Returns the number of bits or -1 at the end of the file
+        boolean header = first;
+        while(true) {
+            int count = 0;
+            boolean invalid = false;
+            boolean comment = false;
+            boolean empty = true;
+            Arrays.fill(textRow, 0);
+            int c;
+            while((c = read()) != -1 && c != '\n') {
+                if(comment || c == '\r') {
+                    continue;
+                }
+                if(empty && c == '#') {
+                    comment = true;
+                    continue;
+                }
+                if(c == '0' || c == '1') {
+                    if(count >> 6 == textRow.length) {
+                        if(!first) {
+                            // Keep counting so that the error reports the length of the row
+                            count++;
+                            continue;
+                        }
+                        textRow = Arrays.copyOf(textRow, textRow.length*2);
+                    }
+                    if(c == '1') {
+                        textRow[count >> 6] |= 1L << (count & 63);
+                    }
+                    count++;
+                    empty = false;
+                } else if(c != ',' && c != ' ' && c != '\t' && c != '_') {
+                    invalid = true;
+                    empty = false;
+                }
+            }
+            if(invalid) {
+                if(!header) {
+                    throw new IOException("Invalid character in row " + rowCount + " of " + file);
+                }
+            } else if(!empty) {
+                return count;
+            }
+            if(c == -1) {
+                if(first) {
+                    throw new IOException("Vector file has no rows: " + file);
+                }
+                return -1;
+            }
+            // Only the first line which is not blank or a comment may be a header
+            header &= empty;
+        }
+    }
+
+    private int read() throws IOException {
+        return fill(1) ? buf.get() & 0xFF : -1;
+    }
+
+    private boolean fill(int n) throws IOException {
+        // Ensures that at least n bytes are buffered, returning false if the file ends first
+        if(buf.remaining() >= n) {
+            return true;
+        }
+        buf.compact();
+        while(buf.position() < n) {
+            if(channel.read(buf) < 0) {
+                buf.flip();
+                return false;
+            }
+        }
+        buf.flip();
+        return true;
+    }
+
+}
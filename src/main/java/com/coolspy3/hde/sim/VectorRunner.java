@@ -0,0 +1,125 @@
+package com.coolspy3.hde.sim;
+
+import java.io.IOException;
+
+/**
+ * Streams test vectors from a {@link VectorReader} through a simulator and streams the sampled outputs to a {@link VectorWriter}.
+ * Only one row (or one batch of 64 rows) is held in memory at a time and no objects are allocated per row, so vector files of any length can be run
+ */
+public final class VectorRunner {
+
+    /**
+     * Applies each row to the inputs of a circuit in turn, runs the simulation and writes the state of the outputs.
+     * State is carried from one row to the next, so this can be used with sequential circuits
+     * @param sim The simulator to drive
+     * @param inputs The nets to which the bits of each input row are applied, in order
+     * @param in The reader from which to read input rows
+     * @param outputs The nets which are sampled after each row, in order
+     * @param out The writer to which to write a row for each sample
+     * @param ticks The number of ticks to run after applying each row, or <code>0</code> to run until the circuit settles, up to <code>maxTicks</code>
+     * @param maxTicks The maximum number of ticks to run for each row when settling
+     * @return The number of rows which were run
+     * @throws IOException if an error occurs reading or writing rows
+     * @throws IllegalArgumentException if the widths of the reader or writer do not match the given nets
+     */
+    public static long run(NetlistSimulator sim, int[] inputs, VectorReader in, int[] outputs, VectorWriter out, int ticks, int maxTicks) throws IOException {
+        checkWidths(inputs, in, outputs, out);
+        long[] inRow = new long[(inputs.length+63)/64];
+        long[] outRow = new long[(outputs.length+63)/64];
+        long rows = 0;
+        while(in.next(inRow)) {
+            for(int i = 0; i < inputs.length; i++) {
+                sim.setNet(inputs[i], (inRow[i >>> 6] >>> (i & 63) & 1) != 0);
+            }
+            if(ticks == 0) {
+                sim.settle(maxTicks);
+            } else {
+                for(int t = 0; t < ticks; t++) {
+                    sim.tick();
+                }
+            }
+            for(int i = 0; i < outRow.length; i++) {
+                outRow[i] = 0;
+            }
+            for(int i = 0; i < outputs.length; i++) {
+                if(sim.getNet(outputs[i])) {
+                    outRow[i >>> 6] |= 1L << (i & 63);
+                }
+            }
+            out.write(outRow);
+            rows++;
+        }
+        return rows;
+    }
+
+    /**
+     * Runs every row independently of the others by applying 64 rows at a time to the lanes of a {@link BitParallelSimulator}, then writes the state of the outputs after each batch settles.
+     * Since every row starts from the state left by an earlier batch, this is only suitable for combinational circuits, whose outputs only depend on their current inputs
+     * @param sim The simulator to drive
+     * @param inputs The nets to which the bits of each input row are applied, in order
+     * @param in The reader from which to read input rows
+     * @param outputs The nets which are sampled after each row, in order
+     * @param out The writer to which to write a row for each sample
+     * @param maxTicks The maximum number of ticks to run for each batch while it settles
+     * @return The number of rows which were run
+     * @throws IOException if an error occurs reading or writing rows
+     * @throws IllegalArgumentException if the widths of the reader or writer do not match the given nets
+     */
+    public static long runIndependent(BitParallelSimulator sim, int[] inputs, VectorReader in, int[] outputs, VectorWriter out, int maxTicks) throws IOException {
+        checkWidths(inputs, in, outputs, out);
+        long[] inRow = new long[(inputs.length+63)/64];
+        long[] outRow = new long[(outputs.length+63)/64];
+        // The lanes of each input and output, in which bit n belongs to row n of the batch
+        long[] inLanes = new long[inputs.length];
+        long[] outLanes = new long[outputs.length];
+        long rows = 0;
+        while(true) {
+            // Transpose up to 64 rows into lanes
+            int batch = 0;
+            for(int i = 0; i < inLanes.length; i++) {
+                inLanes[i] = 0;
+            }
+            while(batch < BitParallelSimulator.LANES && in.next(inRow)) {
+                for(int i = 0; i < inputs.length; i++) {
+                    inLanes[i] |= (inRow[i >>> 6] >>> (i & 63) & 1) << batch;
+                }
+                batch++;
+            }
+            if(batch == 0) {
+                return rows;
+            }
+
+            for(int i = 0; i < inputs.length; i++) {
+                sim.setNet(inputs[i], inLanes[i]);
+            }
+            sim.settle(maxTicks);
+            for(int i = 0; i < outputs.length; i++) {
+                outLanes[i] = sim.getNet(outputs[i]);
+            }
+
+            // Transpose the lanes back into rows, ignoring any lanes past the end of the file
+            for(int lane = 0; lane < batch; lane++) {
+                for(int i = 0; i < outRow.length; i++) {
+                    outRow[i] = 0;
+                }
+                for(int i = 0; i < outputs.length; i++) {
+                    outRow[i >>> 6] |= (outLanes[i] >>> lane & 1) << (i & 63);
+                }
+                out.write(outRow);
+            }
+            rows += batch;
+        }
+    }
+
+    private static void checkWidths(int[] inputs, VectorReader in, int[] outputs, VectorWriter out) {
+        if(in.getWidth() != inputs.length) {
+            throw new IllegalArgumentException("Vector file has " + in.getWidth() + " columns but the circuit has " + inputs.length + " inputs");
+        }
+        if(out.getWidth() != outputs.length) {
+            throw new IllegalArgumentException("Output file has " + out.getWidth() + " columns but " + outputs.length + " nets are sampled");
+        }
+    }
+
+    private VectorRunner() {}
+
+}
@@ -0,0 +1,155 @@
+package com.coolspy3.hde.sim;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes rows of bits to a file through a fixed-size buffer, in either of the formats read by {@link VectorReader}.
+ * Rows are passed in the same form as they are read, so writing a row does not allocate. This class is not thread-safe
+ * @see VectorReader
+ */
+public final class VectorWriter implements Closeable, Flushable {
+
+    /**
+     * The formats in which rows can be written
+     */
+    public static enum Format {
+
+        /**
+         * One line per row of comma-separated <code>0</code> and <code>1</code> values, preceded by a header line of column names if any are given
+         */
+        CSV,
+        /**
+         * The packed binary format described by {@link VectorReader}
+         */
+        BINARY;
+
+        /**
+         * @param file The file to which rows will be written
+         * @return {@link #CSV} if the name of the file ends with <code>.csv</code> or <code>.txt</code>, otherwise {@link #BINARY}
+         */
+        public static Format forFile(File file) {
+            String name = file.getName().toLowerCase();
+            return name.endsWith(".csv") || name.endsWith(".txt") ? CSV : BINARY;
+        }
+
+    }
+
+    private final FileChannel channel;
+    private final ByteBuffer buf;
+    private final Format format;
+    private final int width;
+    private long rowCount;
+
+    /**
+     * Creates or truncates the given file and writes its header
+     * @param file The file to write
+     * @param width The number of bits in each row
+     * @param format The format in which to write the rows
+     * @param names The names of the columns, which are written as the header of CSV files, or <code>null</code> to write no header
+     * @throws IOException if an error occurs writing the file
+     * @throws IllegalArgumentException if the width is not positive or the number of names does not match it
+     */
+    public VectorWriter(File file, int width, Format format, String[] names) throws IOException {
+        if(width < 1) {
+            throw new IllegalArgumentException("Invalid width: " + width);
+        }
+        if(names != null && names.length != width) {
+            throw new IllegalArgumentException("Expected " + width + " column names: " + names.length);
+        }
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.buf = ByteBuffer.allocateDirect(VectorReader.DEFAULT_BUFFER_SIZE);
+        this.format = format;
+        this.width = width;
+        this.rowCount = 0;
+        if(format == Format.BINARY) {
+            buf.putInt(VectorReader.MAGIC);
+            buf.putInt(VectorReader.VERSION);
+            buf.putInt(width);
+        } else if(names != null) {
+            for(int i = 0; i < width; i++) {
+                if(i != 0) {
+                    put((byte)',');
+                }
+                for(byte b: names[i].getBytes(StandardCharsets.UTF_8)) {
+                    put(b);
+                }
+            }
+            put((byte)'\n');
+        }
+    }
+
+    /**
+     * @return The number of bits in each row
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The number of rows which have been written
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Writes a row
+     * @param row The bits of the row, in which bit <code>i</code> is bit <code>i % 64</code> of element <code>i / 64</code>
+     * @throws IOException if an error occurs writing the file
+     */
+    public void write(long[] row) throws IOException {
+        if(format == Format.BINARY) {
+            int bytes = (width+7)/8;
+            for(int i = 0; i < bytes; i++) {
+                int bits = Math.min(8, width - i*8);
+                put((byte)(row[i >>> 3] >>> ((i & 7) << 3) & ((1 << bits)-1)));
+            }
+        } else {
+            for(int i = 0; i < width; i++) {
+                if(i != 0) {
+                    put((byte)',');
+                }
+                put((byte)((row[i >>> 6] >>> (i & 63) & 1) != 0 ? '1' : '0'));
+            }
+            put((byte)'\n');
+        }
+        rowCount++;
+    }
+
+    /**
+     * Writes any buffered rows to the file
+     * @throws IOException if an error occurs writing the file
+     */
+    @Override
+    public void flush() throws IOException {
+        buf.flip();
+        while(buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        buf.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void put(byte b) throws IOException {
+        if(!buf.hasRemaining()) {
+            flush();
+        }
+        buf.put(b);
+    }
+
+}
@@ -0,0 +1,494 @@
+package com.coolspy3.hde.sim;
+
+import com.coolspy3.hde.LongHashMap;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Holds the history of a set of 1-bit signals read from a Value Change Dump (VCD) file, such as those written by {@link VcdRecorder}.
+ * Each trace is stored as the sorted ticks at which its value toggles, from which a pyramid of summaries is built.
+ * Level <code>k</code> of the pyramid divides the trace into buckets of <code>getBucketWidth() &lt;&lt; k</code> ticks and holds the number of transitions in each bucket and the value at its start, so a view of any length can be summarized with a constant amount of work per pixel
+ * @see #summarize(int, double, double, int[], int)
+ */
+public final class Waveform {
+
+    /**
+     * The maximum number of buckets in the lowest level of each pyramid.
+     * Views which are zoomed in further than one bucket per pixel are summarized from the transitions themselves
+     */
+    public static final int MAX_BASE_BUCKETS = 1 << 14;
+    /**
+     * The value stored by {@link #summarize(int, double, double, int[], int)} for pixels which are outside of the trace
+     */
+    public static final int NONE = -1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_COUNT = Integer.MAX_VALUE >> 1;
+
+    private final String[] names;
+    private final boolean[] initial;
+    private final long[][] transitions;
+    private final int[] transitionCounts;
+    private final long startTick;
+    private final long endTick;
+    private final int baseShift;
+    // pyramids[trace][level][bucket] = count << 1 | value at the start of the bucket
+    private final int[][][] pyramids;
+
+    private Waveform(String[] names, boolean[] initial, long[][] transitions, int[] transitionCounts, long startTick, long endTick) {
+        this.names = names;
+        this.initial = initial;
+        this.transitions = transitions;
+        this.transitionCounts = transitionCounts;
+        this.startTick = startTick;
+        this.endTick = endTick;
+
+        // Choose the smallest bucket width which keeps the lowest level within MAX_BASE_BUCKETS
+        int shift = 0;
+        while(((endTick - startTick) >> shift) >= MAX_BASE_BUCKETS) {
+            shift++;
+        }
+        this.baseShift = shift;
+        this.pyramids = new int[names.length][][];
+        for(int i = 0; i < names.length; i++) {
+            pyramids[i] = buildPyramid(i);
+        }
+    }
+
+    /**
+     * Reads every 1-bit variable from a VCD file. Variables which are wider than one bit are ignored, and the unknown and high-impedance values are treated as <code>0</code>.
+     * Values set at the first timestamp in the file, including those in its <code>$dumpvars</code> section, become the initial values of the traces
+     * @param file The file to read
+     * @return The traces in the file
+     * @throws IOException if an error occurs reading the file or it is not a valid VCD file
+     */
+    public static Waveform read(File file) throws IOException {
+        try(Parser parser = new Parser(file)) {
+            return parser.parse();
+        }
+    }
+
+    /**
+     * @return The number of traces
+     */
+    public int getTraceCount() {
+        return names.length;
+    }
+
+    /**
+     * @param trace The index of the trace
+     * @return The full name of the trace, in which the names of its scopes are separated by <code>.</code>
+     */
+    public String getName(int trace) {
+        return names[trace];
+    }
+
+    /**
+     * @return The first tick of the traces
+     */
+    public long getStartTick() {
+        return startTick;
+    }
+
+    /**
+     * @return The last tick of the traces
+     */
+    public long getEndTick() {
+        return endTick;
+    }
+
+    /**
+     * @return The number of ticks in each bucket of the lowest level of the pyramids
+     */
+    public long getBucketWidth() {
+        return 1L << baseShift;
+    }
+
+    /**
+     * @param trace The index of the trace
+     * @return The number of times the value of the trace changes
+     */
+    public int getTransitionCount(int trace) {
+        return transitionCounts[trace];
+    }
+
+    /**
+     * @param trace The index of the trace
+     * @param tick The tick at which to find the value
+     * @return The value of the trace once every change at or before the given tick has been made
+     */
+    public boolean getValue(int trace, long tick) {
+        return initial[trace] ^ ((rank(trace, tick+1, 0) & 1) != 0);
+    }
+
+    /**
+     * Summarizes consecutive spans of a trace, such as the spans of ticks covered by each pixel of a view.
+     * Each summary is stored as <code>count &lt;&lt; 1 | value</code>, in which <code>count</code> is the number of transitions in the span and <code>value</code> is the value of the trace at its start, or as {@link #NONE} if the span lies outside of the trace.
+     * Spans which are at least one bucket wide are summarized from the pyramid, in which case a transition may be attributed to a neighboring span by up to one bucket
+     * @param trace The index of the trace
+     * @param start The tick at which the first span starts
+     * @param ticksPerSpan The number of ticks in each span, which may be fractional
+     * @param out The array into which to store the summaries
+     * @param count The number of spans to summarize
+     */
+    public void summarize(int trace, double start, double ticksPerSpan, int[] out, int count) {
+        if(ticksPerSpan >= getBucketWidth()) {
+            // Use the highest level in which every span contains at least one bucket, so each span combines at most two
+            int level = 0;
+            int[][] pyramid = pyramids[trace];
+            while(level+1 < pyramid.length && (getBucketWidth() << (level+1)) <= ticksPerSpan) {
+                level++;
+            }
+            int[] buckets = pyramid[level];
+            int shift = baseShift + level;
+            double width = 1L << shift;
+            for(int x = 0; x < count; x++) {
+                // Each bucket belongs to the span containing its first tick
+                long first = (long)Math.ceil((start + x*ticksPerSpan - startTick) / width);
+                long last = (long)Math.ceil((start + (x+1)*ticksPerSpan - startTick) / width) - 1;
+                if(last < 0 || first >= buckets.length) {
+                    out[x] = NONE;
+                    continue;
+                }
+                first = Math.max(first, 0);
+                last = Math.min(last, buckets.length-1);
+                int n = 0;
+                for(long b = first; b <= last; b++) {
+                    n = Math.min(n + (buckets[(int)b] >>> 1), MAX_COUNT);
+                }
+                out[x] = first > last ? NONE : n << 1 | (buckets[(int)first] & 1);
+            }
+        } else {
+            // Zoomed in past the pyramid, so count the transitions in each span directly. Spans are visited in order, so each search starts from the previous result
+            int from = 0;
+            for(int x = 0; x < count; x++) {
+                long a = (long)Math.ceil(start + x*ticksPerSpan);
+                long b = (long)Math.ceil(start + (x+1)*ticksPerSpan);
+                if(b <= startTick || a > endTick) {
+                    out[x] = NONE;
+                    continue;
+                }
+                from = rank(trace, a, from);
+                int to = rank(trace, b, from);
+                out[x] = Math.min(to - from, MAX_COUNT) << 1 | (initial[trace] ^ ((from & 1) != 0) ? 1 : 0);
+            }
+        }
+    }
+
+    private int rank(int trace, long tick, int from) {
+        // Returns the number of transitions before the given tick, which must be at least from
+        long[] times = transitions[trace];
+        int n = transitionCounts[trace];
+        // Gallop forward from the previous result before searching, since consecutive spans are usually close together
+        int lo = from;
+        int step = 1;
+        while(lo + step < n && times[lo + step - 1] < tick) {
+            lo += step;
+            step <<= 1;
+        }
+        int hi = Math.min(lo + step, n);
+        while(lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if(times[mid] < tick) {
+                lo = mid+1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int[][] buildPyramid(int trace) {
+        ArrayList<int[]> levels = new ArrayList<>();
+        long[] times = transitions[trace];
+        int[] level = new int[(int)((endTick - startTick) >> baseShift) + 1];
+        boolean value = initial[trace];
+        int t = 0;
+        for(int b = 0; b < level.length; b++) {
+            // Count the transitions in this bucket, tracking the value at the start of the next one
+            long end = startTick + ((long)(b+1) << baseShift);
+            int n = 0;
+            while(t < transitionCounts[trace] && times[t] < end) {
+                n++;
+                t++;
+            }
+            level[b] = Math.min(n, MAX_COUNT) << 1 | (value ? 1 : 0);
+            value ^= (n & 1) != 0;
+        }
+        levels.add(level);
+
+        // Each level combines pairs of buckets from the one below it
+        while(level.length > 1) {
+            int[] next = new int[(level.length+1)/2];
+            for(int b = 0; b < next.length; b++) {
+                int n = level[2*b] >>> 1;
+                if(2*b+1 < level.length) {
+                    n = Math.min(n + (level[2*b+1] >>> 1), MAX_COUNT);
+                }
+                next[b] = n << 1 | (level[2*b] & 1);
+            }
+            levels.add(next);
+            level = next;
+        }
+        return levels.toArray(new int[0][]);
+    }
+
+    /**
+     * Reads the tokens of a VCD file through a fixed-size buffer
+     */
+    private static final class Parser implements AutoCloseable {
+
+        private final File file;
+        private final FileChannel channel;
+        private final ByteBuffer buf;
+        private byte[] token;
+        private int tokenLength;
+
+        // Identifier codes of up to 9 characters are packed into a long, so looking up a value change does not allocate
+        private final LongHashMap<int[]> shortIds;
+        private final HashMap<String, int[]> longIds;
+        private final ArrayList<String> names;
+        private final ArrayList<String> scopes;
+        private boolean[] values;
+        private boolean[] initial;
+        private long[][] times;
+        private int[] counts;
+
+        private Parser(File file) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            this.buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buf.flip();
+            this.token = new byte[64];
+            this.tokenLength = 0;
+            this.shortIds = new LongHashMap<>();
+            this.longIds = new HashMap<>();
+            this.names = new ArrayList<>();
+            this.scopes = new ArrayList<>();
+        }
+
+        private Waveform parse() throws IOException {
+            // Read the declarations
+            while(true) {
+                if(!next()) {
+                    throw new IOException("Missing $enddefinitions in " + file);
+                }
+                String keyword = string();
+                if(keyword.equals("$enddefinitions")) {
+                    skipSection();
+                    break;
+                }
+                switch(keyword) {
+                    case "$scope":
+                        require();
+                        require();
+                        scopes.add(string());
+                        skipSection();
+                        break;
+                    case "$upscope":
+                        if(!scopes.isEmpty()) {
+                            scopes.remove(scopes.size()-1);
+                        }
+                        skipSection();
+                        break;
+                    case "$var":
+                        declare();
+                        break;
+                    default:
+                        if(!keyword.startsWith("$")) {
+                            throw new IOException("Unexpected token in the declarations of " + file + ": " + keyword);
+                        }
+                        // $date, $version, $timescale and $comment
+                        skipSection();
+                }
+            }
+
+            int traceCount = names.size();
+            values = new boolean[traceCount];
+            initial = new boolean[traceCount];
+            times = new long[traceCount][16];
+            counts = new int[traceCount];
+            long start = -1;
+            long time = 0;
+
+            // Read the value changes
+            while(next()) {
+                byte c = token[0];
+                if(c == '#') {
+                    time = parseTime();
+                    if(start == -1) {
+                        start = time;
+                    }
+                } else if(c == '$') {
+                    String keyword = string();
+                    if(keyword.equals("$comment")) {
+                        skipSection();
+                    }
+                    // $dumpvars, $dumpall, $dumpon, $dumpoff and their $end are only markers
+                } else if(c == 'b' || c == 'B' || c == 'r' || c == 'R') {
+                    // Vector and real values are followed by the identifier of a variable which was not recorded
+                    require();
+                } else if(tokenLength > 1 && (c == '0' || c == '1' || c == 'x' || c == 'X' || c == 'z' || c == 'Z')) {
+                    int[] traces = lookup(token, 1, tokenLength-1);
+                    if(traces != null) {
+                        boolean value = c == '1';
+                        for(int trace: traces) {
+                            change(trace, value, start == -1 || time == start, time);
+                        }
+                    }
+                } else {
+                    throw new IOException("Unexpected token in the value changes of " + file + ": " + string());
+                }
+            }
+
+            if(start == -1) {
+                start = 0;
+            }
+            return new Waveform(names.toArray(new String[0]), initial, times, counts, start, Math.max(time, start));
+        }
+
+        private void declare() throws IOException {
+            // $var <type> <size> <identifier> <reference> [<bit select>] $end
+            require();
+            require();
+            String size = string();
+            require();
+            byte[] id = Arrays.copyOf(token, tokenLength);
+            require();
+            StringBuilder name = new StringBuilder();
+            for(String scope: scopes) {
+                name.append(scope).append('.');
+            }
+            name.append(string());
+            while(require() && !string().equals("$end")) {
+                name.append(string());
+            }
+            if(!size.equals("1")) {
+                return;
+            }
+
+            // Several variables may share an identifier
+            int[] traces = lookup(id, 0, id.length);
+            int trace = names.size();
+            traces = traces == null ? new int[] {trace} : Arrays.copyOf(traces, traces.length+1);
+            traces[traces.length-1] = trace;
+            if(id.length <= 9) {
+                shortIds.put(packId(id, 0, id.length), traces);
+            } else {
+                longIds.put(new String(id, StandardCharsets.US_ASCII), traces);
+            }
+            names.add(name.toString());
+        }
+
+        private void change(int trace, boolean value, boolean first, long time) throws IOException {
+            if(values[trace] == value) {
+                return;
+            }
+            values[trace] = value;
+            if(first) {
+                // Values set at the first timestamp are the initial state of the trace
+                initial[trace] = value;
+                return;
+            }
+            if(counts[trace] == times[trace].length) {
+                times[trace] = Arrays.copyOf(times[trace], times[trace].length*2);
+            }
+            times[trace][counts[trace]++] = time;
+        }
+
+        private int[] lookup(byte[] id, int offset, int length) {
+            if(length <= 9) {
+                return shortIds.get(packId(id, offset, length));
+            }
+            return longIds.get(new String(id, offset, length, StandardCharsets.US_ASCII));
+        }
+
+        private static long packId(byte[] id, int offset, int length) {
+            // Identifiers are made of the characters from '!' to '~', so they can be read as numbers in base 95 without colliding
+            long packed = 0;
+            for(int i = offset; i < offset+length; i++) {
+                packed = packed*95 + (id[i] - ' ');
+            }
+            return packed;
+        }
+
+        private long parseTime() throws IOException {
+            long time = 0;
+            if(tokenLength < 2) {
+                throw new IOException("Invalid timestamp in " + file);
+            }
+            for(int i = 1; i < tokenLength; i++) {
+                if(token[i] < '0' || token[i] > '9') {
+                    throw new IOException("Invalid timestamp in " + file + ": " + string());
+                }
+                time = time*10 + (token[i] - '0');
+            }
+            return time;
+        }
+
+        private void skipSection() throws IOException {
+            // Skips every token up to and including the next $end
+            while(require() && !string().equals("$end")) {}
+        }
+
+        private String string() {
+            return new String(token, 0, tokenLength, StandardCharsets.US_ASCII);
+        }
+
+        private boolean require() throws IOException {
+            if(!next()) {
+                throw new IOException("Unexpected end of " + file);
+            }
+            return true;
+        }
+
+        private boolean next() throws IOException {
+            // Reads the next whitespace-separated token, returning false at the end of the file
+            int c;
+            do {
+                c = read();
+            } while(c == ' ' || c == '\n' || c == '\r' || c == '\t');
+            if(c == -1) {
+                return false;
+            }
+            tokenLength = 0;
+            while(c != -1 && c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                if(tokenLength == token.length) {
+                    token = Arrays.copyOf(token, token.length*2);
+                }
+                token[tokenLength++] = (byte)c;
+                c = read();
+            }
+            return true;
+        }
+
+        private int read() throws IOException {
+            if(!buf.hasRemaining()) {
+                buf.clear();
+                int n;
+                do {
+                    n = channel.read(buf);
+                } while(n == 0);
+                buf.flip();
+                if(n < 0) {
+                    return -1;
+                }
+            }
+            return buf.get() & 0xFF;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,223 @@
+package com.coolspy3.hde;
+
+import com.coolspy3.hde.component.EditorComponent;
+import com.coolspy3.hde.component.components.EANDGate;
+import com.coolspy3.hde.component.components.ENOTGate;
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EditJournalTest {
+
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("journal").toFile();
+        file = new File(dir, "project.lm");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        // Delete the files before the directory which holds them
+        try(Stream<Path> paths = Files.walk(dir.toPath())) {
+            for(Path path: (Iterable<Path>)paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testReplayEveryOperation() throws Exception {
+        EANDGate a = new EANDGate(new Point2D.Double(0, 0));
+        ENOTGate b = new ENOTGate(new Point2D.Double(200, 0));
+        Line ab = new Line(a.getId(), "O", b.getId(), "I", true, 0.5);
+        ProjectFormat.write(file, List.of(a, b), List.of(ab));
+
+        EditJournal journal = EditJournal.open(file, 2);
+        journal.bindAll(List.of(a, b));
+
+        // ADD and ADD_LINE
+        ENOTGate c = new ENOTGate(new Point2D.Double(400, 0));
+        journal.componentAdded(c);
+        Line bc = new Line(b.getId(), "O", c.getId(), "I", false, 0.25);
+        journal.lineAdded(bc);
+
+        // MOVE and ROTATE
+        b.setPosition(220, 60);
+        journal.componentMoved(b);
+        c.rotate();
+        journal.componentRotated(c);
+
+        // REMOVE_LINE and REMOVE
+        journal.lineRemoved(ab);
+        journal.componentRemoved(a);
+
+        // SAVE
+        journal.commit();
+        journal.close().get();
+        assertFalse(new File(file.getPath() + ".journal").exists());
+
+        Project project = new Project(file);
+        assertEquals(2, project.comps.size());
+        assertComponent(project.comps.get(0), ENOTGate.class, 220, 60, 0);
+        assertComponent(project.comps.get(1), ENOTGate.class, c.getPosition().x, c.getPosition().y, 1);
+        assertEquals(1, project.lines.size());
+        assertLine(project, project.lines.get(0), 0, "O", 1, "I", false, 0.25);
+    }
+
+    @Test
+    public void testCompactionKeepsUnsavedTail() throws Exception {
+        EANDGate x = new EANDGate(new Point2D.Double(0, 0));
+        EANDGate a = new EANDGate(new Point2D.Double(100, 0));
+        ENOTGate b = new ENOTGate(new Point2D.Double(300, 0));
+        ProjectFormat.write(file, List.of(x, a, b), List.of());
+
+        EditJournal journal = EditJournal.open(file, 3);
+        journal.bindAll(List.of(x, a, b));
+
+        // Removing the first component shifts the index of every other component when the journal is compacted
+        journal.componentRemoved(x);
+        int moves = 1000;
+        for(int i = 0; i < moves; i++) {
+            a.setPosition(i, 0);
+            journal.componentMoved(a);
+        }
+        journal.commit();
+
+        // These edits are made before the compaction runs, so they must be carried over to the new journal using the new keys
+        ENOTGate d = new ENOTGate(new Point2D.Double(500, 0));
+        journal.componentAdded(d);
+        journal.lineAdded(new Line(a.getId(), "O", d.getId(), "I", true, 0.75));
+        b.setPosition(300, 80);
+        journal.componentMoved(b);
+        journal.awaitIdle();
+
+        // The snapshot now holds the saved edits and the journal only holds the unsaved ones
+        File journalFile = new File(file.getPath() + ".journal");
+        assertTrue(journalFile.length() < moves * 16);
+        assertTrue(EditJournal.hasUnsavedChanges(file));
+        Project saved = new Project(file);
+        assertEquals(2, saved.comps.size());
+        assertComponent(saved.comps.get(0), EANDGate.class, moves-1, 0, 0);
+        assertComponent(saved.comps.get(1), ENOTGate.class, 300, 0, 0);
+        assertTrue(saved.lines.isEmpty());
+
+        journal.commit();
+        journal.close().get();
+
+        Project project = new Project(file);
+        assertEquals(3, project.comps.size());
+        assertComponent(project.comps.get(0), EANDGate.class, moves-1, 0, 0);
+        assertComponent(project.comps.get(1), ENOTGate.class, 300, 80, 0);
+        assertComponent(project.comps.get(2), ENOTGate.class, 500, 0, 0);
+        assertEquals(1, project.lines.size());
+        assertLine(project, project.lines.get(0), 0, "O", 2, "I", true, 0.75);
+    }
+
+    @Test
+    public void testRecoverWithoutUnsavedEdits() throws Exception {
+        EditJournal journal = startCrashedSession(false);
+        assertFalse(EditJournal.hasUnsavedChanges(file));
+
+        EditJournal.recover(file, false);
+        journal.close().get();
+        assertFalse(new File(file.getPath() + ".journal").exists());
+
+        // Only the saved move is applied
+        Project project = new Project(file);
+        assertEquals(1, project.comps.size());
+        assertComponent(project.comps.get(0), EANDGate.class, 40, 0, 0);
+    }
+
+    @Test
+    public void testRecoverDiscardingUnsavedEdits() throws Exception {
+        EditJournal journal = startCrashedSession(true);
+        assertTrue(EditJournal.hasUnsavedChanges(file));
+
+        EditJournal.recover(file, false);
+        journal.close().get();
+        assertFalse(new File(file.getPath() + ".journal").exists());
+
+        Project project = new Project(file);
+        assertEquals(1, project.comps.size());
+        assertComponent(project.comps.get(0), EANDGate.class, 40, 0, 0);
+    }
+
+    @Test
+    public void testRecoverIncludingUnsavedEdits() throws Exception {
+        EditJournal journal = startCrashedSession(true);
+        assertTrue(EditJournal.hasUnsavedChanges(file));
+
+        EditJournal.recover(file, true);
+        journal.close().get();
+        assertFalse(new File(file.getPath() + ".journal").exists());
+
+        Project project = new Project(file);
+        assertEquals(2, project.comps.size());
+        assertComponent(project.comps.get(0), EANDGate.class, 80, 20, 0);
+        assertComponent(project.comps.get(1), ENOTGate.class, 200, 0, 0);
+    }
+
+    /**
+     * Records a saved edit and, if requested, unsaved edits, and waits for them to be written and compacted without closing the journal, leaving it as it would be after a crash.
+     * Recovering the project removes the journal file, after which closing the journal does not change the project
+     */
+    private EditJournal startCrashedSession(boolean unsaved) throws Exception {
+        EANDGate a = new EANDGate(new Point2D.Double(0, 0));
+        ProjectFormat.write(file, List.of(a), List.of());
+
+        EditJournal journal = EditJournal.open(file, 1);
+        journal.bindAll(List.of(a));
+        a.setPosition(40, 0);
+        journal.componentMoved(a);
+        journal.commit();
+
+        if(unsaved) {
+            a.setPosition(80, 20);
+            journal.componentMoved(a);
+            journal.componentAdded(new ENOTGate(new Point2D.Double(200, 0)));
+        }
+        journal.awaitIdle();
+        return journal;
+    }
+
+    private static void assertComponent(EditorComponent comp, Class<?> type, double x, double y, int rotation) {
+        assertEquals(type, comp.getClass());
+        assertEquals(x, comp.getPosition().x, 1e-9);
+        assertEquals(y, comp.getPosition().y, 1e-9);
+        assertEquals(rotation, comp.getRotation());
+    }
+
+    private static void assertLine(Project project, Line line, int comp1, String port1, int comp2, String port2, boolean isHoris, double movPer) {
+        assertEquals(project.comps.get(comp1).getId(), line.compId1);
+        assertEquals(port1, line.portId1);
+        assertEquals(project.comps.get(comp2).getId(), line.compId2);
+        assertEquals(port2, line.portId2);
+        assertEquals(isHoris, line.isHoris);
+        assertEquals(movPer, line.movPer, 1e-9);
+    }
+
+    private static final class Project {
+
+        private final ArrayList<EditorComponent> comps = new ArrayList<>();
+        private final ArrayList<Line> lines = new ArrayList<>();
+
+        private Project(File file) throws IOException {
+            ProjectFormat.read(file, comps, lines);
+        }
+
+    }
+
+}
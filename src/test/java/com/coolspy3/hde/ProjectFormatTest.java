@@ -0,0 +1,151 @@
+package com.coolspy3.hde;
+
+import com.coolspy3.hde.component.EditorComponent;
+import com.coolspy3.hde.component.components.EANDGate;
+import com.coolspy3.hde.component.components.EJunction;
+import com.coolspy3.hde.component.components.ENOTGate;
+import java.awt.geom.Point2D;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProjectFormatTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("project", ".lm");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        EANDGate and = new EANDGate(new Point2D.Double(-40.5, 12.25));
+        ENOTGate not = new ENOTGate(new Point2D.Double(200, 0));
+        EJunction junction = new EJunction(new Point2D.Double(1e9, -1e-3));
+        for(int i = 0; i < 3; i++) {
+            not.rotate();
+        }
+        junction.rotate();
+        List<EditorComponent> comps = List.of(and, not, junction);
+        List<Line> lines = List.of(new Line(and.getId(), "O", not.getId(), "I", true, 0.5), new Line(not.getId(), "O", junction.getId(), "P2", false, 0.125));
+        ProjectFormat.write(file, comps, lines);
+
+        assertFalse(ProjectFormat.isLegacy(file));
+        ArrayList<EditorComponent> readComps = new ArrayList<>();
+        ArrayList<Line> readLines = new ArrayList<>();
+        ProjectFormat.read(file, readComps, readLines);
+
+        assertEquals(comps.size(), readComps.size());
+        for(int i = 0; i < comps.size(); i++) {
+            EditorComponent expected = comps.get(i);
+            EditorComponent actual = readComps.get(i);
+            assertEquals(expected.getClass(), actual.getClass());
+            assertEquals(expected.getRotation(), actual.getRotation());
+            assertEquals(expected.getPosition().x, actual.getPosition().x, 0);
+            assertEquals(expected.getPosition().y, actual.getPosition().y, 0);
+            assertEquals(expected.getSize(), actual.getSize());
+        }
+        assertEquals(lines.size(), readLines.size());
+        for(int i = 0; i < lines.size(); i++) {
+            assertLine(comps, lines.get(i), readComps, readLines.get(i));
+        }
+    }
+
+    @Test
+    public void testStringsLongerThanBuffer() throws IOException {
+        EANDGate and = new EANDGate(new Point2D.Double(0, 0));
+        ENOTGate not = new ENOTGate(new Point2D.Double(200, 0));
+        // Port ids are stored in the string table, so a long one must be written and read across several buffers
+        String port = longString(ProjectFormat.BUFFER_SIZE * 3 + 7);
+        Line line = new Line(and.getId(), port, not.getId(), "I", true, 0.5);
+        ProjectFormat.write(file, List.of(and, not), List.of(line));
+        assertTrue(file.length() > ProjectFormat.BUFFER_SIZE * 3);
+
+        ArrayList<EditorComponent> readComps = new ArrayList<>();
+        ArrayList<Line> readLines = new ArrayList<>();
+        ProjectFormat.read(file, readComps, readLines);
+        assertEquals(2, readComps.size());
+        assertEquals(1, readLines.size());
+        assertLine(List.of(and, not), line, readComps, readLines.get(0));
+    }
+
+    @Test
+    public void testTruncatedFile() throws IOException {
+        EANDGate and = new EANDGate(new Point2D.Double(0, 0));
+        ENOTGate not = new ENOTGate(new Point2D.Double(200, 0));
+        ProjectFormat.write(file, List.of(and, not), List.of(new Line(and.getId(), "O", not.getId(), "I", true, 0.5)));
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        // Every prefix of the file ends part way through the header or a record
+        for(int length = 0; length < bytes.length; length++) {
+            Files.write(file.toPath(), Arrays.copyOf(bytes, length));
+            assertTruncated(length);
+        }
+    }
+
+    @Test
+    public void testTruncatedLongString() throws IOException {
+        EANDGate and = new EANDGate(new Point2D.Double(0, 0));
+        ENOTGate not = new ENOTGate(new Point2D.Double(200, 0));
+        ProjectFormat.write(file, List.of(and, not), List.of(new Line(and.getId(), longString(ProjectFormat.BUFFER_SIZE * 2), not.getId(), "I", true, 0.5)));
+
+        // Cut the file inside the long string, past the end of the first buffer
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(ProjectFormat.BUFFER_SIZE + 100);
+        }
+        assertTruncated(ProjectFormat.BUFFER_SIZE + 100);
+    }
+
+    private void assertTruncated(int length) throws IOException {
+        try {
+            ProjectFormat.read(file, new ArrayList<>(), new ArrayList<>());
+            fail("Read a project truncated to " + length + " bytes");
+        } catch(EOFException e) {
+            // Expected
+        }
+    }
+
+    private static void assertLine(List<EditorComponent> comps, Line expected, List<EditorComponent> readComps, Line actual) {
+        assertEquals(indexOf(comps, expected.compId1), indexOf(readComps, actual.compId1));
+        assertEquals(expected.portId1, actual.portId1);
+        assertEquals(indexOf(comps, expected.compId2), indexOf(readComps, actual.compId2));
+        assertEquals(expected.portId2, actual.portId2);
+        assertEquals(expected.isHoris, actual.isHoris);
+        assertEquals(expected.movPer, actual.movPer, 0);
+    }
+
+    private static int indexOf(List<EditorComponent> comps, long id) {
+        for(int i = 0; i < comps.size(); i++) {
+            if(comps.get(i).getId() == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String longString(int length) {
+        // Include multi-byte characters so that the encoded length differs from the number of characters
+        StringBuilder sb = new StringBuilder(length);
+        for(int i = 0; i < length; i++) {
+            sb.append(i % 100 == 0 ? '\u00E9' : (char)('a' + i % 26));
+        }
+        return sb.toString();
+    }
+
+}
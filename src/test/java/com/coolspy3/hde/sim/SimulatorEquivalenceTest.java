@@ -0,0 +1,296 @@
+package com.coolspy3.hde.sim;
+
+import com.coolspy3.hde.Line;
+import com.coolspy3.hde.ProjectFormat;
+import com.coolspy3.hde.component.EditorComponent;
+import com.coolspy3.hde.component.LogicComponent;
+import com.coolspy3.hde.component.components.ESubcircuit;
+import com.coolspy3.hde.component.components.LANDGate;
+import com.coolspy3.hde.component.components.LBuffer;
+import com.coolspy3.hde.component.components.LNANDGate;
+import com.coolspy3.hde.component.components.LNORGate;
+import com.coolspy3.hde.component.components.LNOTGate;
+import com.coolspy3.hde.component.components.LORGate;
+import com.coolspy3.hde.component.components.LXNORGate;
+import com.coolspy3.hde.component.components.LXORGate;
+import com.coolspy3.hde.gen.CircuitBuilder;
+import com.coolspy3.hde.gen.CircuitBuilder.Signal;
+import com.coolspy3.hde.gen.CircuitGenerator;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks every simulation engine against the {@link LogicComponent} kernel driven by an {@link EventSimulator} by applying every combination of inputs to small circuits
+ */
+public class SimulatorEquivalenceTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("subcircuit", ".lm");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Test
+    public void testRandomCircuits() {
+        for(long seed = 0; seed < 20; seed++) {
+            CircuitBuilder builder = new CircuitBuilder();
+            CircuitGenerator.randomDag(builder, builder.inputs(6), 40, new Random(seed));
+            checkEquivalence(NetlistCompiler.compile(builder.getComponents(), builder.getLines()));
+        }
+    }
+
+    @Test
+    public void testAdder() {
+        // 9 inputs, so the bit-parallel simulator needs several passes
+        CircuitBuilder builder = new CircuitBuilder();
+        CircuitGenerator.rippleCarryAdder(builder, builder.inputs(4), builder.inputs(4), builder.input());
+        Netlist netlist = NetlistCompiler.compile(builder.getComponents(), builder.getLines());
+        assertEquals(9, netlist.getInputNets().length);
+        checkEquivalence(netlist);
+    }
+
+    @Test
+    public void testSubcircuit() throws IOException {
+        CircuitBuilder inner = new CircuitBuilder();
+        CircuitGenerator.randomDag(inner, inner.inputs(5), 30, new Random(42));
+        ProjectFormat.write(file, inner.getComponents(), inner.getLines());
+        Subcircuit def = Subcircuit.load(file);
+
+        // Drive a single instance of the definition directly from the inputs of the outer circuit
+        CircuitBuilder outer = new CircuitBuilder();
+        EditorComponent sub = outer.place(pos -> new ESubcircuit(pos, def));
+        for(int i = 0; i < def.getInputCount(); i++) {
+            outer.connect(outer.input(), sub, def.getInputPort(i));
+        }
+        Netlist netlist = NetlistCompiler.compile(outer.getComponents(), outer.getLines());
+        assertEquals(1, netlist.getInstanceCount());
+        NetlistSimulator sim = new NetlistSimulator(netlist);
+
+        // The instance is compared against the kernel running the gates of its definition
+        Netlist defNetlist = def.getNetlist();
+        ArrayList<Input> inputs = new ArrayList<>();
+        List<LogicComponent> comps = toLogicComponents(defNetlist, inputs);
+        EventSimulator kernel = new EventSimulator(comps);
+        int[] defInputs = defNetlist.getInputNets();
+        int[] defOutputs = defNetlist.getOutputNets();
+        assertEquals(def.getInputCount(), defInputs.length);
+        for(int combination = 0; combination < 1 << defInputs.length; combination++) {
+            for(int i = 0; i < defInputs.length; i++) {
+                boolean state = (combination >>> i & 1) != 0;
+                sim.setNet(netlist.getNet(sub.getId(), def.getInputPort(i)), state);
+                setInput(kernel, inputs.get(i), state);
+            }
+            kernel.settle(comps.size()+1);
+            assertTrue(kernel.isQuiescent());
+            sim.settle(defNetlist.getGateCount()+2);
+            assertTrue(sim.isQuiescent());
+
+            boolean[] expected = getNets(defNetlist, comps, inputs);
+            for(int i = 0; i < defOutputs.length; i++) {
+                assertEquals("Output " + i + " of combination " + combination, expected[defOutputs[i]], sim.getNet(netlist.getNet(sub.getId(), def.getOutputPort(i))));
+            }
+        }
+
+        // Flattening the instance must give the same circuit
+        checkEquivalence(netlist.flatten());
+    }
+
+    /**
+     * Applies every combination of inputs to the given circuit and checks that every engine agrees with the LogicComponent kernel on the state of every net
+     * @param netlist The circuit to check, which must be acyclic
+     */
+    private static void checkEquivalence(Netlist netlist) {
+        ArrayList<Input> inputs = new ArrayList<>();
+        List<LogicComponent> comps = toLogicComponents(netlist, inputs);
+        EventSimulator kernel = new EventSimulator(comps);
+        int[] inputNets = netlist.getInputNets();
+        int gateCount = netlist.getGateCount();
+        int maxTicks = gateCount+2;
+
+        NetlistSimulator event = new NetlistSimulator(netlist);
+        LevelizedSimulator levelized = new LevelizedSimulator(netlist);
+        BitParallelSimulator bitParallel = new BitParallelSimulator(netlist);
+        // Include more partitions than gates, which are reduced to one per gate
+        int[] partitionCounts = {1, 2, 3, gateCount+5};
+        ParallelSimulator[] parallel = new ParallelSimulator[partitionCounts.length];
+        for(int i = 0; i < parallel.length; i++) {
+            parallel[i] = new ParallelSimulator(netlist, partitionCounts[i], ForkJoinPool.commonPool());
+        }
+
+        for(int combination = 0; combination < 1 << inputNets.length; combination++) {
+            int lane = combination % BitParallelSimulator.LANES;
+            if(lane == 0) {
+                int pass = combination / BitParallelSimulator.LANES;
+                for(int i = 0; i < inputNets.length; i++) {
+                    bitParallel.setNet(inputNets[i], BitParallelSimulator.exhaustiveLanes(i, pass));
+                }
+                bitParallel.settle(maxTicks);
+                assertTrue(bitParallel.isQuiescent());
+            }
+
+            for(int i = 0; i < inputNets.length; i++) {
+                boolean state = (combination >>> i & 1) != 0;
+                setInput(kernel, inputs.get(i), state);
+                event.setNet(inputNets[i], state);
+                levelized.setNet(inputNets[i], state);
+                for(ParallelSimulator sim: parallel) {
+                    sim.setNet(inputNets[i], state);
+                }
+            }
+            kernel.settle(comps.size()+1);
+            assertTrue(kernel.isQuiescent());
+            event.settle(maxTicks);
+            assertTrue(event.isQuiescent());
+            assertTrue(levelized.evaluate());
+            for(ParallelSimulator sim: parallel) {
+                sim.settle(maxTicks);
+                assertTrue(sim.isQuiescent());
+            }
+
+            boolean[] expected = getNets(netlist, comps, inputs);
+            for(int net = 0; net < expected.length; net++) {
+                String message = "Net " + netlist.getNetName(net) + " of combination " + combination;
+                assertEquals(message + " (event)", expected[net], event.getNet(net));
+                assertEquals(message + " (levelized)", expected[net], levelized.getNet(net));
+                assertEquals(message + " (bit-parallel)", expected[net], bitParallel.getNet(net, lane));
+                for(ParallelSimulator sim: parallel) {
+                    assertEquals(message + " (" + sim.getPartitionCount() + " partitions)", expected[net], sim.getNet(net));
+                }
+            }
+        }
+    }
+
+    private static void setInput(EventSimulator kernel, Input input, boolean state) {
+        if(input.set(state)) {
+            kernel.scheduleFanout(input);
+        }
+    }
+
+    /**
+     * Reads the state of every net from the kernel. A net is active when any of its drivers are active
+     * @param netlist The circuit which the components were created from
+     * @param comps The components returned by {@link #toLogicComponents(Netlist, List)}
+     * @param inputs The Inputs returned by {@link #toLogicComponents(Netlist, List)}
+     * @return The state of every net
+     */
+    private static boolean[] getNets(Netlist netlist, List<LogicComponent> comps, List<Input> inputs) {
+        boolean[] nets = new boolean[netlist.getNetCount()];
+        for(int gate = 0; gate < netlist.getGateCount(); gate++) {
+            nets[netlist.getOutput(gate)] |= comps.get(gate).getPortState("O");
+        }
+        int[] inputNets = netlist.getInputNets();
+        for(int i = 0; i < inputNets.length; i++) {
+            nets[inputNets[i]] |= inputs.get(i).isActive();
+        }
+        return nets;
+    }
+
+    /**
+     * Creates a LogicComponent for every gate in the given Netlist and connects each input to every driver of the net it reads from
+     * @param netlist The Netlist to convert
+     * @param outInputs A List which should receive an Input for every net returned by {@link Netlist#getInputNets()}, in the same order
+     * @return The created components in the same order as the gates of the Netlist, followed by the Inputs
+     */
+    private static List<LogicComponent> toLogicComponents(Netlist netlist, List<Input> outInputs) {
+        ArrayList<LogicComponent> comps = new ArrayList<>();
+        ArrayList<ArrayList<LogicComponent>> drivers = new ArrayList<>();
+        for(int net = 0; net < netlist.getNetCount(); net++) {
+            drivers.add(new ArrayList<>());
+        }
+        for(int gate = 0; gate < netlist.getGateCount(); gate++) {
+            LogicComponent comp = createGate(netlist.getOp(gate));
+            comps.add(comp);
+            drivers.get(netlist.getOutput(gate)).add(comp);
+        }
+        for(int net: netlist.getInputNets()) {
+            Input input = new Input();
+            outInputs.add(input);
+            drivers.get(net).add(input);
+        }
+        for(int gate = 0; gate < netlist.getGateCount(); gate++) {
+            LogicComponent comp = comps.get(gate);
+            if(comp instanceof LBuffer || comp instanceof LNOTGate) {
+                connectNet(drivers.get(netlist.getInput1(gate)), comp, "I");
+            } else {
+                connectNet(drivers.get(netlist.getInput1(gate)), comp, "I1");
+                connectNet(drivers.get(netlist.getInput2(gate)), comp, "I2");
+            }
+        }
+        comps.addAll(outInputs);
+        return comps;
+    }
+
+    private static void connectNet(List<LogicComponent> drivers, LogicComponent comp, String port) {
+        drivers.forEach(driver -> comp.connect(port, driver, "O"));
+    }
+
+    private static LogicComponent createGate(int op) {
+        switch(op) {
+            case Netlist.OP_BUFFER:
+                return new LBuffer(List.of());
+            case Netlist.OP_NOT:
+                return new LNOTGate(List.of());
+            case Netlist.OP_AND:
+                return new LANDGate(List.of());
+            case Netlist.OP_OR:
+                return new LORGate(List.of());
+            case Netlist.OP_XOR:
+                return new LXORGate(List.of());
+            case Netlist.OP_NAND:
+                return new LNANDGate(List.of());
+            case Netlist.OP_NOR:
+                return new LNORGate(List.of());
+            case Netlist.OP_XNOR:
+                return new LXNORGate(List.of());
+            default:
+                throw new IllegalArgumentException("Invalid opcode: " + op);
+        }
+    }
+
+    /**
+     * A LogicComponent whose output "O" is set directly instead of being computed from inputs
+     */
+    private static final class Input extends LogicComponent {
+
+        private static final long serialVersionUID = -4179534472985560132L;
+
+        Input() {
+            super(List.of());
+            createPort("O");
+        }
+
+        boolean set(boolean state) {
+            return setPortState("O", state);
+        }
+
+        @Override
+        public void queueState() {}
+
+        @Override
+        public boolean pushState() {
+            return false;
+        }
+
+        @Override
+        public boolean isActive() {
+            return getPortState("O");
+        }
+
+    }
+
+}